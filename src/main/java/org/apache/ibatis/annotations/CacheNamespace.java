@@ -61,6 +61,18 @@ public @interface CacheNamespace {
    */
   boolean blocking() default false;
 
+  /**
+   * @return 是否合并同一个键的并发加载，开启后代替 blocking。{@link org.apache.ibatis.cache.decorators.SingleFlightCache}
+   * @since 3.5.3
+   */
+  boolean singleFlight() default false;
+
+  /**
+   * @return 是否按标签失效，开启后声明了 cacheTags 的语句只失效相关的缓存。{@link org.apache.ibatis.cache.decorators.TaggedCache}
+   * @since 3.5.3
+   */
+  boolean tagInvalidation() default false;
+
   /**
    * Property values for a implementation object.
    * @since 3.4.2
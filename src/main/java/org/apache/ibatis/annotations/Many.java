@@ -39,4 +39,17 @@ public @interface Many {
    */
   FetchType fetchType() default FetchType.DEFAULT;
 
+  /**
+   * @return 批量执行嵌套查询时每批包含的父对象的数量，0 表示每个父对象执行一次嵌套查询。
+   *         大于 0 时嵌套查询的参数是父对象的键的列表，并且必须指定 {@link #foreignColumn()}
+   * @since 3.5.3
+   */
+  int batchSize() default 0;
+
+  /**
+   * @return 批量执行时，嵌套查询结果中与父对象的键对应的列，多个列用逗号分隔
+   * @since 3.5.3
+   */
+  String foreignColumn() default "";
+
 }
@@ -84,4 +84,14 @@ public @interface Options {
    * @return 结果集
    */
   String resultSets() default "";
+  /**
+   * @return 嵌套结果是否按主结果分组，分组的结果在主结果变化时提交，不再保留之前的对象
+   * @since 3.5.3
+   */
+  boolean resultOrdered() default false;
+  /**
+   * @return 二级缓存的标签，多个标签用逗号分隔。查询语句表示读取的标签，增删改语句表示需要失效的标签
+   * @since 3.5.3
+   */
+  String cacheTags() default "";
 }
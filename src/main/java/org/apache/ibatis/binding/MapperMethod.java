@@ -16,6 +16,7 @@
 package org.apache.ibatis.binding;
 
 import java.lang.reflect.Array;
+import java.lang.reflect.GenericArrayType;
 import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
@@ -23,10 +24,12 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import org.apache.ibatis.annotations.Flush;
 import org.apache.ibatis.annotations.MapKey;
 import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.exceptions.TooManyResultsException;
 import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.mapping.SqlCommandType;
 import org.apache.ibatis.mapping.StatementType;
@@ -81,6 +84,8 @@ public class MapperMethod {
         if (method.returnsVoid() && method.hasResultHandler()) {
           executeWithResultHandler(sqlSession, args);
           result = null;
+        } else if (method.returnsFuture()) {
+          result = executeForFuture(sqlSession, args);
         } else if (method.returnsMany()) {
           result = executeForMany(sqlSession, args);
         } else if (method.returnsMap()) {
@@ -162,6 +167,30 @@ public class MapperMethod {
     return result;
   }
 
+  private Object executeForFuture(SqlSession sqlSession, Object[] args) {
+    CompletableFuture<List<Object>> result;
+    Object param = method.convertArgsToSqlCommandParam(args);
+    if (method.hasRowBounds()) {
+      RowBounds rowBounds = method.extractRowBounds(args);
+      result = sqlSession.selectListAsync(command.getName(), param, rowBounds);
+    } else {
+      result = sqlSession.selectListAsync(command.getName(), param);
+    }
+    // CompletableFuture<T> 按照 selectOne 的规则取单个结果
+    if (method.returnsFutureOfOne()) {
+      return result.thenApply(list -> {
+        if (list.size() == 1) {
+          return list.get(0);
+        } else if (list.size() > 1) {
+          throw new TooManyResultsException("Expected one result (or null) to be returned by selectOne(), but found: " + list.size());
+        } else {
+          return null;
+        }
+      });
+    }
+    return result;
+  }
+
   private <T> Cursor<T> executeForCursor(SqlSession sqlSession, Object[] args) {
     Cursor<T> result;
     Object param = method.convertArgsToSqlCommandParam(args);
@@ -316,6 +345,14 @@ public class MapperMethod {
      * 返回类型是否为 {@link java.util.Optional}
      */
     private final boolean returnsOptional;
+    /**
+     * 返回类型是否为 {@link CompletableFuture}、{@link java.util.concurrent.CompletionStage} 或者 {@link java.util.concurrent.Future}
+     */
+    private final boolean returnsFuture;
+    /**
+     * 返回类型是否为单个对象的 Future ，例如 {@code CompletableFuture<User>}
+     */
+    private final boolean returnsFutureOfOne;
     /**
      * 返回类型
      */
@@ -362,6 +399,10 @@ public class MapperMethod {
       this.returnsCursor = Cursor.class.equals(this.returnType);
       // 初始化 returnsOptional 属性
       this.returnsOptional = Optional.class.equals(this.returnType);
+      // 初始化 returnsFuture 属性
+      this.returnsFuture = !Object.class.equals(this.returnType) && this.returnType.isAssignableFrom(CompletableFuture.class);
+      // 初始化 returnsFutureOfOne 属性
+      this.returnsFutureOfOne = this.returnsFuture && isFutureOfOne(configuration, method, resolvedReturnType);
       // 初始化 mapKey
       this.mapKey = getMapKey(method);
       // 初始化 returnsMap
@@ -426,6 +467,53 @@ public class MapperMethod {
       return returnsOptional;
     }
 
+    /**
+     * return whether return type is {@code CompletableFuture} or one of its interfaces.
+     * @return return {@code true}, if return type is a future of a list
+     * @since 3.5.3
+     */
+    public boolean returnsFuture() {
+      return returnsFuture;
+    }
+
+    /**
+     * return whether return type is a future of a single object, such as {@code CompletableFuture<User>}.
+     * @return return {@code true}, if the future completes with a single object instead of a list
+     * @since 3.5.3
+     */
+    public boolean returnsFutureOfOne() {
+      return returnsFutureOfOne;
+    }
+
+    /**
+     * 判断 Future 的值是否为单个对象。值为 List 或者没有声明时返回 false ，其他集合和数组不支持
+     */
+    private static boolean isFutureOfOne(Configuration configuration, Method method, Type futureType) {
+      if (!(futureType instanceof ParameterizedType)) {
+        return false;
+      }
+      Type valueType = ((ParameterizedType) futureType).getActualTypeArguments()[0];
+      Class<?> valueClass;
+      if (valueType instanceof Class<?>) {
+        valueClass = (Class<?>) valueType;
+      } else if (valueType instanceof ParameterizedType) {
+        valueClass = (Class<?>) ((ParameterizedType) valueType).getRawType();
+      } else if (valueType instanceof GenericArrayType) {
+        valueClass = Object[].class;
+      } else {
+        return false;
+      }
+      if (valueClass.isAssignableFrom(List.class)) {
+        return false;
+      }
+      if (valueClass.isArray() || configuration.getObjectFactory().isCollection(valueClass)) {
+        throw new BindingException("Mapper method '" + method.getDeclaringClass().getName() + "." + method.getName()
+            + "' has an unsupported return type: " + method.getGenericReturnType().getTypeName()
+            + ", a future must complete with a List or a single object");
+      }
+      return true;
+    }
+
     /**
      * 获得指定参数类型在方法参数中的位置
      *
@@ -34,6 +34,7 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import org.apache.ibatis.annotations.Arg;
 import org.apache.ibatis.annotations.CacheNamespace;
@@ -190,7 +191,8 @@ public class MapperAnnotationBuilder {
       Integer size = cacheDomain.size() == 0 ? null : cacheDomain.size();
       Long flushInterval = cacheDomain.flushInterval() == 0 ? null : cacheDomain.flushInterval();
       Properties props = convertToProperties(cacheDomain.properties());
-      assistant.useNewCache(cacheDomain.implementation(), cacheDomain.eviction(), flushInterval, size, cacheDomain.readWrite(), cacheDomain.blocking(), props);
+      assistant.useNewCache(cacheDomain.implementation(), cacheDomain.eviction(), flushInterval, size, cacheDomain.readWrite(), cacheDomain.blocking(),
+          cacheDomain.singleFlight(), cacheDomain.tagInvalidation(), props);
     }
   }
 
@@ -370,8 +372,7 @@ public class MapperAnnotationBuilder {
           resultSetType,
           flushCache,
           useCache,
-          // TODO gcode issue #577
-          false,
+          options != null && options.resultOrdered(),
           keyGenerator,
           keyProperty,
           keyColumn,
@@ -379,7 +380,8 @@ public class MapperAnnotationBuilder {
           null,
           languageDriver,
           // ResultSets
-          options != null ? nullOrEmpty(options.resultSets()) : null);
+          options != null ? nullOrEmpty(options.resultSets()) : null,
+          options != null ? nullOrEmpty(options.cacheTags()) : null);
     }
   }
 
@@ -426,6 +428,17 @@ public class MapperAnnotationBuilder {
     } else if (resolvedReturnType instanceof ParameterizedType) {
       ParameterizedType parameterizedType = (ParameterizedType) resolvedReturnType;
       Class<?> rawType = (Class<?>) parameterizedType.getRawType();
+      // CompletableFuture<List<T>> 取 List<T> ，CompletableFuture<T> 取 T
+      if (!Object.class.equals(rawType) && rawType.isAssignableFrom(CompletableFuture.class)) {
+        Type futureValueType = parameterizedType.getActualTypeArguments()[0];
+        if (futureValueType instanceof ParameterizedType) {
+          parameterizedType = (ParameterizedType) futureValueType;
+          rawType = (Class<?>) parameterizedType.getRawType();
+          returnType = rawType;
+        } else if (futureValueType instanceof Class<?>) {
+          returnType = (Class<?>) futureValueType;
+        }
+      }
       if (Collection.class.isAssignableFrom(rawType) || Cursor.class.isAssignableFrom(rawType)) {
         Type[] actualTypeArguments = parameterizedType.getActualTypeArguments();
         if (actualTypeArguments != null && actualTypeArguments.length == 1) {
@@ -559,8 +572,9 @@ public class MapperAnnotationBuilder {
           typeHandler,
           flags,
           null,
-          null,
-          isLazy(result));
+          nullOrEmpty(foreignColumn(result)),
+          isLazy(result),
+          batchSize(result));
       resultMappings.add(resultMapping);
     }
   }
@@ -586,6 +600,14 @@ public class MapperAnnotationBuilder {
     return isLazy;
   }
 
+  private int batchSize(Result result) {
+    return result.one().select().length() > 0 ? result.one().batchSize() : result.many().batchSize();
+  }
+
+  private String foreignColumn(Result result) {
+    return result.one().select().length() > 0 ? result.one().foreignColumn() : result.many().foreignColumn();
+  }
+
   private boolean hasNestedSelect(Result result) {
     if (result.one().select().length() > 0 && result.many().select().length() > 0) {
       throw new BuilderException("Cannot use both @One and @Many annotations in the same @Result");
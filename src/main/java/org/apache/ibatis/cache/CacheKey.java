@@ -16,8 +16,7 @@
 package org.apache.ibatis.cache;
 
 import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 import java.util.StringJoiner;
 
 import org.apache.ibatis.reflection.ArrayUtil;
@@ -30,7 +29,7 @@ import org.apache.ibatis.reflection.ArrayUtil;
  */
 public class CacheKey implements Cloneable, Serializable {
 
-  private static final long serialVersionUID = 1146682552656046210L;
+  private static final long serialVersionUID = -6434281713093432539L;
 
   /**
    * 单例 - 空缓存键
@@ -53,6 +52,15 @@ public class CacheKey implements Cloneable, Serializable {
    * 默认 {@link #hashcode} 的值
    */
   private static final int DEFAULT_HASHCODE = 17;
+  /**
+   * {@link #checksum} 求值的系数（64 位 FNV prime）
+   */
+  private static final long CHECKSUM_MULTIPLIER = 0x100000001B3L;
+  /**
+   * 未指定容量时 {@link #updateList} 第一次扩容的大小
+   */
+  private static final int DEFAULT_CAPACITY = 8;
+  private static final Object[] EMPTY_UPDATE_LIST = {};
 
   /**
    * hashcode 求值的系数
@@ -63,51 +71,63 @@ public class CacheKey implements Cloneable, Serializable {
    */
   private int hashcode;
   /**
-   * 校验和
+   * 校验和，64 位并且和顺序相关，不相等的键在比较元素之前基本都能被排除
    */
   private long checksum;
   /**
    *
-   *  {@link #update(Object)} 的数量
+   *  {@link #update(Object)} 的数量，即 {@link #updateList} 中有效元素的数量
    *
    */
   private int count;
   // 8/21/2017 - Sonarlint flags this as needing to be marked transient.  While true if content is not serializable, this is not always true and thus should not be marked transient.
 
   /**
-   * 计算 {@link #hashcode} 的对象的集合
+   * 计算 {@link #hashcode} 的对象的数组，只有前 {@link #count} 个元素有效
    */
-  private List<Object> updateList;
+  private Object[] updateList;
 
   public CacheKey() {
     this.hashcode = DEFAULT_HASHCODE;
     this.multiplier = DEFAULT_MULTIPLYER;
     this.count = 0;
-    this.updateList = new ArrayList<>();
+    this.updateList = EMPTY_UPDATE_LIST;
   }
 
-  public CacheKey(Object[] objects) {
+  /**
+   * @param expectedUpdateCount 预计调用 {@link #update(Object)} 的次数，用于一次性分配数组
+   * @since 3.5.3
+   */
+  public CacheKey(int expectedUpdateCount) {
     this();
+    this.updateList = expectedUpdateCount > 0 ? new Object[expectedUpdateCount] : EMPTY_UPDATE_LIST;
+  }
+
+  public CacheKey(Object[] objects) {
+    this(objects.length);
     //基于objects 更新相关属性
     updateAll(objects);
   }
 
   public int getUpdateCount() {
-    return updateList.size();
+    return count;
   }
 
   public void update(Object object) {
     //方法参数object的hashcode
     int baseHashCode = object == null ? 1 : ArrayUtil.hashCode(object);
 
+    // checksum 为 baseHashCode 的 64 位顺序相关的组合
+    checksum = checksum * CHECKSUM_MULTIPLIER + mix(baseHashCode);
     count++;
-    // checksum 为 baseHashCode 的求和
-    checksum += baseHashCode;
     baseHashCode *= count;
     // 计算新的 hashcode 值
     hashcode = multiplier * hashcode + baseHashCode;
     // 添加 object 到 updateList 中
-    updateList.add(object);
+    if (count > updateList.length) {
+      updateList = Arrays.copyOf(updateList, Math.max(DEFAULT_CAPACITY, updateList.length * 2));
+    }
+    updateList[count - 1] = object;
   }
 
   public void updateAll(Object[] objects) {
@@ -137,11 +157,11 @@ public class CacheKey implements Cloneable, Serializable {
       return false;
     }
 
-    //比较UpdateList数组
-    for (int i = 0; i < updateList.size(); i++) {
-      Object thisObject = updateList.get(i);
-      Object thatObject = cacheKey.updateList.get(i);
-      if (!ArrayUtil.equals(thisObject, thatObject)) {
+    //比较UpdateList数组，statement id、静态 SQL 等通常是同一个对象，先比较引用
+    for (int i = 0; i < count; i++) {
+      Object thisObject = updateList[i];
+      Object thatObject = cacheKey.updateList[i];
+      if (thisObject != thatObject && !ArrayUtil.equals(thisObject, thatObject)) {
         return false;
       }
     }
@@ -158,7 +178,9 @@ public class CacheKey implements Cloneable, Serializable {
     StringJoiner returnValue = new StringJoiner(":");
     returnValue.add(String.valueOf(hashcode));
     returnValue.add(String.valueOf(checksum));
-    updateList.stream().map(ArrayUtil::toString).forEach(returnValue::add);
+    for (int i = 0; i < count; i++) {
+      returnValue.add(ArrayUtil.toString(updateList[i]));
+    }
     return returnValue.toString();
   }
 
@@ -166,9 +188,14 @@ public class CacheKey implements Cloneable, Serializable {
   public CacheKey clone() throws CloneNotSupportedException {
     //克隆CacheKey对象
     CacheKey clonedCacheKey = (CacheKey) super.clone();
-    //创建updateList数组，避免原数组修改
-    clonedCacheKey.updateList = new ArrayList<>(updateList);
+    //复制updateList数组，避免原数组修改
+    clonedCacheKey.updateList = count == 0 ? EMPTY_UPDATE_LIST : Arrays.copyOf(updateList, count);
     return clonedCacheKey;
   }
 
+  private static long mix(long value) {
+    long h = value * 0x9E3779B97F4A7C15L;
+    return h ^ (h >>> 32);
+  }
+
 }
@@ -0,0 +1,40 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+/**
+ * 二级缓存的序列化 SPI，{@link org.apache.ibatis.cache.impl.OffHeapCache} 通过它把缓存的值转换成字节数组。
+ *
+ * Implementations must be thread safe and have a public no-arg constructor.
+ *
+ * @since 3.5.3
+ * @see org.apache.ibatis.cache.impl.JavaCacheSerializer
+ */
+public interface CacheSerializer {
+
+  /**
+   * @param value the value to serialize, never null
+   * @return the serialized form of the value
+   */
+  byte[] serialize(Object value);
+
+  /**
+   * @param bytes bytes returned by {@link #serialize(Object)}
+   * @return a copy of the serialized value
+   */
+  Object deserialize(byte[] bytes);
+
+}
@@ -0,0 +1,119 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+/**
+ * 二级缓存统计信息的快照，通过 {@link org.apache.ibatis.cache.decorators.MetricsCache#getStats()} 获取
+ *
+ * @since 3.5.3
+ */
+public final class CacheStats {
+
+  private final String id;
+  private final long hitCount;
+  private final long missCount;
+  private final long putCount;
+  private final long evictionCount;
+  private final long loadCount;
+  private final long totalLoadTime;
+  private final int size;
+
+  public CacheStats(String id, long hitCount, long missCount, long putCount, long evictionCount, long loadCount,
+      long totalLoadTime, int size) {
+    this.id = id;
+    this.hitCount = hitCount;
+    this.missCount = missCount;
+    this.putCount = putCount;
+    this.evictionCount = evictionCount;
+    this.loadCount = loadCount;
+    this.totalLoadTime = totalLoadTime;
+    this.size = size;
+  }
+
+  /**
+   * @return 缓存的ID，即命名空间
+   */
+  public String getId() {
+    return id;
+  }
+
+  public long getRequestCount() {
+    return hitCount + missCount;
+  }
+
+  public long getHitCount() {
+    return hitCount;
+  }
+
+  public long getMissCount() {
+    return missCount;
+  }
+
+  /**
+   * @return 命中率，没有请求时为 0
+   */
+  public double getHitRatio() {
+    long requests = getRequestCount();
+    return requests == 0 ? 0 : (double) hitCount / requests;
+  }
+
+  public long getPutCount() {
+    return putCount;
+  }
+
+  /**
+   * @return 被淘汰策略（LRU、FIFO 等）移除的数量
+   */
+  public long getEvictionCount() {
+    return evictionCount;
+  }
+
+  /**
+   * @return 未命中后查询数据库的次数
+   */
+  public long getLoadCount() {
+    return loadCount;
+  }
+
+  /**
+   * @return 未命中后查询数据库的总耗时，单位：纳秒
+   */
+  public long getTotalLoadTime() {
+    return totalLoadTime;
+  }
+
+  /**
+   * @return 平均加载耗时，单位：纳秒
+   */
+  public double getAverageLoadTime() {
+    return loadCount == 0 ? 0 : (double) totalLoadTime / loadCount;
+  }
+
+  /**
+   * @return 缓存中元素的数量
+   */
+  public int getSize() {
+    return size;
+  }
+
+  @Override
+  public String toString() {
+    return "CacheStats [id=" + id + ", hits=" + hitCount + ", misses=" + missCount + ", puts=" + putCount
+        + ", evictions=" + evictionCount + ", loads=" + loadCount + ", totalLoadTime=" + totalLoadTime
+        + ", size=" + size + "]";
+  }
+
+}
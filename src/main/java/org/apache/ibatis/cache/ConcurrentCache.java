@@ -0,0 +1,29 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+/**
+ * 无需 {@link org.apache.ibatis.cache.decorators.SynchronizedCache} 即可并发访问的缓存
+ *
+ * Marker for caches and cache decorators that are safe for concurrent use. When the base cache and every
+ * decorator of a namespace implement this interface the {@code CacheBuilder} does not wrap the cache
+ * in a {@code SynchronizedCache}.
+ *
+ * @since 3.5.3
+ */
+public interface ConcurrentCache extends Cache {
+
+}
@@ -0,0 +1,47 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import java.util.concurrent.Callable;
+
+/**
+ * 支持在过期前后台刷新的缓存
+ *
+ * 命中时调用方先通过 {@link #claimRefresh(Object)} 判断是否需要刷新，需要时再提供重新查询的 loader，
+ * 这样大部分命中不需要创建 loader。
+ *
+ * @since 3.5.3
+ * @see org.apache.ibatis.cache.decorators.RefreshAheadCache
+ */
+public interface RefreshableCache extends Cache {
+
+  /**
+   * 命中后调用，判断指定键是否需要刷新。返回 true 时调用方必须接着调用 {@link #refresh(Object, Callable)}
+   *
+   * @param key The key
+   * @return true if the caller has been chosen to supply a loader for the key
+   */
+  boolean claimRefresh(Object key);
+
+  /**
+   * 在后台执行 loader，并用结果替换仍然存在的值
+   *
+   * @param key The key
+   * @param loader re-executes the query that produced the value
+   */
+  void refresh(Object key, Callable<Object> loader);
+
+}
@@ -0,0 +1,63 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+/**
+ * 支持按标签失效的缓存
+ *
+ * 查询语句通过 cacheTags 声明读取的表或者标签，缓存的值记录这些标签；
+ * 增删改语句通过 cacheTags 声明写入的标签，提交时只移除带有这些标签（或者没有任何标签）的值，而不是清空整个命名空间。
+ *
+ * @since 3.5.3
+ * @see org.apache.ibatis.cache.decorators.TaggedCache
+ */
+public interface TagAwareCache extends Cache {
+
+  /**
+   * 添加指定键的值，并记录值所依赖的标签
+   *
+   * @param key The key
+   * @param value The result of a select.
+   * @param tags the tags the select reads, null or empty if unknown
+   */
+  void putObject(Object key, Object value, String[] tags);
+
+  /**
+   * 移除带有任意一个指定标签的值，以及没有标签的值
+   *
+   * @param tags the tags written by a statement
+   */
+  void invalidate(String[] tags);
+
+  /**
+   * 判断 {@link #invalidate(String[])} 是否会移除指定键的值
+   *
+   * @param key The key
+   * @param tags the tags written by a statement
+   * @return true if the value of the key depends on one of the tags or has no tags
+   */
+  boolean isInvalidatedBy(Object key, String[] tags);
+
+  /**
+   * 装饰类实现了本接口，但被装饰的缓存不支持标签时返回 false，此时 invalidate 等同于 clear
+   *
+   * @return 是否真正按标签失效
+   */
+  default boolean isTagAware() {
+    return true;
+  }
+
+}
@@ -31,6 +31,15 @@ public class TransactionalCacheManager {
     getTransactionalCache(cache).clear();
   }
 
+  /**
+   * 提交时只移除带有指定标签的值
+   *
+   * @since 3.5.3
+   */
+  public void invalidate(Cache cache, String[] tags) {
+    getTransactionalCache(cache).invalidate(tags);
+  }
+
   public Object getObject(Cache cache, CacheKey key) {
     return getTransactionalCache(cache).getObject(key);
   }
@@ -39,6 +48,13 @@ public class TransactionalCacheManager {
     getTransactionalCache(cache).putObject(key, value);
   }
 
+  /**
+   * @since 3.5.3
+   */
+  public void putObject(Cache cache, CacheKey key, Object value, String[] tags) {
+    getTransactionalCache(cache).putObject(key, value, tags);
+  }
+
   public void commit() {
     for (TransactionalCache txCache : transactionalCaches.values()) {
       txCache.commit();
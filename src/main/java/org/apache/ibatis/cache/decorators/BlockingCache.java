@@ -139,8 +139,8 @@ public class BlockingCache implements Cache {
   private void releaseLock(Object key) {
     // 获得 ReentrantLock 对象
     ReentrantLock lock = locks.get(key);
-    //如果当前线程持有，则进行释放
-    if (lock.isHeldByCurrentThread()) {
+    //如果当前线程持有，则进行释放。后台刷新写入的键可能从未加锁
+    if (lock != null && lock.isHeldByCurrentThread()) {
       lock.unlock();
     }
   }
@@ -0,0 +1,197 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.ConcurrentCache;
+
+/**
+ * 基于 CLOCK（二次机会）算法的近似 LRU 淘汰装饰类
+ *
+ * 和 {@link LruCache} 不同，读取时只设置访问标记，不会修改任何数据结构，
+ * 淘汰时沿着环形队列跳过被访问过的键，所以读写都是 O(1) 并且不需要 {@link SynchronizedCache}。
+ *
+ * @since 3.5.3
+ */
+public class ClockCache implements ConcurrentCache {
+
+  /**
+   * 装饰的cache对象
+   */
+  private final Cache delegate;
+  /**
+   * 当前的时钟环，{@link #clear()} 时整体替换
+   */
+  private volatile Ring ring = new Ring();
+  /**
+   * 缓存的最大数量
+   */
+  private volatile int size;
+
+  public ClockCache(Cache delegate) {
+    this.delegate = delegate;
+    this.size = 1024;
+  }
+
+  @Override
+  public String getId() {
+    return delegate.getId();
+  }
+
+  @Override
+  public int getSize() {
+    return delegate.getSize();
+  }
+
+  public void setSize(int size) {
+    this.size = size;
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    Ring ring = this.ring;
+    //添加到缓存
+    delegate.putObject(key, value);
+    Node node = new Node(key);
+    Node existing = ring.keyMap.putIfAbsent(key, node);
+    if (existing != null) {
+      existing.touch();
+    } else {
+      ring.clock.offer(node);
+    }
+    //并发的 clear() 已经丢弃了这个时钟环，移除委托缓存中不再被跟踪的键
+    if (ring != this.ring) {
+      delegate.removeObject(key);
+      return;
+    }
+    if (existing == null) {
+      //超过上限则淘汰
+      evict(ring);
+    }
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    //只设置访问标记
+    Node node = ring.keyMap.get(key);
+    if (node != null) {
+      node.touch();
+    }
+    return delegate.getObject(key);
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    Ring ring = this.ring;
+    Node node = ring.keyMap.remove(key);
+    if (node != null) {
+      //节点仍留在时钟环中，标记为失效，积累过多时统一清理
+      node.dead = true;
+      if (ring.deadNodes.incrementAndGet() > size) {
+        purge(ring);
+      }
+    }
+    return delegate.removeObject(key);
+  }
+
+  @Override
+  public void clear() {
+    //先替换时钟环，再清空委托缓存，见 putObject 中的检查
+    ring = new Ring();
+    delegate.clear();
+  }
+
+  private void evict(Ring ring) {
+    while (ring.keyMap.size() > size) {
+      Node node = ring.clock.poll();
+      if (node == null) {
+        return;
+      }
+      //已经被移除的键
+      if (node.dead) {
+        ring.deadNodes.updateAndGet(count -> count > 0 ? count - 1 : 0);
+        continue;
+      }
+      //被访问过的键获得第二次机会，重新放到队尾
+      if (node.referenced) {
+        node.referenced = false;
+        ring.clock.offer(node);
+        continue;
+      }
+      if (ring.keyMap.remove(node.key, node)) {
+        MetricsCache.EvictionCounter.evict(delegate, node.key);
+      }
+    }
+  }
+
+  private void purge(Ring ring) {
+    ring.deadNodes.set(0);
+    ring.clock.removeIf(node -> node.dead);
+  }
+
+  @Override
+  public int hashCode() {
+    return delegate.hashCode();
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return delegate.equals(obj);
+  }
+
+  private static final class Ring {
+
+    /**
+     * 键到时钟节点的映射
+     */
+    private final Map<Object, Node> keyMap = new ConcurrentHashMap<>();
+    /**
+     * 时钟环，队首为下一个淘汰的候选
+     */
+    private final Queue<Node> clock = new ConcurrentLinkedQueue<>();
+    /**
+     * 时钟环中已失效节点的近似数量
+     */
+    private final AtomicInteger deadNodes = new AtomicInteger();
+
+  }
+
+  private static final class Node {
+
+    private final Object key;
+    private volatile boolean referenced;
+    private volatile boolean dead;
+
+    Node(Object key) {
+      this.key = key;
+    }
+
+    void touch() {
+      //避免重复写入同一缓存行
+      if (!referenced) {
+        referenced = true;
+      }
+    }
+
+  }
+
+}
@@ -92,7 +92,7 @@ public class FifoCache implements Cache {
     keyList.addLast(key);
     if (keyList.size() > size) {
       Object oldestKey = keyList.removeFirst();
-      delegate.removeObject(oldestKey);
+      MetricsCache.EvictionCounter.evict(delegate, oldestKey);
     }
   }
 
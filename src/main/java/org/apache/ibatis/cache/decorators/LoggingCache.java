@@ -15,6 +15,8 @@
  */
 package org.apache.ibatis.cache.decorators;
 
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.logging.LogFactory;
@@ -26,6 +28,9 @@ import org.apache.ibatis.logging.LogFactory;
  */
 public class LoggingCache implements Cache {
 
+  private static final AtomicIntegerFieldUpdater<LoggingCache> REQUESTS_UPDATER = AtomicIntegerFieldUpdater.newUpdater(LoggingCache.class, "requests");
+  private static final AtomicIntegerFieldUpdater<LoggingCache> HITS_UPDATER = AtomicIntegerFieldUpdater.newUpdater(LoggingCache.class, "hits");
+
   /**
    * mybtais log 对象
    */
@@ -35,13 +40,13 @@ public class LoggingCache implements Cache {
    */
   private final Cache delegate;
   /**
-   * 统计请求缓存的次数
+   * 统计请求缓存的次数，原子更新以便在没有 SynchronizedCache 时并发统计
    */
-  protected int requests = 0;
+  protected volatile int requests = 0;
   /**
    * 统计命中缓存的次数
    */
-  protected int hits = 0;
+  protected volatile int hits = 0;
 
   public LoggingCache(Cache delegate) {
     this.delegate = delegate;
@@ -66,12 +71,12 @@ public class LoggingCache implements Cache {
   @Override
   public Object getObject(Object key) {
     //请求次数++
-    requests++;
+    REQUESTS_UPDATER.incrementAndGet(this);
     //获得缓存
     final Object value = delegate.getObject(key);
     //如果命中缓存，则命中次数++
     if (value != null) {
-      hits++;
+      HITS_UPDATER.incrementAndGet(this);
     }
     if (log.isDebugEnabled()) {
       log.debug("Cache Hit Ratio [" + getId() + "]: " + getHitRatio());
@@ -106,7 +106,7 @@ public class LruCache implements Cache {
     keyMap.put(key, key);
     if (eldestKey != null) {
       //如果超过上限，则从 delegate 中，移除最少使用的那个
-      delegate.removeObject(eldestKey);
+      MetricsCache.EvictionCounter.evict(delegate, eldestKey);
       //置空
       eldestKey = null;
     }
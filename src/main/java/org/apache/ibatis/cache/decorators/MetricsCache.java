@@ -0,0 +1,291 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheStats;
+import org.apache.ibatis.cache.ConcurrentCache;
+import org.apache.ibatis.cache.RefreshableCache;
+import org.apache.ibatis.cache.TagAwareCache;
+
+/**
+ * 统计命中、未命中、放入、淘汰次数和加载耗时的装饰类
+ *
+ * {@link org.apache.ibatis.mapping.CacheBuilder} 把它放在标准缓存的最外层，
+ * 所以可以通过 {@link org.apache.ibatis.session.Configuration#getCaches()} 获取每个命名空间的统计信息：
+ *
+ * <pre>
+ * for (Cache cache : configuration.getCaches()) {
+ *   if (cache instanceof MetricsCache) {
+ *     CacheStats stats = ((MetricsCache) cache).getStats();
+ *   }
+ * }
+ * </pre>
+ *
+ * @since 3.5.3
+ */
+public class MetricsCache implements ConcurrentCache, TagAwareCache, RefreshableCache {
+
+  /**
+   * 装饰的 Cache 对象
+   */
+  private final Cache delegate;
+  /**
+   * 统计淘汰次数，为 null 时不统计
+   */
+  private final EvictionCounter evictionCounter;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder puts = new LongAdder();
+  private final LongAdder loads = new LongAdder();
+  private final LongAdder loadTime = new LongAdder();
+
+  public MetricsCache(Cache delegate) {
+    this(delegate, null);
+  }
+
+  /**
+   * @param delegate 装饰的 Cache 对象
+   * @param evictionCounter 包装在淘汰策略和基础缓存之间的计数器
+   */
+  public MetricsCache(Cache delegate, EvictionCounter evictionCounter) {
+    this.delegate = delegate;
+    this.evictionCounter = evictionCounter;
+  }
+
+  @Override
+  public String getId() {
+    return delegate.getId();
+  }
+
+  @Override
+  public int getSize() {
+    return delegate.getSize();
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    // null 只用于释放锁，不计入
+    if (value != null) {
+      puts.increment();
+    }
+    delegate.putObject(key, value);
+  }
+
+  @Override
+  public void putObject(Object key, Object value, String[] tags) {
+    if (!(delegate instanceof TagAwareCache)) {
+      putObject(key, value);
+      return;
+    }
+    if (value != null) {
+      puts.increment();
+    }
+    ((TagAwareCache) delegate).putObject(key, value, tags);
+  }
+
+  @Override
+  public void invalidate(String[] tags) {
+    if (delegate instanceof TagAwareCache) {
+      ((TagAwareCache) delegate).invalidate(tags);
+    } else {
+      delegate.clear();
+    }
+  }
+
+  @Override
+  public boolean isInvalidatedBy(Object key, String[] tags) {
+    return !isTagAware() || ((TagAwareCache) delegate).isInvalidatedBy(key, tags);
+  }
+
+  @Override
+  public boolean isTagAware() {
+    return delegate instanceof TagAwareCache && ((TagAwareCache) delegate).isTagAware();
+  }
+
+  @Override
+  public boolean claimRefresh(Object key) {
+    return delegate instanceof RefreshableCache && ((RefreshableCache) delegate).claimRefresh(key);
+  }
+
+  @Override
+  public void refresh(Object key, Callable<Object> loader) {
+    if (delegate instanceof RefreshableCache) {
+      ((RefreshableCache) delegate).refresh(key, loader);
+    }
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    Object value = delegate.getObject(key);
+    if (value == null) {
+      misses.increment();
+    } else {
+      hits.increment();
+    }
+    return value;
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    return delegate.removeObject(key);
+  }
+
+  @Override
+  public void clear() {
+    delegate.clear();
+  }
+
+  /**
+   * 记录一次未命中后查询数据库的耗时
+   *
+   * @param nanos 耗时，单位：纳秒
+   */
+  public void recordLoad(long nanos) {
+    loads.increment();
+    loadTime.add(nanos);
+  }
+
+  /**
+   * @return 当前的统计信息
+   */
+  public CacheStats getStats() {
+    return new CacheStats(getId(), hits.sum(), misses.sum(), puts.sum(),
+        evictionCounter == null ? 0 : evictionCounter.evictions.sum(), loads.sum(), loadTime.sum(), getSize());
+  }
+
+  @Override
+  public int hashCode() {
+    return delegate.hashCode();
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return delegate.equals(obj);
+  }
+
+  /**
+   * 包装基础缓存，淘汰策略通过 {@link #evict(Cache, Object)} 从基础缓存中移除已存在的键时计为一次淘汰，
+   * 显式的 removeObject（例如按标签失效、过期）不计入
+   */
+  public static class EvictionCounter implements ConcurrentCache {
+
+    private final Cache delegate;
+    private final LongAdder evictions = new LongAdder();
+    /**
+     * 键被移除或者清空时的监听器，可以为空
+     */
+    private volatile RemovalListener removalListener;
+
+    public EvictionCounter(Cache delegate) {
+      this.delegate = delegate;
+    }
+
+    public void setRemovalListener(RemovalListener removalListener) {
+      this.removalListener = removalListener;
+    }
+
+    /**
+     * 淘汰策略淘汰键时调用，被装饰的缓存是 EvictionCounter 时计为一次淘汰，否则等同于 removeObject
+     *
+     * @param cache 淘汰策略装饰的缓存
+     * @param key 被淘汰的键
+     */
+    public static void evict(Cache cache, Object key) {
+      if (cache instanceof EvictionCounter) {
+        EvictionCounter counter = (EvictionCounter) cache;
+        if (counter.delegate.removeObject(key) != null) {
+          counter.evictions.increment();
+          counter.removed(key);
+        }
+      } else {
+        cache.removeObject(key);
+      }
+    }
+
+    @Override
+    public String getId() {
+      return delegate.getId();
+    }
+
+    @Override
+    public int getSize() {
+      return delegate.getSize();
+    }
+
+    @Override
+    public void putObject(Object key, Object value) {
+      delegate.putObject(key, value);
+    }
+
+    @Override
+    public Object getObject(Object key) {
+      return delegate.getObject(key);
+    }
+
+    @Override
+    public Object removeObject(Object key) {
+      Object value = delegate.removeObject(key);
+      if (value != null) {
+        removed(key);
+      }
+      return value;
+    }
+
+    @Override
+    public void clear() {
+      delegate.clear();
+      RemovalListener listener = removalListener;
+      if (listener != null) {
+        listener.onClear();
+      }
+    }
+
+    private void removed(Object key) {
+      RemovalListener listener = removalListener;
+      if (listener != null) {
+        listener.onRemoval(key);
+      }
+    }
+
+    @Override
+    public int hashCode() {
+      return delegate.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return delegate.equals(obj);
+    }
+
+    /**
+     * 基础缓存中的键被移除（淘汰、过期或者显式移除）或者基础缓存被清空时的回调
+     */
+    public interface RemovalListener {
+
+      void onRemoval(Object key);
+
+      void onClear();
+
+    }
+
+  }
+
+}
@@ -0,0 +1,304 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.RefreshableCache;
+import org.apache.ibatis.cache.TagAwareCache;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+
+/**
+ * 在热点键过期前后台刷新的装饰类
+ *
+ * 值放入后经过 ttl * refreshAhead 毫秒，并且被命中至少 {@link #setRefreshHits(int)} 次，
+ * 下一次命中时由 {@link org.apache.ibatis.executor.CachingExecutor} 提供 loader，在共享的后台线程中重新执行查询，
+ * 用新的结果替换旧值，从而重置 {@link ScheduledCache} 中的过期时间。
+ * refreshAhead 应该小于 1 - ttlJitter，否则值可能在刷新前过期。
+ *
+ * 刷新的结果经过被装饰的缓存写入（{@link TaggedCache} 会按原来的标签重新索引），不经过事务缓存；
+ * 刷新期间发生过失效或者清空，或者值已经从 store 中移除时丢弃结果。
+ *
+ * @since 3.5.3
+ */
+public class RefreshAheadCache implements RefreshableCache, TagAwareCache {
+
+  private static final Log log = LogFactory.getLog(RefreshAheadCache.class);
+
+  /**
+   * 所有命名空间共享的刷新线程池，队列满时放弃刷新，值按原来的时间过期
+   */
+  private static final ThreadPoolExecutor refresher = newRefresher();
+
+  /**
+   * 装饰的cache对象
+   */
+  private final Cache delegate;
+  /**
+   * 用于判断值是否仍然存在的cache对象
+   */
+  private final Cache store;
+  /**
+   * 值的存活时间，单位：毫秒
+   */
+  private final long ttl;
+  /**
+   * 经过存活时间的多少比例后开始刷新
+   */
+  private final double refreshAhead;
+  /**
+   * 开始刷新前至少需要的命中次数
+   */
+  private int refreshHits = 2;
+  /**
+   * 键与刷新状态的映射
+   */
+  private final ConcurrentHashMap<Object, Ticket> tickets = new ConcurrentHashMap<>();
+  /**
+   * 下一次清理过期状态的时间
+   */
+  private volatile long nextSweep;
+  /**
+   * 失效和清空的次数，刷新期间发生变化时不再写回结果
+   */
+  private volatile long generation;
+  /**
+   * 保证写回刷新结果和失效、清空不会交错执行
+   */
+  private final ReentrantLock writeLock = new ReentrantLock();
+
+  public RefreshAheadCache(Cache delegate, Cache store, long ttl, double refreshAhead) {
+    this.delegate = delegate;
+    this.store = store;
+    this.ttl = ttl;
+    this.refreshAhead = refreshAhead;
+    this.nextSweep = System.currentTimeMillis() + ttl;
+  }
+
+  public int getRefreshHits() {
+    return refreshHits;
+  }
+
+  public void setRefreshHits(int refreshHits) {
+    this.refreshHits = refreshHits;
+  }
+
+  @Override
+  public String getId() {
+    return delegate.getId();
+  }
+
+  @Override
+  public int getSize() {
+    return delegate.getSize();
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    delegate.putObject(key, value);
+    track(key, value, null);
+  }
+
+  @Override
+  public void putObject(Object key, Object value, String[] tags) {
+    if (delegate instanceof TagAwareCache) {
+      ((TagAwareCache) delegate).putObject(key, value, tags);
+    } else {
+      delegate.putObject(key, value);
+    }
+    track(key, value, tags);
+  }
+
+  @Override
+  public void invalidate(String[] tags) {
+    if (!(delegate instanceof TagAwareCache)) {
+      clear();
+      return;
+    }
+    writeLock.lock();
+    try {
+      generation++;
+      ((TagAwareCache) delegate).invalidate(tags);
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  @Override
+  public boolean isInvalidatedBy(Object key, String[] tags) {
+    return !isTagAware() || ((TagAwareCache) delegate).isInvalidatedBy(key, tags);
+  }
+
+  @Override
+  public boolean isTagAware() {
+    return delegate instanceof TagAwareCache && ((TagAwareCache) delegate).isTagAware();
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    Object value = delegate.getObject(key);
+    if (value == null) {
+      tickets.remove(key);
+    } else {
+      Ticket ticket = tickets.get(key);
+      if (ticket != null) {
+        ticket.hits.incrementAndGet();
+      }
+    }
+    return value;
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    tickets.remove(key);
+    return delegate.removeObject(key);
+  }
+
+  @Override
+  public void clear() {
+    writeLock.lock();
+    try {
+      generation++;
+      tickets.clear();
+      delegate.clear();
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  @Override
+  public boolean claimRefresh(Object key) {
+    Ticket ticket = tickets.get(key);
+    return ticket != null
+        && ticket.hits.get() >= refreshHits
+        && System.currentTimeMillis() >= ticket.refreshAt
+        && ticket.refreshing.compareAndSet(false, true);
+  }
+
+  @Override
+  public void refresh(Object key, Callable<Object> loader) {
+    Ticket ticket = tickets.get(key);
+    if (ticket == null) {
+      return;
+    }
+    long startGeneration = generation;
+    try {
+      refresher.execute(() -> {
+        try {
+          Object value = loader.call();
+          if (value != null && writeBack(key, value, ticket, startGeneration)) {
+            return;
+          }
+        } catch (Exception e) {
+          log.warn("Failed to refresh cache entry in '" + getId() + "'. Cause: " + e);
+        }
+        ticket.refreshing.set(false);
+      });
+    } catch (RejectedExecutionException e) {
+      ticket.refreshing.set(false);
+    }
+  }
+
+  @Override
+  public int hashCode() {
+    return delegate.hashCode();
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return delegate.equals(obj);
+  }
+
+  /**
+   * 刷新期间被失效、移除或替换的值不再写回
+   *
+   * @return 是否写回了刷新结果
+   */
+  private boolean writeBack(Object key, Object value, Ticket ticket, long startGeneration) {
+    writeLock.lock();
+    try {
+      if (startGeneration != generation || tickets.get(key) != ticket || store.getObject(key) == null) {
+        return false;
+      }
+      if (ticket.tags != null && delegate instanceof TagAwareCache) {
+        ((TagAwareCache) delegate).putObject(key, value, ticket.tags);
+      } else {
+        delegate.putObject(key, value);
+      }
+      tickets.replace(key, ticket, new Ticket(System.currentTimeMillis(), ttl, refreshAhead, ticket.tags));
+      return true;
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  private void track(Object key, Object value, String[] tags) {
+    // null 只用于释放锁
+    if (value == null) {
+      return;
+    }
+    long now = System.currentTimeMillis();
+    tickets.put(key, new Ticket(now, ttl, refreshAhead, tags));
+    if (now >= nextSweep) {
+      nextSweep = now + ttl;
+      // 已经过期的值不会再被刷新
+      tickets.values().removeIf(ticket -> now >= ticket.expireAt);
+    }
+  }
+
+  private static ThreadPoolExecutor newRefresher() {
+    int threads = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+        new ArrayBlockingQueue<>(1024), r -> {
+          Thread thread = new Thread(r, "mybatis-cache-refresh");
+          thread.setDaemon(true);
+          return thread;
+        });
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  /**
+   * 一个值的刷新状态
+   */
+  private static final class Ticket {
+    private final long refreshAt;
+    private final long expireAt;
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    /**
+     * 值所依赖的标签，写回时重新索引
+     */
+    private final String[] tags;
+
+    Ticket(long loadedAt, long ttl, double refreshAhead, String[] tags) {
+      this.refreshAt = loadedAt + (long) (ttl * refreshAhead);
+      this.expireAt = loadedAt + ttl;
+      this.tags = tags;
+    }
+  }
+
+}
@@ -15,11 +15,18 @@
  */
 package org.apache.ibatis.cache.decorators;
 
+import java.io.Serializable;
+import java.util.concurrent.ThreadLocalRandom;
+
 import org.apache.ibatis.cache.Cache;
 
 /**
  * 定时清空整个容器的装饰类
  *
+ * 开启 {@link #setPerEntryTtl(boolean)} 后改为每个值单独过期，过期时间在 clearInterval 的基础上随机提前
+ * {@link #setTtlJitter(double)} 比例，避免所有键同时失效；配合 {@link #setRefreshAhead(double)}
+ * 可以在热点键过期前由 {@link RefreshAheadCache} 在后台重新查询。
+ *
  * @author Clinton Begin
  */
 public class ScheduledCache implements Cache {
@@ -32,9 +39,21 @@ public class ScheduledCache implements Cache {
    */
   protected long clearInterval;
   /**
-   * 最后清空时间 单位：毫秒
+   * 最后清空时间 单位：毫秒，没有 SynchronizedCache 时会被多个线程读写
+   */
+  protected volatile long lastClear;
+  /**
+   * 是否每个值单独过期
+   */
+  private boolean perEntryTtl;
+  /**
+   * 过期时间随机提前的最大比例，只在 perEntryTtl 时有效
+   */
+  private double ttlJitter = 0.1;
+  /**
+   * 经过存活时间的多少比例后开始后台刷新，0 表示不刷新，只在 perEntryTtl 时有效
    */
-  protected long lastClear;
+  private double refreshAhead;
 
   public ScheduledCache(Cache delegate) {
     this.delegate = delegate;
@@ -47,6 +66,40 @@ public class ScheduledCache implements Cache {
     this.clearInterval = clearInterval;
   }
 
+  public long getClearInterval() {
+    return clearInterval;
+  }
+
+  public boolean isPerEntryTtl() {
+    return perEntryTtl;
+  }
+
+  public void setPerEntryTtl(boolean perEntryTtl) {
+    this.perEntryTtl = perEntryTtl;
+  }
+
+  public double getTtlJitter() {
+    return ttlJitter;
+  }
+
+  public void setTtlJitter(double ttlJitter) {
+    if (ttlJitter < 0 || ttlJitter >= 1) {
+      throw new IllegalArgumentException("ttlJitter must be in [0, 1) but was " + ttlJitter);
+    }
+    this.ttlJitter = ttlJitter;
+  }
+
+  public double getRefreshAhead() {
+    return refreshAhead;
+  }
+
+  public void setRefreshAhead(double refreshAhead) {
+    if (refreshAhead < 0 || refreshAhead >= 1) {
+      throw new IllegalArgumentException("refreshAhead must be in [0, 1) but was " + refreshAhead);
+    }
+    this.refreshAhead = refreshAhead;
+  }
+
   @Override
   public String getId() {
     return delegate.getId();
@@ -54,7 +107,7 @@ public class ScheduledCache implements Cache {
 
   @Override
   public int getSize() {
-    //判断是否要全部清空
+    //判断是否要全部清空，单独过期时包含已经过期但还没有被访问的值
     clearWhenStale();
     return delegate.getSize();
   }
@@ -63,20 +116,37 @@ public class ScheduledCache implements Cache {
   public void putObject(Object key, Object object) {
     //判读是否要全部清空
     clearWhenStale();
-    delegate.putObject(key, object);
+    if (perEntryTtl && object != null) {
+      delegate.putObject(key, new ExpiringEntry(object, System.currentTimeMillis() + nextTtl()));
+    } else {
+      delegate.putObject(key, object);
+    }
   }
 
   @Override
   public Object getObject(Object key) {
     //判读是否要全部清空
-    return clearWhenStale() ? null : delegate.getObject(key);
+    if (clearWhenStale()) {
+      return null;
+    }
+    Object value = delegate.getObject(key);
+    if (value instanceof ExpiringEntry) {
+      ExpiringEntry entry = (ExpiringEntry) value;
+      if (System.currentTimeMillis() >= entry.expireAt) {
+        delegate.removeObject(key);
+        return null;
+      }
+      return entry.value;
+    }
+    return value;
   }
 
   @Override
   public Object removeObject(Object key) {
     //判读是否要全部清空
     clearWhenStale();
-    return delegate.removeObject(key);
+    Object value = delegate.removeObject(key);
+    return value instanceof ExpiringEntry ? ((ExpiringEntry) value).value : value;
   }
 
   @Override
@@ -103,7 +173,7 @@ public class ScheduledCache implements Cache {
    * @return
    */
   private boolean clearWhenStale() {
-    if (System.currentTimeMillis() - lastClear > clearInterval) {
+    if (!perEntryTtl && System.currentTimeMillis() - lastClear > clearInterval) {
       //清空
       clear();
       return true;
@@ -111,4 +181,33 @@ public class ScheduledCache implements Cache {
     return false;
   }
 
+  /**
+   * @return 在 [clearInterval * (1 - ttlJitter), clearInterval] 之间随机的存活时间
+   */
+  private long nextTtl() {
+    if (ttlJitter == 0) {
+      return clearInterval;
+    }
+    return clearInterval - (long) (clearInterval * ttlJitter * ThreadLocalRandom.current().nextDouble());
+  }
+
+  /**
+   * 带有过期时间的值，基础缓存可能会序列化它
+   */
+  private static final class ExpiringEntry implements Serializable {
+
+    private static final long serialVersionUID = 3416738617399385241L;
+
+    private final Object value;
+    /**
+     * 过期时间，单位：毫秒
+     */
+    private final long expireAt;
+
+    ExpiringEntry(Object value, long expireAt) {
+      this.value = value;
+      this.expireAt = expireAt;
+    }
+  }
+
 }
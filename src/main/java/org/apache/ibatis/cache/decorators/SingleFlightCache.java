@@ -0,0 +1,184 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+
+/**
+ * 合并并发加载的缓存装饰类
+ *
+ * 同一个键并发未命中时，只有第一个线程（leader）去查询数据库，其他线程等待 leader 提交结果后重新读取缓存。
+ * 和 {@link BlockingCache} 不同，只有正在加载中的键会占用内存，加载完成或者回滚后立即移除；
+ * 等待超时后不抛出异常，而是直接去查询数据库。
+ * leader 由未命中时传入的键对象本身（而不是线程）标识，{@link TransactionalCache} 提交或者回滚时会用同一个键对象结束加载，
+ * 所以事务在其他线程上提交也能正确结束加载，而其他会话用相等的键调用 {@link #removeObject(Object)} 不会提前结束加载。
+ *
+ * Single-flight loading decorator. Concurrent misses for the same key wait for the first loader
+ * instead of all hitting the database.
+ *
+ * @since 3.5.3
+ */
+public class SingleFlightCache implements Cache {
+
+  private static final Log log = LogFactory.getLog(SingleFlightCache.class);
+
+  /**
+   * 默认的等待超时时间，单位：毫秒
+   */
+  private static final long DEFAULT_TIMEOUT = 10000L;
+
+  /**
+   * 等待超时时间，单位：毫秒，显式设置为 0 表示一直等待
+   */
+  private long timeout = DEFAULT_TIMEOUT;
+  /**
+   * 装饰对象
+   */
+  private final Cache delegate;
+  /**
+   * 正在加载中的键与加载任务的映射
+   */
+  private final ConcurrentHashMap<Object, Flight> flights = new ConcurrentHashMap<>();
+
+  public SingleFlightCache(Cache delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  public String getId() {
+    return delegate.getId();
+  }
+
+  @Override
+  public int getSize() {
+    return delegate.getSize();
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    try {
+      //添加缓存
+      delegate.putObject(key, value);
+    } finally {
+      //有值时任何线程都可以唤醒等待者，没有值时只有 leader 可以结束加载
+      Flight flight = flights.get(key);
+      if (flight != null && (value != null || flight.isOwnedBy(key))) {
+        land(key, flight);
+      }
+    }
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    long deadline = timeout > 0 ? System.currentTimeMillis() + timeout : 0;
+    while (true) {
+      Object value = delegate.getObject(key);
+      if (value != null) {
+        return value;
+      }
+      Flight flight = new Flight(key);
+      Flight existing = flights.putIfAbsent(key, flight);
+      //成为 leader，由调用方查询数据库后用同一个键对象调用 putObject 或者 removeObject
+      if (existing == null || existing.isOwnedBy(key)) {
+        return null;
+      }
+      //等待 leader 加载完成后重新读取缓存，leader 没有放入结果时竞争成为新的 leader
+      if (!existing.await(deadline, key)) {
+        if (log.isDebugEnabled()) {
+          log.debug("Timed out waiting for key " + key + " at the cache " + getId() + ", loading it concurrently.");
+        }
+        return null;
+      }
+    }
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    // despite of its name, this method is called only to release locks
+    Flight flight = flights.get(key);
+    if (flight != null && flight.isOwnedBy(key)) {
+      land(key, flight);
+    }
+    return null;
+  }
+
+  @Override
+  public void clear() {
+    delegate.clear();
+  }
+
+  /**
+   * @return 正在加载中的键的数量
+   */
+  public int getInFlightCount() {
+    return flights.size();
+  }
+
+  public long getTimeout() {
+    return timeout;
+  }
+
+  public void setTimeout(long timeout) {
+    this.timeout = timeout;
+  }
+
+  private void land(Object key, Flight flight) {
+    flights.remove(key, flight);
+    flight.latch.countDown();
+  }
+
+  private static final class Flight {
+
+    /**
+     * leader 未命中时传入的键对象
+     */
+    private final Object token;
+    private final CountDownLatch latch = new CountDownLatch(1);
+
+    Flight(Object token) {
+      this.token = token;
+    }
+
+    boolean isOwnedBy(Object key) {
+      return token == key;
+    }
+
+    /**
+     * @return false 表示等待超时
+     */
+    boolean await(long deadline, Object key) {
+      try {
+        if (deadline == 0) {
+          latch.await();
+          return true;
+        }
+        return latch.await(deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new CacheException("Got interrupted while waiting for key " + key + " to be loaded", e);
+      }
+    }
+
+  }
+
+}
@@ -19,6 +19,7 @@ import java.lang.ref.ReferenceQueue;
 import java.lang.ref.SoftReference;
 import java.util.Deque;
 import java.util.LinkedList;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.ibatis.cache.Cache;
 
@@ -47,6 +48,10 @@ public class SoftCache implements Cache {
    * {@link #hardLinksToAvoidGarbageCollection} 的大小
    */
   private int numberOfHardLinks;
+  /**
+   * 保护 {@link #hardLinksToAvoidGarbageCollection} 的锁，不使用监视器锁以免固定虚拟线程的载体线程
+   */
+  private final ReentrantLock lock = new ReentrantLock();
 
   public SoftCache(Cache delegate) {
     this.delegate = delegate;
@@ -90,16 +95,19 @@ public class SoftCache implements Cache {
       result = softReference.get();
       if (result == null) {
         // 为空，从 delegate 中移除 。为空的原因是，意味着已经被 GC 回收
-        delegate.removeObject(key);
+        MetricsCache.EvictionCounter.evict(delegate, key);
       } else {
         // 非空，添加到 hardLinksToAvoidGarbageCollection 中，避免被 GC
         // See #586 (and #335) modifications need more than a read lock
-        synchronized (hardLinksToAvoidGarbageCollection) {
+        lock.lock();
+        try {
           hardLinksToAvoidGarbageCollection.addFirst(result);
           // 超过上限，移除 hardLinksToAvoidGarbageCollection 的队尾
           if (hardLinksToAvoidGarbageCollection.size() > numberOfHardLinks) {
             hardLinksToAvoidGarbageCollection.removeLast();
           }
+        } finally {
+          lock.unlock();
         }
       }
     }
@@ -116,8 +124,11 @@ public class SoftCache implements Cache {
   @Override
   public void clear() {
     // 清空 hardLinksToAvoidGarbageCollection
-    synchronized (hardLinksToAvoidGarbageCollection) {
+    lock.lock();
+    try {
       hardLinksToAvoidGarbageCollection.clear();
+    } finally {
+      lock.unlock();
     }
     // 移除已经被 GC 回收的 WeakEntry
     removeGarbageCollectedItems();
@@ -128,7 +139,7 @@ public class SoftCache implements Cache {
   private void removeGarbageCollectedItems() {
     SoftEntry sv;
     while ((sv = (SoftEntry) queueOfGarbageCollectedEntries.poll()) != null) {
-      delegate.removeObject(sv.key);
+      MetricsCache.EvictionCounter.evict(delegate, sv.key);
     }
   }
 
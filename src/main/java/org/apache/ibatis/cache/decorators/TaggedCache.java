@@ -0,0 +1,206 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.TagAwareCache;
+
+/**
+ * 按标签失效的缓存装饰类
+ *
+ * 记录每个标签对应的键，失效时只移除带有指定标签的键和没有标签的键。
+ * 通过 {@link org.apache.ibatis.mapping.CacheBuilder} 创建时，被 LRU 等淘汰策略或者过期移除的键会通过
+ * {@link MetricsCache.EvictionCounter.RemovalListener} 从索引中删除；
+ * 索引的键数量仍然超过 {@link #setIndexLimit(int)} 时清空整个缓存。
+ *
+ * @since 3.5.3
+ */
+public class TaggedCache implements TagAwareCache, MetricsCache.EvictionCounter.RemovalListener {
+
+  /**
+   * 装饰的cache对象
+   */
+  private final Cache delegate;
+  /**
+   * 失效时用于移除键的cache对象，必须位于 {@link BlockingCache} 和 {@link SingleFlightCache} 之下，
+   * 因为它们的 removeObject 只释放锁
+   */
+  private final Cache store;
+  /**
+   * 标签与键的映射
+   */
+  private final ConcurrentHashMap<String, Set<Object>> keysByTag = new ConcurrentHashMap<>();
+  /**
+   * 没有标签的键，任意标签失效时都会被移除
+   */
+  private final Set<Object> untaggedKeys = ConcurrentHashMap.newKeySet();
+  /**
+   * 索引中键的数量（同一个键在多个标签中会被重复计算）
+   */
+  private final AtomicInteger indexedCount = new AtomicInteger();
+  /**
+   * 索引的最大键数量
+   */
+  private int indexLimit = 65536;
+
+  public TaggedCache(Cache delegate) {
+    this(delegate, delegate);
+  }
+
+  public TaggedCache(Cache delegate, Cache store) {
+    this.delegate = delegate;
+    this.store = store;
+  }
+
+  @Override
+  public String getId() {
+    return delegate.getId();
+  }
+
+  @Override
+  public int getSize() {
+    return delegate.getSize();
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    putObject(key, value, null);
+  }
+
+  @Override
+  public void putObject(Object key, Object value, String[] tags) {
+    delegate.putObject(key, value);
+    // null 只用于释放锁
+    if (value == null) {
+      return;
+    }
+    if (tags == null || tags.length == 0) {
+      index(untaggedKeys, key);
+    } else {
+      for (String tag : tags) {
+        index(keysByTag.computeIfAbsent(tag, k -> ConcurrentHashMap.newKeySet()), key);
+      }
+    }
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    return delegate.getObject(key);
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    return delegate.removeObject(key);
+  }
+
+  @Override
+  public void clear() {
+    delegate.clear();
+    clearIndex();
+  }
+
+  @Override
+  public void invalidate(String[] tags) {
+    for (String tag : tags) {
+      Set<Object> keys = keysByTag.remove(tag);
+      if (keys != null) {
+        evict(keys);
+      }
+    }
+    evict(untaggedKeys);
+  }
+
+  @Override
+  public boolean isInvalidatedBy(Object key, String[] tags) {
+    if (untaggedKeys.contains(key)) {
+      return true;
+    }
+    for (String tag : tags) {
+      Set<Object> keys = keysByTag.get(tag);
+      if (keys != null && keys.contains(key)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * 基础缓存中的键被移除后，从所有标签的索引中删除
+   */
+  @Override
+  public void onRemoval(Object key) {
+    unindex(untaggedKeys, key);
+    for (Set<Object> keys : keysByTag.values()) {
+      unindex(keys, key);
+    }
+  }
+
+  @Override
+  public void onClear() {
+    clearIndex();
+  }
+
+  public int getIndexLimit() {
+    return indexLimit;
+  }
+
+  public void setIndexLimit(int indexLimit) {
+    this.indexLimit = indexLimit;
+  }
+
+  private void index(Set<Object> keys, Object key) {
+    if (keys.add(key) && indexedCount.incrementAndGet() > indexLimit) {
+      //索引过大，放弃细粒度失效
+      clear();
+    }
+  }
+
+  private void unindex(Set<Object> keys, Object key) {
+    if (keys.remove(key)) {
+      indexedCount.decrementAndGet();
+    }
+  }
+
+  private void clearIndex() {
+    keysByTag.clear();
+    untaggedKeys.clear();
+    indexedCount.set(0);
+  }
+
+  private void evict(Set<Object> keys) {
+    for (Object key : keys) {
+      if (keys.remove(key)) {
+        indexedCount.decrementAndGet();
+        store.removeObject(key);
+      }
+    }
+  }
+
+  @Override
+  public int hashCode() {
+    return delegate.hashCode();
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return delegate.equals(obj);
+  }
+
+}
@@ -15,12 +15,14 @@
  */
 package org.apache.ibatis.cache.decorators;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.TagAwareCache;
 import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.logging.LogFactory;
 
@@ -35,20 +37,35 @@ import org.apache.ibatis.logging.LogFactory;
  * @author Clinton Begin
  * @author Eduardo Macarron
  */
-public class TransactionalCache implements Cache {
+public class TransactionalCache implements TagAwareCache {
 
   private static final Log log = LogFactory.getLog(TransactionalCache.class);
 
   private final Cache delegate;
+  /**
+   * 被装饰的缓存是否真正支持按标签失效
+   */
+  private final boolean tagAware;
   private boolean clearOnCommit;
   private final Map<Object, Object> entriesToAddOnCommit;
   private final Set<Object> entriesMissedInCache;
+  /**
+   * 待提交的值所依赖的标签
+   */
+  private final Map<Object, String[]> tagsToAddOnCommit;
+  /**
+   * 提交时需要失效的标签
+   */
+  private final Set<String> tagsToInvalidateOnCommit;
 
   public TransactionalCache(Cache delegate) {
     this.delegate = delegate;
+    this.tagAware = delegate instanceof TagAwareCache && ((TagAwareCache) delegate).isTagAware();
     this.clearOnCommit = false;
     this.entriesToAddOnCommit = new HashMap<>();
     this.entriesMissedInCache = new HashSet<>();
+    this.tagsToAddOnCommit = new HashMap<>();
+    this.tagsToInvalidateOnCommit = new HashSet<>();
   }
 
   @Override
@@ -63,6 +80,10 @@ public class TransactionalCache implements Cache {
 
   @Override
   public Object getObject(Object key) {
+    //本事务已经未命中过的键由本事务负责加载，不再询问被装饰的缓存，避免等待自己的加载
+    if (entriesMissedInCache.contains(key)) {
+      return null;
+    }
     // issue #116
     Object object = delegate.getObject(key);
     if (object == null) {
@@ -71,9 +92,13 @@ public class TransactionalCache implements Cache {
     // issue #146
     if (clearOnCommit) {
       return null;
-    } else {
-      return object;
     }
+    //只隐藏会被提交时的标签失效移除的值
+    if (object != null && !tagsToInvalidateOnCommit.isEmpty()
+        && ((TagAwareCache) delegate).isInvalidatedBy(key, tagsToInvalidateOnCommit.toArray(new String[0]))) {
+      return null;
+    }
+    return object;
   }
 
   @Override
@@ -81,6 +106,14 @@ public class TransactionalCache implements Cache {
     entriesToAddOnCommit.put(key, object);
   }
 
+  @Override
+  public void putObject(Object key, Object object, String[] tags) {
+    entriesToAddOnCommit.put(key, object);
+    if (tags != null && tags.length > 0) {
+      tagsToAddOnCommit.put(key, tags);
+    }
+  }
+
   @Override
   public Object removeObject(Object key) {
     return null;
@@ -90,11 +123,38 @@ public class TransactionalCache implements Cache {
   public void clear() {
     clearOnCommit = true;
     entriesToAddOnCommit.clear();
+    tagsToAddOnCommit.clear();
+  }
+
+  /**
+   * 被装饰的缓存不支持标签时退化为 {@link #clear()}
+   */
+  @Override
+  public void invalidate(String[] tags) {
+    if (!tagAware) {
+      clear();
+      return;
+    }
+    Collections.addAll(tagsToInvalidateOnCommit, tags);
+    entriesToAddOnCommit.clear();
+    tagsToAddOnCommit.clear();
+  }
+
+  @Override
+  public boolean isInvalidatedBy(Object key, String[] tags) {
+    return !tagAware || ((TagAwareCache) delegate).isInvalidatedBy(key, tags);
+  }
+
+  @Override
+  public boolean isTagAware() {
+    return tagAware;
   }
 
   public void commit() {
     if (clearOnCommit) {
       delegate.clear();
+    } else if (!tagsToInvalidateOnCommit.isEmpty()) {
+      ((TagAwareCache) delegate).invalidate(tagsToInvalidateOnCommit.toArray(new String[0]));
     }
     flushPendingEntries();
     reset();
@@ -109,11 +169,18 @@ public class TransactionalCache implements Cache {
     clearOnCommit = false;
     entriesToAddOnCommit.clear();
     entriesMissedInCache.clear();
+    tagsToAddOnCommit.clear();
+    tagsToInvalidateOnCommit.clear();
   }
 
   private void flushPendingEntries() {
     for (Map.Entry<Object, Object> entry : entriesToAddOnCommit.entrySet()) {
-      delegate.putObject(entry.getKey(), entry.getValue());
+      String[] tags = tagsToAddOnCommit.get(entry.getKey());
+      if (tags != null && tagAware) {
+        ((TagAwareCache) delegate).putObject(entry.getKey(), entry.getValue(), tags);
+      } else {
+        delegate.putObject(entry.getKey(), entry.getValue());
+      }
     }
     for (Object entry : entriesMissedInCache) {
       if (!entriesToAddOnCommit.containsKey(entry)) {
@@ -89,7 +89,7 @@ public class WeakCache implements Cache {
       result = weakReference.get();
       if (result == null) {
         //为空 从delegate中移除 为空的原因是 意味着已经被GC回收
-        delegate.removeObject(key);
+        MetricsCache.EvictionCounter.evict(delegate, key);
       } else {
         //非空 添加到 hardLinksToAvoidGarbageCollection 中 避免被GC
         hardLinksToAvoidGarbageCollection.addFirst(result);
@@ -126,7 +126,7 @@ public class WeakCache implements Cache {
   private void removeGarbageCollectedItems() {
     WeakEntry sv;
     while ((sv = (WeakEntry) queueOfGarbageCollectedEntries.poll()) != null) {
-      delegate.removeObject(sv.key);
+      MetricsCache.EvictionCounter.evict(delegate, sv.key);
     }
   }
 
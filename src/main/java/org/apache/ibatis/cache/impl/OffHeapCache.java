@@ -0,0 +1,355 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.impl;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.ibatis.builder.InitializingObject;
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CacheSerializer;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+
+/**
+ * 把序列化后的值保存在堆外内存中的缓存
+ *
+ * 堆外内存在初始化时按 capacity 一次性分配，并切分成大小为 blockSize 的块，每个值占用若干个块，
+ * 所以不会产生碎片。空间不足时淘汰最近最少使用的值，配置了 timeToLive 时过期的值在读取时丢弃。
+ * 只有键和块的索引保存在堆上。
+ *
+ * <pre>
+ * &lt;cache type="org.apache.ibatis.cache.impl.OffHeapCache"&gt;
+ *   &lt;property name="capacity" value="268435456"/&gt;
+ *   &lt;property name="timeToLive" value="600000"/&gt;
+ *   &lt;property name="serializer" value="com.example.KryoCacheSerializer"/&gt;
+ * &lt;/cache&gt;
+ * </pre>
+ *
+ * 值在放入和读取时都会被复制，相当于 readOnly="false" 的缓存。
+ *
+ * @since 3.5.3
+ */
+public class OffHeapCache implements Cache, InitializingObject {
+
+  private static final Log log = LogFactory.getLog(OffHeapCache.class);
+
+  /**
+   * 单个 ByteBuffer 的最大容量
+   */
+  private static final int MAX_SLAB_SIZE = 1 << 30;
+
+  /**
+   * 表示ID
+   */
+  private final String id;
+  /**
+   * 堆外内存的总大小，单位：字节，默认 64MB
+   */
+  private long capacity = 64L * 1024 * 1024;
+  /**
+   * 块大小，单位：字节，默认 1KB
+   */
+  private int blockSize = 1024;
+  /**
+   * 值的存活时间，单位：毫秒，0 表示不过期
+   */
+  private long timeToLive;
+  /**
+   * 序列化器
+   */
+  private CacheSerializer serializer = new JavaCacheSerializer();
+
+  /**
+   * 使用 {@link ReentrantLock} 而不是监视器锁，虚拟线程在持锁期间不会固定（pin）其载体线程
+   */
+  private final ReentrantLock lock = new ReentrantLock();
+
+  // 以下字段由 lock 保护
+  /**
+   * 键与块索引的映射，按访问顺序排序，最早访问的在最前面
+   */
+  private final LinkedHashMap<Object, Entry> entries = new LinkedHashMap<>(16, .75F, true);
+  /**
+   * 堆外内存
+   */
+  private ByteBuffer[] slabs;
+  /**
+   * 每个 slab 包含的块数
+   */
+  private int blocksPerSlab;
+  /**
+   * 空闲块的栈
+   */
+  private int[] freeBlocks;
+  /**
+   * 空闲块的数量
+   */
+  private int freeCount;
+
+  public OffHeapCache(String id) {
+    this.id = id;
+  }
+
+  @Override
+  public void initialize() {
+    lock.lock();
+    try {
+      if (slabs != null) {
+        return;
+      }
+      if (blockSize <= 0 || blockSize > MAX_SLAB_SIZE || capacity < blockSize) {
+        throw new CacheException("Invalid off-heap cache settings for '" + id + "': capacity " + capacity
+            + ", blockSize " + blockSize);
+      }
+      int totalBlocks = (int) Math.min(capacity / blockSize, Integer.MAX_VALUE);
+      blocksPerSlab = MAX_SLAB_SIZE / blockSize;
+      slabs = new ByteBuffer[(totalBlocks + blocksPerSlab - 1) / blocksPerSlab];
+      for (int i = 0; i < slabs.length; i++) {
+        int blocks = Math.min(blocksPerSlab, totalBlocks - i * blocksPerSlab);
+        slabs[i] = ByteBuffer.allocateDirect(blocks * blockSize);
+      }
+      freeBlocks = new int[totalBlocks];
+      resetFreeBlocks();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public String getId() {
+    return id;
+  }
+
+  @Override
+  public int getSize() {
+    lock.lock();
+    try {
+      return entries.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    // TransactionalCache 会为没有结果的键放入 null
+    if (value == null) {
+      removeObject(key);
+      return;
+    }
+    //在锁外序列化
+    byte[] bytes = serializer.serialize(value);
+    int needed = (bytes.length + blockSize - 1) / blockSize;
+    lock.lock();
+    try {
+      initialize();
+      release(entries.remove(key));
+      if (needed > freeBlocks.length) {
+        if (log.isDebugEnabled()) {
+          log.debug("Value of " + bytes.length + " bytes for key " + key + " does not fit in the cache " + id + ".");
+        }
+        return;
+      }
+      //空间不足时淘汰最近最少使用的值
+      Iterator<Entry> eldest = entries.values().iterator();
+      while (freeCount < needed) {
+        Entry entry = eldest.next();
+        eldest.remove();
+        release(entry);
+      }
+      int[] blocks = new int[needed];
+      for (int i = 0; i < needed; i++) {
+        blocks[i] = freeBlocks[--freeCount];
+        int offset = i * blockSize;
+        ByteBuffer slab = slabFor(blocks[i]);
+        slab.put(bytes, offset, Math.min(blockSize, bytes.length - offset));
+      }
+      long expireAt = timeToLive > 0 ? System.currentTimeMillis() + timeToLive : 0;
+      entries.put(key, new Entry(blocks, bytes.length, expireAt));
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    byte[] bytes;
+    lock.lock();
+    try {
+      Entry entry = entries.get(key);
+      if (entry == null) {
+        return null;
+      }
+      if (entry.expireAt > 0 && System.currentTimeMillis() > entry.expireAt) {
+        entries.remove(key);
+        release(entry);
+        return null;
+      }
+      bytes = new byte[entry.length];
+      for (int i = 0; i < entry.blocks.length; i++) {
+        int offset = i * blockSize;
+        ByteBuffer slab = slabFor(entry.blocks[i]);
+        slab.get(bytes, offset, Math.min(blockSize, bytes.length - offset));
+      }
+    } finally {
+      lock.unlock();
+    }
+    //在锁外反序列化
+    return serializer.deserialize(bytes);
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    lock.lock();
+    try {
+      release(entries.remove(key));
+      return null;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void clear() {
+    lock.lock();
+    try {
+      entries.clear();
+      if (slabs != null) {
+        resetFreeBlocks();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return 已经使用的堆外内存，单位：字节
+   */
+  public long getUsedBytes() {
+    lock.lock();
+    try {
+      return freeBlocks == null ? 0 : (long) (freeBlocks.length - freeCount) * blockSize;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public long getCapacity() {
+    return capacity;
+  }
+
+  public void setCapacity(long capacity) {
+    this.capacity = capacity;
+  }
+
+  public int getBlockSize() {
+    return blockSize;
+  }
+
+  public void setBlockSize(int blockSize) {
+    this.blockSize = blockSize;
+  }
+
+  public long getTimeToLive() {
+    return timeToLive;
+  }
+
+  public void setTimeToLive(long timeToLive) {
+    this.timeToLive = timeToLive;
+  }
+
+  /**
+   * @param serializer {@link CacheSerializer} 实现类的全限定名
+   */
+  public void setSerializer(String serializer) {
+    try {
+      this.serializer = (CacheSerializer) Resources.classForName(serializer).getDeclaredConstructor().newInstance();
+    } catch (Exception e) {
+      throw new CacheException("Error creating cache serializer '" + serializer + "'.  Cause: " + e, e);
+    }
+  }
+
+  /**
+   * 定位到块的起始位置，转成 {@link Buffer} 调用 position，JDK 9+ 编译的字节码才能在 Java 8 上运行
+   */
+  private ByteBuffer slabFor(int block) {
+    ByteBuffer slab = slabs[block / blocksPerSlab];
+    ((Buffer) slab).position((block % blocksPerSlab) * blockSize);
+    return slab;
+  }
+
+  private void release(Entry entry) {
+    if (entry == null) {
+      return;
+    }
+    for (int block : entry.blocks) {
+      freeBlocks[freeCount++] = block;
+    }
+  }
+
+  private void resetFreeBlocks() {
+    for (int i = 0; i < freeBlocks.length; i++) {
+      freeBlocks[i] = freeBlocks.length - 1 - i;
+    }
+    freeCount = freeBlocks.length;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (getId() == null) {
+      throw new CacheException("Cache instances require an ID.");
+    }
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof Cache)) {
+      return false;
+    }
+
+    Cache otherCache = (Cache) o;
+    return getId().equals(otherCache.getId());
+  }
+
+  @Override
+  public int hashCode() {
+    if (getId() == null) {
+      throw new CacheException("Cache instances require an ID.");
+    }
+    return getId().hashCode();
+  }
+
+  private static final class Entry {
+
+    private final int[] blocks;
+    private final int length;
+    private final long expireAt;
+
+    Entry(int[] blocks, int length, long expireAt) {
+      this.blocks = blocks;
+      this.length = length;
+      this.expireAt = expireAt;
+    }
+
+  }
+
+}
@@ -0,0 +1,519 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.lang.ref.WeakReference;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ibatis.datasource.unpooled.UnpooledDataSource;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+
+/**
+ * {@link PoolType#CONCURRENT} 模式下的连接池实现
+ *
+ * 所有连接保存在 {@link CopyOnWriteArrayList} 中，每个连接的状态通过 CAS 切换，获取连接的顺序为：
+ * 1. 当前线程最近归还的连接（线程亲和）
+ * 2. 扫描共享列表中的空闲连接
+ * 3. 未达到 poolMaximumActiveConnections 时创建新连接
+ * 4. 回收超时未归还的连接
+ * 5. 在公平的 {@link SynchronousQueue} 上等待其他线程直接移交归还的连接
+ *
+ * 整个过程不持有 {@link PoolState} 的监视器锁，每次获取仍然会创建新的 {@link PooledConnection} 代理，
+ * 和 {@link PoolType#SYNCHRONIZED} 模式一样，归还后旧的代理对象立即失效。
+ */
+class ConcurrentConnectionBag {
+
+  private static final Log log = LogFactory.getLog(ConcurrentConnectionBag.class);
+
+  /**
+   * 每个线程最多缓存的连接数量
+   */
+  private static final int MAX_THREAD_LOCAL_ENTRIES = 16;
+
+  private final PooledDataSource pooledDataSource;
+  private final UnpooledDataSource dataSource;
+  private final PoolState state;
+
+  /**
+   * 池中所有的连接，包括使用中和空闲的
+   */
+  private final CopyOnWriteArrayList<PoolEntry> sharedList = new CopyOnWriteArrayList<>();
+  /**
+   * 当前线程归还的连接，使用弱引用避免线程存活期间持有已移除的连接
+   */
+  private final ThreadLocal<List<WeakReference<PoolEntry>>> threadList = ThreadLocal.withInitial(ArrayList::new);
+  /**
+   * 等待连接的线程通过该队列直接获取归还的连接，公平模式保证先等待的线程先获取
+   */
+  private final SynchronousQueue<PoolEntry> handoffQueue = new SynchronousQueue<>(true);
+  /**
+   * 正在等待连接的线程数
+   */
+  private final AtomicInteger waiters = new AtomicInteger();
+  /**
+   * 连接总数，包括正在创建中的连接，用于保证不超过 poolMaximumActiveConnections
+   */
+  private final AtomicInteger totalConnections = new AtomicInteger();
+
+  ConcurrentConnectionBag(PooledDataSource pooledDataSource, UnpooledDataSource dataSource, PoolState state) {
+    this.pooledDataSource = pooledDataSource;
+    this.dataSource = dataSource;
+    this.state = state;
+  }
+
+  /**
+   * 获取连接
+   *
+   * @param username 用户名
+   * @param password 密码
+   * @return PooledConnection 对象
+   * @throws SQLException 获取不到有效的连接
+   */
+  PooledConnection borrow(String username, String password) throws SQLException {
+    //标记获取连接的时候是否进行了等待
+    boolean countedWait = false;
+    //记录当前时间
+    long t = System.currentTimeMillis();
+    //记录当前方法，获取到坏连接的次数
+    int localBadConnectionCount = 0;
+
+    while (true) {
+      PoolEntry entry = acquire();
+      if (entry == null) {
+        entry = create();
+      }
+      if (entry == null) {
+        entry = claimOverdue();
+      }
+      if (entry == null) {
+        // Must wait
+        if (!countedWait) {
+          state.recordWait();
+          countedWait = true;
+        }
+        if (log.isDebugEnabled()) {
+          log.debug("Waiting as long as " + pooledDataSource.poolTimeToWait + " milliseconds for connection.");
+        }
+        long wt = System.currentTimeMillis();
+        waiters.incrementAndGet();
+        try {
+          entry = handoffQueue.poll(pooledDataSource.poolTimeToWait, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          break;
+        } finally {
+          waiters.decrementAndGet();
+        }
+        state.recordWaitTime(System.currentTimeMillis() - wt);
+        // 移交的连接可能已经被扫描共享列表的线程抢走
+        if (entry == null || !entry.state.compareAndSet(PoolEntry.STATE_NOT_IN_USE, PoolEntry.STATE_IN_USE)) {
+          continue;
+        }
+      }
+
+      PooledConnection conn = new PooledConnection(entry.realConnection, pooledDataSource);
+      conn.setPoolEntry(entry);
+      conn.setCreatedTimestamp(entry.createdTimestamp);
+      conn.setLastUsedTimestamp(entry.lastUsedTimestamp);
+      // ping to server and check the connection is valid or not
+      if (conn.isValid()) {
+        try {
+          if (!conn.getRealConnection().getAutoCommit()) {
+            conn.getRealConnection().rollback();
+          }
+        } catch (SQLException e) {
+          remove(entry);
+          closeQuietly(entry.realConnection);
+          throw e;
+        }
+        conn.setConnectionTypeCode(pooledDataSource.assembleConnectionTypeCode(dataSource.getUrl(), username, password));
+        conn.setCheckoutTimestamp(System.currentTimeMillis());
+        conn.setLastUsedTimestamp(System.currentTimeMillis());
+        entry.connection = conn;
+        // 校验期间被 forceCloseAll 移除
+        if (entry.state.get() == PoolEntry.STATE_REMOVED) {
+          conn.invalidate();
+          continue;
+        }
+        state.recordRequest(System.currentTimeMillis() - t);
+        return conn;
+      }
+      if (log.isDebugEnabled()) {
+        log.debug("A bad connection (" + conn.getRealHashCode() + ") was returned from the pool, getting another connection.");
+      }
+      remove(entry);
+      closeQuietly(entry.realConnection);
+      state.recordBadConnection();
+      localBadConnectionCount++;
+      if (localBadConnectionCount > (pooledDataSource.poolMaximumIdleConnections + pooledDataSource.poolMaximumLocalBadConnectionTolerance)) {
+        if (log.isDebugEnabled()) {
+          log.debug("PooledDataSource: Could not get a good connection to the database.");
+        }
+        throw new SQLException("PooledDataSource: Could not get a good connection to the database.");
+      }
+    }
+
+    if (log.isDebugEnabled()) {
+      log.debug("PooledDataSource: Unknown severe error condition.  The connection pool returned a null connection.");
+    }
+    throw new SQLException("PooledDataSource: Unknown severe error condition.  The connection pool returned a null connection.");
+  }
+
+  /**
+   * 归还连接
+   *
+   * @param conn 归还的 PooledConnection 对象
+   * @throws SQLException 回滚或关闭真实的连接失败
+   */
+  void requite(PooledConnection conn) throws SQLException {
+    PoolEntry entry = conn.getPoolEntry();
+    // 已经被回收或者移除的连接
+    if (entry == null || !reserve(entry, conn)) {
+      if (log.isDebugEnabled()) {
+        log.debug("A bad connection (" + conn.getRealHashCode() + ") attempted to return to the pool, discarding connection.");
+      }
+      state.recordBadConnection();
+      return;
+    }
+    if (!conn.isValid()) {
+      if (log.isDebugEnabled()) {
+        log.debug("A bad connection (" + conn.getRealHashCode() + ") attempted to return to the pool, discarding connection.");
+      }
+      conn.invalidate();
+      remove(entry);
+      closeQuietly(entry.realConnection);
+      state.recordBadConnection();
+      return;
+    }
+
+    //统计连接使用时长
+    state.recordCheckoutTime(conn.getCheckoutTime());
+    entry.lastUsedTimestamp = conn.getLastUsedTimestamp();
+    //设置原连接失效，避免有人还在使用
+    conn.invalidate();
+    boolean keep = conn.getConnectionTypeCode() == pooledDataSource.getExpectedConnectionTypeCode()
+        && !pooledDataSource.isExpired(entry.createdTimestamp)
+        && (waiters.get() > 0 || getIdleCount() < pooledDataSource.poolMaximumIdleConnections);
+    try {
+      if (!entry.realConnection.getAutoCommit()) {
+        entry.realConnection.rollback();
+      }
+    } catch (SQLException e) {
+      remove(entry);
+      closeQuietly(entry.realConnection);
+      throw e;
+    }
+    if (keep) {
+      entry.connection = null;
+      if (entry.state.compareAndSet(PoolEntry.STATE_RESERVED, PoolEntry.STATE_NOT_IN_USE)) {
+        if (log.isDebugEnabled()) {
+          log.debug("Returned connection " + conn.getRealHashCode() + " to pool.");
+        }
+        handoff(entry, true);
+      }
+    } else {
+      remove(entry);
+      entry.realConnection.close();
+      if (log.isDebugEnabled()) {
+        log.debug("Closed connection " + conn.getRealHashCode() + ".");
+      }
+    }
+  }
+
+  /**
+   * 关闭所有的连接
+   */
+  void forceCloseAll() {
+    for (PoolEntry entry : sharedList) {
+      entry.state.set(PoolEntry.STATE_REMOVED);
+      if (sharedList.remove(entry)) {
+        totalConnections.decrementAndGet();
+      }
+      PooledConnection conn = entry.connection;
+      if (conn != null) {
+        conn.invalidate();
+      }
+      try {
+        Connection realConn = entry.realConnection;
+        if (!realConn.getAutoCommit()) {
+          realConn.rollback();
+        }
+        realConn.close();
+      } catch (Exception e) {
+        // ignore
+      }
+    }
+  }
+
+  /**
+   * 后台维护：关闭超过最大存活时间和最大空闲时间的空闲连接，后台侦测空闲连接，补足最少空闲连接数
+   */
+  void housekeep() {
+    int idleCount = getIdleCount();
+    for (PoolEntry entry : sharedList) {
+      // 锁定空闲连接，避免维护期间被其他线程获取
+      if (!entry.state.compareAndSet(PoolEntry.STATE_NOT_IN_USE, PoolEntry.STATE_RESERVED)) {
+        continue;
+      }
+      if (pooledDataSource.isExpired(entry.createdTimestamp)
+          || (idleCount > pooledDataSource.poolMinimumIdleConnections && pooledDataSource.isIdleTimeout(entry.lastUsedTimestamp))) {
+        remove(entry);
+        closeQuietly(entry.realConnection);
+        idleCount--;
+        if (log.isDebugEnabled()) {
+          log.debug("Retired idle connection " + entry.realConnection.hashCode() + ".");
+        }
+        continue;
+      }
+      if (pooledDataSource.poolPingEnabled && pooledDataSource.poolPingInBackground) {
+        PooledConnection probe = new PooledConnection(entry.realConnection, pooledDataSource);
+        probe.setLastUsedTimestamp(entry.lastUsedTimestamp);
+        if (!pooledDataSource.pingConnectionInBackground(probe)) {
+          remove(entry);
+          closeQuietly(entry.realConnection);
+          state.recordBadConnection();
+          idleCount--;
+          continue;
+        }
+      }
+      if (entry.state.compareAndSet(PoolEntry.STATE_RESERVED, PoolEntry.STATE_NOT_IN_USE)) {
+        handoff(entry, false);
+      }
+    }
+    //补足最少空闲连接数
+    int missing = Math.min(pooledDataSource.poolMinimumIdleConnections, pooledDataSource.poolMaximumIdleConnections) - idleCount;
+    for (int i = 0; i < missing; i++) {
+      PoolEntry entry;
+      try {
+        entry = create();
+      } catch (SQLException e) {
+        log.warn("Could not create idle connection: " + e.getMessage());
+        return;
+      }
+      if (entry == null) {
+        return;
+      }
+      if (entry.state.compareAndSet(PoolEntry.STATE_IN_USE, PoolEntry.STATE_NOT_IN_USE)) {
+        handoff(entry, false);
+      }
+    }
+  }
+
+  int getActiveCount() {
+    return countByState(PoolEntry.STATE_IN_USE);
+  }
+
+  int getIdleCount() {
+    return countByState(PoolEntry.STATE_NOT_IN_USE);
+  }
+
+  private int countByState(int entryState) {
+    int count = 0;
+    for (PoolEntry entry : sharedList) {
+      if (entry.state.get() == entryState) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * 从本线程归还的连接以及共享列表中获取空闲连接
+   */
+  private PoolEntry acquire() {
+    List<WeakReference<PoolEntry>> list = threadList.get();
+    for (int i = list.size() - 1; i >= 0; i--) {
+      PoolEntry entry = list.remove(i).get();
+      if (entry != null && entry.state.compareAndSet(PoolEntry.STATE_NOT_IN_USE, PoolEntry.STATE_IN_USE)) {
+        return entry;
+      }
+    }
+    for (PoolEntry entry : sharedList) {
+      if (entry.state.compareAndSet(PoolEntry.STATE_NOT_IN_USE, PoolEntry.STATE_IN_USE)) {
+        if (log.isDebugEnabled()) {
+          log.debug("Checked out connection " + entry.realConnection.hashCode() + " from pool.");
+        }
+        return entry;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * 未达到最大连接数时，创建新的连接
+   */
+  private PoolEntry create() throws SQLException {
+    int total;
+    do {
+      total = totalConnections.get();
+      if (total >= pooledDataSource.poolMaximumActiveConnections) {
+        return null;
+      }
+    } while (!totalConnections.compareAndSet(total, total + 1));
+    try {
+      PoolEntry entry = new PoolEntry(pooledDataSource.openConnection());
+      sharedList.add(entry);
+      if (log.isDebugEnabled()) {
+        log.debug("Created connection " + entry.realConnection.hashCode() + ".");
+      }
+      return entry;
+    } catch (SQLException | RuntimeException e) {
+      totalConnections.decrementAndGet();
+      throw e;
+    }
+  }
+
+  /**
+   * 回收使用时间超过 poolMaximumCheckoutTime 的连接
+   */
+  private PoolEntry claimOverdue() {
+    PoolEntry oldest = null;
+    PooledConnection overdue = null;
+    long longestCheckoutTime = 0;
+    for (PoolEntry entry : sharedList) {
+      PooledConnection conn = entry.connection;
+      if (conn != null && entry.state.get() == PoolEntry.STATE_IN_USE && conn.getCheckoutTime() > longestCheckoutTime) {
+        oldest = entry;
+        overdue = conn;
+        longestCheckoutTime = conn.getCheckoutTime();
+      }
+    }
+    if (oldest == null || longestCheckoutTime <= pooledDataSource.poolMaximumCheckoutTime) {
+      return null;
+    }
+    if (!oldest.state.compareAndSet(PoolEntry.STATE_IN_USE, PoolEntry.STATE_RESERVED)) {
+      return null;
+    }
+    if (oldest.connection != overdue) {
+      oldest.state.compareAndSet(PoolEntry.STATE_RESERVED, PoolEntry.STATE_IN_USE);
+      return null;
+    }
+    oldest.connection = null;
+    overdue.invalidate();
+    if (!oldest.state.compareAndSet(PoolEntry.STATE_RESERVED, PoolEntry.STATE_IN_USE)) {
+      return null;
+    }
+    state.recordClaimedOverdue(longestCheckoutTime);
+    // 如果非自动提交的，需要进行回滚。即将原有执行中的事务，全部回滚。
+    try {
+      if (!oldest.realConnection.getAutoCommit()) {
+        oldest.realConnection.rollback();
+      }
+    } catch (SQLException e) {
+      log.debug("Bad connection. Could not roll back");
+    }
+    if (log.isDebugEnabled()) {
+      log.debug("Claimed overdue connection " + oldest.realConnection.hashCode() + ".");
+    }
+    return oldest;
+  }
+
+  /**
+   * 归还连接时，锁定连接的状态，只有当前持有者才能锁定成功
+   */
+  private boolean reserve(PoolEntry entry, PooledConnection conn) {
+    while (entry.connection == conn) {
+      if (entry.state.compareAndSet(PoolEntry.STATE_IN_USE, PoolEntry.STATE_RESERVED)) {
+        if (entry.connection == conn) {
+          return true;
+        }
+        entry.state.compareAndSet(PoolEntry.STATE_RESERVED, PoolEntry.STATE_IN_USE);
+        return false;
+      }
+      if (entry.state.get() == PoolEntry.STATE_REMOVED) {
+        return false;
+      }
+      // 正在被其他线程回收，稍后重试
+      Thread.yield();
+    }
+    return false;
+  }
+
+  /**
+   * 有线程等待时直接移交连接，否则放入本线程的缓存中
+   *
+   * @param entry 空闲连接
+   * @param threadLocal 是否放入本线程的缓存中，后台维护线程不需要
+   */
+  private void handoff(PoolEntry entry, boolean threadLocal) {
+    while (waiters.get() > 0) {
+      if (entry.state.get() != PoolEntry.STATE_NOT_IN_USE || handoffQueue.offer(entry)) {
+        return;
+      }
+      Thread.yield();
+    }
+    if (!threadLocal) {
+      return;
+    }
+    List<WeakReference<PoolEntry>> list = threadList.get();
+    if (list.size() < MAX_THREAD_LOCAL_ENTRIES) {
+      list.add(new WeakReference<>(entry));
+    }
+  }
+
+  private void remove(PoolEntry entry) {
+    entry.state.set(PoolEntry.STATE_REMOVED);
+    if (sharedList.remove(entry)) {
+      totalConnections.decrementAndGet();
+    }
+  }
+
+  private void closeQuietly(Connection realConnection) {
+    try {
+      realConnection.close();
+    } catch (Exception e) {
+      // ignore
+    }
+  }
+
+  /**
+   * 池中的一个真实连接
+   */
+  static final class PoolEntry {
+
+    static final int STATE_NOT_IN_USE = 0;
+    static final int STATE_IN_USE = 1;
+    /**
+     * 正在归还或者被回收，其他线程不能获取
+     */
+    static final int STATE_RESERVED = -1;
+    static final int STATE_REMOVED = -2;
+
+    final AtomicInteger state = new AtomicInteger(STATE_IN_USE);
+    final Connection realConnection;
+    final long createdTimestamp;
+    volatile long lastUsedTimestamp;
+    /**
+     * 当前持有者获取到的 PooledConnection 对象，空闲时为 null
+     */
+    volatile PooledConnection connection;
+
+    PoolEntry(Connection realConnection) {
+      this.realConnection = realConnection;
+      this.createdTimestamp = System.currentTimeMillis();
+      this.lastUsedTimestamp = this.createdTimestamp;
+    }
+  }
+
+}
@@ -0,0 +1,130 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 无锁的耗时直方图，单位为毫秒
+ *
+ * 第 0 个桶记录 0ms，第 i 个桶记录 [2^(i-1), 2^i - 1] 毫秒，最后一个桶记录所有更大的值。
+ * 记录和读取都不需要加锁，读取到的是近似一致的快照。
+ */
+public class LatencyHistogram {
+
+  private static final int BUCKET_COUNT = 32;
+
+  private final LongAdder[] buckets = new LongAdder[BUCKET_COUNT];
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sum = new LongAdder();
+  private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+  public LatencyHistogram() {
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      buckets[i] = new LongAdder();
+    }
+  }
+
+  /**
+   * 记录一次耗时
+   *
+   * @param millis 耗时，小于 0 时按 0 处理
+   */
+  public void record(long millis) {
+    long value = Math.max(millis, 0);
+    buckets[bucketIndex(value)].increment();
+    count.increment();
+    sum.add(value);
+    max.accumulate(value);
+  }
+
+  public long getCount() {
+    return count.sum();
+  }
+
+  public long getSum() {
+    return sum.sum();
+  }
+
+  public long getMax() {
+    return max.get();
+  }
+
+  public long getMean() {
+    long c = count.sum();
+    return c == 0 ? 0 : sum.sum() / c;
+  }
+
+  /**
+   * 获得百分位的近似值，返回所在桶的上界
+   *
+   * @param percentile 百分位，取值范围 (0, 100]
+   * @return 耗时的近似值
+   */
+  public long getPercentile(double percentile) {
+    long[] counts = getBucketCounts();
+    long total = 0;
+    for (long c : counts) {
+      total += c;
+    }
+    if (total == 0) {
+      return 0;
+    }
+    long threshold = (long) Math.ceil(total * Math.min(Math.max(percentile, 0), 100) / 100);
+    long seen = 0;
+    for (int i = 0; i < counts.length; i++) {
+      seen += counts[i];
+      if (seen >= threshold && counts[i] > 0) {
+        return Math.min(getBucketUpperBound(i), getMax());
+      }
+    }
+    return getMax();
+  }
+
+  /**
+   * @return 每个桶的计数
+   */
+  public long[] getBucketCounts() {
+    long[] counts = new long[BUCKET_COUNT];
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      counts[i] = buckets[i].sum();
+    }
+    return counts;
+  }
+
+  /**
+   * @param bucket 桶的下标
+   * @return 桶记录的最大耗时，最后一个桶返回 {@link Long#MAX_VALUE}
+   */
+  public static long getBucketUpperBound(int bucket) {
+    if (bucket >= BUCKET_COUNT - 1) {
+      return Long.MAX_VALUE;
+    }
+    return (1L << bucket) - 1;
+  }
+
+  private static int bucketIndex(long value) {
+    return Math.min(64 - Long.numberOfLeadingZeros(value), BUCKET_COUNT - 1);
+  }
+
+  @Override
+  public String toString() {
+    return "count=" + getCount() + ", mean=" + getMean() + ", p50=" + getPercentile(50) + ", p99=" + getPercentile(99)
+        + ", max=" + getMax();
+  }
+
+}
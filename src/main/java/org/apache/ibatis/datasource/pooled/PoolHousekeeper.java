@@ -0,0 +1,68 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+
+/**
+ * 连接池的后台维护线程，定期调用 {@link PooledDataSource#housekeep()}
+ *
+ * 只持有 PooledDataSource 的弱引用，PooledDataSource 被回收后自动停止。
+ */
+class PoolHousekeeper implements Runnable {
+
+  private static final Log log = LogFactory.getLog(PoolHousekeeper.class);
+
+  private final WeakReference<PooledDataSource> dataSource;
+  private final ScheduledExecutorService executor;
+
+  PoolHousekeeper(PooledDataSource dataSource, long interval) {
+    this.dataSource = new WeakReference<>(dataSource);
+    this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "mybatis-pool-housekeeper");
+      thread.setDaemon(true);
+      return thread;
+    });
+    // 第一次立即执行，用于预热连接池
+    executor.scheduleWithFixedDelay(this, 0, interval, TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public void run() {
+    PooledDataSource ds = dataSource.get();
+    if (ds == null) {
+      shutdown();
+      return;
+    }
+    try {
+      ds.housekeep();
+    } catch (Exception e) {
+      // 不能抛出异常，否则后续的任务不会再执行
+      log.warn("Pool housekeeping failed. Cause: " + e);
+    }
+  }
+
+  void shutdown() {
+    executor.shutdownNow();
+  }
+
+}
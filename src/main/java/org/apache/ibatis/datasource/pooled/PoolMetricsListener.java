@@ -0,0 +1,63 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+/**
+ * 连接池的统计监听器，通过 {@link PooledDataSource#setPoolMetricsListener(PoolMetricsListener)} 设置
+ *
+ * 回调在获取、归还连接的线程中执行，实现类应当足够轻量并且不能阻塞。
+ */
+public interface PoolMetricsListener {
+
+  /**
+   * 获取连接成功
+   *
+   * @param requestTime 获取连接的耗时，单位毫秒
+   */
+  default void onConnectionRequested(long requestTime) {
+  }
+
+  /**
+   * 等待其他线程归还连接
+   *
+   * @param waitTime 本次等待的耗时，单位毫秒
+   */
+  default void onConnectionWaited(long waitTime) {
+  }
+
+  /**
+   * 连接被归还
+   *
+   * @param checkoutTime 连接被使用的时长，单位毫秒
+   */
+  default void onConnectionReturned(long checkoutTime) {
+  }
+
+  /**
+   * 超时未归还的连接被回收
+   *
+   * @param checkoutTime 被回收的连接的使用时长，单位毫秒
+   */
+  default void onOverdueConnectionClaimed(long checkoutTime) {
+  }
+
+  /**
+   * 获取或者归还了坏的连接
+   */
+  default void onBadConnection() {
+  }
+
+}
@@ -17,6 +17,8 @@ package org.apache.ibatis.datasource.pooled;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * @author Clinton Begin
@@ -35,94 +37,304 @@ public class PoolState {
    * 活动的PooledConnection集合
    */
   protected final List<PooledConnection> activeConnections = new ArrayList<>();
+  /**
+   * 空闲连接数，在连接池的锁内随 {@link #idleConnections} 更新，读取时不加锁
+   */
+  private final AtomicInteger idleConnectionCount = new AtomicInteger();
+  /**
+   * 活动连接数，在连接池的锁内随 {@link #activeConnections} 更新，读取时不加锁
+   */
+  private final AtomicInteger activeConnectionCount = new AtomicInteger();
   /**
    * 全局统计 - 获取连接的次数
    */
-  protected long requestCount = 0;
+  private final LongAdder requestCount = new LongAdder();
   /**
    * 全局统计 - 获取连接的时间
    */
-  protected long accumulatedRequestTime = 0;
+  private final LongAdder accumulatedRequestTime = new LongAdder();
   /**
    * 全局统计 - 获取到连接非超市 + 超时的占用时长
    * 所以，包括 {@link #accumulatedCheckoutTimeOfOverdueConnections} 部分
    */
-  protected long accumulatedCheckoutTime = 0;
+  private final LongAdder accumulatedCheckoutTime = new LongAdder();
   /**
    * 全局统计 - 获取到连接超时的次数
    */
-  protected long claimedOverdueConnectionCount = 0;
+  private final LongAdder claimedOverdueConnectionCount = new LongAdder();
   /**
    * 全局统计 - 获取到连接超时的占用时长
    */
-  protected long accumulatedCheckoutTimeOfOverdueConnections = 0;
+  private final LongAdder accumulatedCheckoutTimeOfOverdueConnections = new LongAdder();
   /**
    * 全局统计 - 等待连接的时间
    */
-  protected long accumulatedWaitTime = 0;
+  private final LongAdder accumulatedWaitTime = new LongAdder();
   /**
    * 全局统计 - 等待连接的次数
    */
-  protected long hadToWaitCount = 0;
+  private final LongAdder hadToWaitCount = new LongAdder();
   /**
    * 全局统计 - 获取到坏的连接次数
    */
-  protected long badConnectionCount = 0;
+  private final LongAdder badConnectionCount = new LongAdder();
+  /**
+   * 全局统计 - 从 Statement 缓存中获取到 Statement 的次数
+   */
+  private final LongAdder statementCacheHitCount = new LongAdder();
+  /**
+   * 全局统计 - Statement 缓存中没有，需要创建 Statement 的次数
+   */
+  private final LongAdder statementCacheMissCount = new LongAdder();
+  /**
+   * 获取连接耗时的分布
+   */
+  private final LatencyHistogram requestTimeHistogram = new LatencyHistogram();
+  /**
+   * 单次等待连接耗时的分布
+   */
+  private final LatencyHistogram waitTimeHistogram = new LatencyHistogram();
+  /**
+   * 连接使用时长的分布
+   */
+  private final LatencyHistogram checkoutTimeHistogram = new LatencyHistogram();
+  /**
+   * 统计监听器，可以为空
+   */
+  private volatile PoolMetricsListener metricsListener;
 
   public PoolState(PooledDataSource dataSource) {
     this.dataSource = dataSource;
   }
 
-  public synchronized long getRequestCount() {
-    return requestCount;
+  // 以下统计方法都不需要加锁，不会和获取、归还连接竞争同一把锁
+
+  public long getRequestCount() {
+    return requestCount.sum();
+  }
+
+  public long getAverageRequestTime() {
+    long count = requestCount.sum();
+    return count == 0 ? 0 : accumulatedRequestTime.sum() / count;
+  }
+
+  public long getAverageWaitTime() {
+    long count = hadToWaitCount.sum();
+    return count == 0 ? 0 : accumulatedWaitTime.sum() / count;
+
+  }
+
+  public long getHadToWaitCount() {
+    return hadToWaitCount.sum();
+  }
+
+  public long getBadConnectionCount() {
+    return badConnectionCount.sum();
+  }
+
+  /**
+   * 获取到坏的连接的比例，即 badConnectionCount / (requestCount + badConnectionCount)
+   *
+   * @return 坏连接的比例，取值范围 [0, 1]
+   * @since 3.5.3
+   */
+  public double getBadConnectionRate() {
+    long bad = badConnectionCount.sum();
+    long total = requestCount.sum() + bad;
+    return total == 0 ? 0 : (double) bad / total;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public long getStatementCacheHitCount() {
+    return statementCacheHitCount.sum();
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public long getStatementCacheMissCount() {
+    return statementCacheMissCount.sum();
+  }
+
+  /**
+   * Statement 缓存的命中率
+   *
+   * @return 命中率，取值范围 [0, 1]
+   * @since 3.5.3
+   */
+  public double getStatementCacheHitRatio() {
+    long hits = statementCacheHitCount.sum();
+    long total = hits + statementCacheMissCount.sum();
+    return total == 0 ? 0 : (double) hits / total;
+  }
+
+  public long getClaimedOverdueConnectionCount() {
+    return claimedOverdueConnectionCount.sum();
+  }
+
+  public long getAverageOverdueCheckoutTime() {
+    long count = claimedOverdueConnectionCount.sum();
+    return count == 0 ? 0 : accumulatedCheckoutTimeOfOverdueConnections.sum() / count;
+  }
+
+  public long getAverageCheckoutTime() {
+    long count = requestCount.sum();
+    return count == 0 ? 0 : accumulatedCheckoutTime.sum() / count;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public LatencyHistogram getRequestTimeHistogram() {
+    return requestTimeHistogram;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public LatencyHistogram getWaitTimeHistogram() {
+    return waitTimeHistogram;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public LatencyHistogram getCheckoutTimeHistogram() {
+    return checkoutTimeHistogram;
+  }
+
+  public int getIdleConnectionCount() {
+    if (dataSource.getPoolType() == PoolType.CONCURRENT) {
+      return dataSource.getConcurrentBag().getIdleCount();
+    }
+    return idleConnectionCount.get();
+  }
+
+  public int getActiveConnectionCount() {
+    if (dataSource.getPoolType() == PoolType.CONCURRENT) {
+      return dataSource.getConcurrentBag().getActiveCount();
+    }
+    return activeConnectionCount.get();
   }
 
-  public synchronized long getAverageRequestTime() {
-    return requestCount == 0 ? 0 : accumulatedRequestTime / requestCount;
+  /**
+   * 同步空闲、活动连接数，在修改 {@link #idleConnections} 或 {@link #activeConnections} 后、释放连接池的锁前调用
+   */
+  void updateConnectionCounts() {
+    idleConnectionCount.set(idleConnections.size());
+    activeConnectionCount.set(activeConnections.size());
   }
 
-  public synchronized long getAverageWaitTime() {
-    return hadToWaitCount == 0 ? 0 : accumulatedWaitTime / hadToWaitCount;
+  PoolMetricsListener getMetricsListener() {
+    return metricsListener;
+  }
 
+  void setMetricsListener(PoolMetricsListener metricsListener) {
+    this.metricsListener = metricsListener;
   }
 
-  public synchronized long getHadToWaitCount() {
-    return hadToWaitCount;
+  /**
+   * 统计获取连接成功
+   *
+   * @param requestTime 获取连接的时间
+   */
+  void recordRequest(long requestTime) {
+    requestCount.increment();
+    accumulatedRequestTime.add(requestTime);
+    requestTimeHistogram.record(requestTime);
+    PoolMetricsListener listener = metricsListener;
+    if (listener != null) {
+      listener.onConnectionRequested(requestTime);
+    }
   }
 
-  public synchronized long getBadConnectionCount() {
-    return badConnectionCount;
+  /**
+   * 统计连接使用时长
+   *
+   * @param checkoutTime 连接的使用时长
+   */
+  void recordCheckoutTime(long checkoutTime) {
+    accumulatedCheckoutTime.add(checkoutTime);
+    checkoutTimeHistogram.record(checkoutTime);
+    PoolMetricsListener listener = metricsListener;
+    if (listener != null) {
+      listener.onConnectionReturned(checkoutTime);
+    }
   }
 
-  public synchronized long getClaimedOverdueConnectionCount() {
-    return claimedOverdueConnectionCount;
+  /**
+   * 统计回收超时连接
+   *
+   * @param checkoutTime 被回收连接的使用时长
+   */
+  void recordClaimedOverdue(long checkoutTime) {
+    claimedOverdueConnectionCount.increment();
+    accumulatedCheckoutTimeOfOverdueConnections.add(checkoutTime);
+    accumulatedCheckoutTime.add(checkoutTime);
+    checkoutTimeHistogram.record(checkoutTime);
+    PoolMetricsListener listener = metricsListener;
+    if (listener != null) {
+      listener.onOverdueConnectionClaimed(checkoutTime);
+    }
   }
 
-  public synchronized long getAverageOverdueCheckoutTime() {
-    return claimedOverdueConnectionCount == 0 ? 0 : accumulatedCheckoutTimeOfOverdueConnections / claimedOverdueConnectionCount;
+  /**
+   * 统计等待连接的次数
+   */
+  void recordWait() {
+    hadToWaitCount.increment();
   }
 
-  public synchronized long getAverageCheckoutTime() {
-    return requestCount == 0 ? 0 : accumulatedCheckoutTime / requestCount;
+  /**
+   * 统计等待连接的时间
+   *
+   * @param waitTime 等待的时间
+   */
+  void recordWaitTime(long waitTime) {
+    accumulatedWaitTime.add(waitTime);
+    waitTimeHistogram.record(waitTime);
+    PoolMetricsListener listener = metricsListener;
+    if (listener != null) {
+      listener.onConnectionWaited(waitTime);
+    }
   }
 
+  /**
+   * 统计获取到坏的连接
+   */
+  void recordBadConnection() {
+    badConnectionCount.increment();
+    PoolMetricsListener listener = metricsListener;
+    if (listener != null) {
+      listener.onBadConnection();
+    }
+  }
 
-  public synchronized int getIdleConnectionCount() {
-    return idleConnections.size();
+  /**
+   * 统计从 Statement 缓存中获取到 Statement
+   */
+  void recordStatementCacheHit() {
+    statementCacheHitCount.increment();
   }
 
-  public synchronized int getActiveConnectionCount() {
-    return activeConnections.size();
+  /**
+   * 统计 Statement 缓存未命中
+   */
+  void recordStatementCacheMiss() {
+    statementCacheMissCount.increment();
   }
 
   @Override
-  public synchronized String toString() {
+  public String toString() {
     StringBuilder builder = new StringBuilder();
     builder.append("\n===CONFINGURATION==============================================");
     builder.append("\n jdbcDriver                     ").append(dataSource.getDriver());
     builder.append("\n jdbcUrl                        ").append(dataSource.getUrl());
     builder.append("\n jdbcUsername                   ").append(dataSource.getUsername());
     builder.append("\n jdbcPassword                   ").append(dataSource.getPassword() == null ? "NULL" : "************");
+    builder.append("\n poolType                       ").append(dataSource.getPoolType());
     builder.append("\n poolMaxActiveConnections       ").append(dataSource.poolMaximumActiveConnections);
     builder.append("\n poolMaxIdleConnections         ").append(dataSource.poolMaximumIdleConnections);
     builder.append("\n poolMaxCheckoutTime            ").append(dataSource.poolMaximumCheckoutTime);
@@ -141,6 +353,11 @@ public class PoolState {
     builder.append("\n hadToWait                      ").append(getHadToWaitCount());
     builder.append("\n averageWaitTime                ").append(getAverageWaitTime());
     builder.append("\n badConnectionCount             ").append(getBadConnectionCount());
+    builder.append("\n statementCacheHits             ").append(getStatementCacheHitCount());
+    builder.append("\n statementCacheMisses           ").append(getStatementCacheMissCount());
+    builder.append("\n requestTime                    ").append(requestTimeHistogram);
+    builder.append("\n waitTime                       ").append(waitTimeHistogram);
+    builder.append("\n checkoutTime                   ").append(checkoutTimeHistogram);
     builder.append("\n===============================================================");
     return builder.toString();
   }
@@ -0,0 +1,32 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+/**
+ * 连接池的实现方式
+ */
+public enum PoolType {
+  /**
+   * 基于 {@link java.util.concurrent.locks.ReentrantLock} + Condition 的同步连接池（默认），
+   * 等待连接的虚拟线程不会固定（pin）其载体线程
+   */
+  SYNCHRONIZED,
+  /**
+   * 基于 {@link ConcurrentConnectionBag} 的无锁连接池，获取连接时优先使用本线程归还的连接，
+   * 连接不足时通过公平的移交队列等待
+   */
+  CONCURRENT
+}
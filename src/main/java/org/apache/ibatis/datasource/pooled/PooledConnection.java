@@ -74,7 +74,11 @@ class PooledConnection implements InvocationHandler {
   /**
    * 是否有效
    */
-  private boolean valid;
+  private volatile boolean valid;
+  /**
+   * {@link PoolType#CONCURRENT} 模式下，所属的连接池条目
+   */
+  private ConcurrentConnectionBag.PoolEntry poolEntry;
 
   /**
    * Constructor for SimplePooledConnection that uses the Connection and PooledDataSource passed in.
@@ -238,6 +242,24 @@ class PooledConnection implements InvocationHandler {
     return System.currentTimeMillis() - checkoutTimestamp;
   }
 
+  /**
+   * Getter for the entry of the concurrent pool that owns the real connection.
+   *
+   * @return the entry, or null if the connection is not from a concurrent pool
+   */
+  ConcurrentConnectionBag.PoolEntry getPoolEntry() {
+    return poolEntry;
+  }
+
+  /**
+   * Setter for the entry of the concurrent pool that owns the real connection.
+   *
+   * @param poolEntry the entry
+   */
+  void setPoolEntry(ConcurrentConnectionBag.PoolEntry poolEntry) {
+    this.poolEntry = poolEntry;
+  }
+
   @Override
   public int hashCode() {
     return hashCode;
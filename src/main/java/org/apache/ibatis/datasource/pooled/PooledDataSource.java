@@ -22,7 +22,13 @@ import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Logger;
 
 import javax.sql.DataSource;
@@ -33,6 +39,7 @@ import org.apache.ibatis.logging.LogFactory;
 
 /**
  * This is a simple, synchronous, thread-safe database connection pool.
+ * Set {@code poolType} to {@link PoolType#CONCURRENT} to use the lock-free {@link ConcurrentConnectionBag} instead.
  *
  * @author Clinton Begin
  */
@@ -44,11 +51,32 @@ public class PooledDataSource implements DataSource {
    */
   private final PoolState state = new PoolState(this);
 
+  /**
+   * 保护 {@link PoolState} 中连接集合的锁。使用 {@link ReentrantLock} 而不是监视器锁，
+   * 虚拟线程在持锁期间执行 JDBC 操作或等待连接时不会固定（pin）其载体线程
+   */
+  private final ReentrantLock lock = new ReentrantLock();
+
+  /**
+   * 连接归还到空闲集合时，唤醒等待连接的线程
+   */
+  private final Condition condition = lock.newCondition();
+
   /**
    * UnpooledDataSource 对象
    */
   private final UnpooledDataSource dataSource;
 
+  /**
+   * {@link PoolType#CONCURRENT} 模式下使用的连接池
+   */
+  private final ConcurrentConnectionBag concurrentBag;
+
+  /**
+   * 连接池的实现方式，默认为 {@link PoolType#SYNCHRONIZED}
+   */
+  protected PoolType poolType = PoolType.SYNCHRONIZED;
+
   // OPTIONAL CONFIGURATION FIELDS
   /**
    * 在任意时间可以存在的活动（也就是正在使用）连接数量 默认值为10
@@ -89,32 +117,74 @@ public class PooledDataSource implements DataSource {
    * 默认值为0（即所有连接每一时刻都被侦测，当然仅当poolPingEnable为True的时候）
    */
   protected int poolPingConnectionsNotUsedFor;
+  /**
+   * 是否由后台线程执行侦测查询，开启后获取、归还连接时不再执行 poolPingQuery，默认值为false
+   */
+  protected boolean poolPingInBackground;
+  /**
+   * 连接池中至少保持的空闲连接数，由后台线程创建，默认值为0
+   */
+  protected int poolMinimumIdleConnections;
+  /**
+   * 连接的最大存活时间，超过后在空闲或者归还时关闭，默认值为0，即不限制
+   */
+  protected int poolMaximumConnectionLifetime;
+  /**
+   * 连接的最大空闲时间，超过后由后台线程关闭，但至少保留 poolMinimumIdleConnections 个空闲连接，
+   * 默认值为0，即不限制
+   */
+  protected int poolMaximumIdleTime;
+  /**
+   * 后台维护线程的执行间隔，默认值为30000ms
+   */
+  protected int poolHousekeepingInterval = 30000;
+  /**
+   * 每个真实连接缓存的 PreparedStatement 数量，默认值为0，即不缓存
+   */
+  protected int poolMaximumCachedStatements;
+  /**
+   * 后台维护线程，未启用时为 null
+   */
+  private volatile PoolHousekeeper housekeeper;
+  /**
+   * 是否显式调用了 {@link #stopHousekeeping()}，为 true 时获取连接不再自动启动后台维护线程
+   */
+  private volatile boolean housekeepingStopped;
+  /**
+   * 每次 {@link #forceCloseAll()} 加一，用于丢弃后台线程在关闭前取出的连接
+   */
+  private int poolGeneration;
   /**
    * 期望 Connection 的类型编码，通过 {@link #assembleConnectionTypeCode(String, String, String)} 计算。
    */
-  private int expectedConnectionTypeCode;
+  private volatile int expectedConnectionTypeCode;
 
   public PooledDataSource() {
     dataSource = new UnpooledDataSource();
+    concurrentBag = new ConcurrentConnectionBag(this, this.dataSource, state);
   }
 
   public PooledDataSource(UnpooledDataSource dataSource) {
     this.dataSource = dataSource;
+    concurrentBag = new ConcurrentConnectionBag(this, this.dataSource, state);
   }
 
   public PooledDataSource(String driver, String url, String username, String password) {
     dataSource = new UnpooledDataSource(driver, url, username, password);
     expectedConnectionTypeCode = assembleConnectionTypeCode(dataSource.getUrl(), dataSource.getUsername(), dataSource.getPassword());
+    concurrentBag = new ConcurrentConnectionBag(this, dataSource, state);
   }
 
   public PooledDataSource(String driver, String url, Properties driverProperties) {
     dataSource = new UnpooledDataSource(driver, url, driverProperties);
     expectedConnectionTypeCode = assembleConnectionTypeCode(dataSource.getUrl(), dataSource.getUsername(), dataSource.getPassword());
+    concurrentBag = new ConcurrentConnectionBag(this, dataSource, state);
   }
 
   public PooledDataSource(ClassLoader driverClassLoader, String driver, String url, String username, String password) {
     dataSource = new UnpooledDataSource(driverClassLoader, driver, url, username, password);
     expectedConnectionTypeCode = assembleConnectionTypeCode(dataSource.getUrl(), dataSource.getUsername(), dataSource.getPassword());
+    concurrentBag = new ConcurrentConnectionBag(this, dataSource, state);
   }
 
   public PooledDataSource(ClassLoader driverClassLoader, String driver, String url, Properties driverProperties) {
@@ -122,6 +192,7 @@ public class PooledDataSource implements DataSource {
     dataSource = new UnpooledDataSource(driverClassLoader, driver, url, driverProperties);
     //计算expectedConnectionTypeCode 的值
     expectedConnectionTypeCode = assembleConnectionTypeCode(dataSource.getUrl(), dataSource.getUsername(), dataSource.getPassword());
+    concurrentBag = new ConcurrentConnectionBag(this, dataSource, state);
   }
 
   @Override
@@ -201,6 +272,17 @@ public class PooledDataSource implements DataSource {
     forceCloseAll();
   }
 
+  /**
+   * The implementation used to check out and return connections.
+   *
+   * @param poolType the pool type
+   * @since 3.5.3
+   */
+  public void setPoolType(PoolType poolType) {
+    this.poolType = poolType == null ? PoolType.SYNCHRONIZED : poolType;
+    forceCloseAll();
+  }
+
   /**
    * The maximum number of active connections.
    *
@@ -287,6 +369,77 @@ public class PooledDataSource implements DataSource {
     forceCloseAll();
   }
 
+  /**
+   * Determines if the ping query should be run by the housekeeping thread instead of the thread
+   * checking out or returning a connection.
+   *
+   * @param poolPingInBackground True if connections should only be pinged in background
+   * @since 3.5.3
+   */
+  public void setPoolPingInBackground(boolean poolPingInBackground) {
+    this.poolPingInBackground = poolPingInBackground;
+    forceCloseAll();
+  }
+
+  /**
+   * The minimum number of idle connections kept open by the housekeeping thread.
+   *
+   * @param poolMinimumIdleConnections The minimum number of idle connections
+   * @since 3.5.3
+   */
+  public void setPoolMinimumIdleConnections(int poolMinimumIdleConnections) {
+    this.poolMinimumIdleConnections = poolMinimumIdleConnections;
+    forceCloseAll();
+  }
+
+  /**
+   * The maximum time a connection is kept open since it was created.
+   *
+   * @param milliseconds the maximum lifetime, 0 means unlimited
+   * @since 3.5.3
+   */
+  public void setPoolMaximumConnectionLifetime(int milliseconds) {
+    this.poolMaximumConnectionLifetime = milliseconds;
+    forceCloseAll();
+  }
+
+  /**
+   * The maximum time a connection can stay idle before the housekeeping thread closes it.
+   *
+   * @param milliseconds the maximum idle time, 0 means unlimited
+   * @since 3.5.3
+   */
+  public void setPoolMaximumIdleTime(int milliseconds) {
+    this.poolMaximumIdleTime = milliseconds;
+    forceCloseAll();
+  }
+
+  /**
+   * The number of prepared statements cached by each physical connection. Cached statements survive
+   * across sessions that use the same connection.
+   *
+   * @param poolMaximumCachedStatements the maximum number of idle statements per connection, 0 disables the cache
+   * @since 3.5.3
+   */
+  public void setPoolMaximumCachedStatements(int poolMaximumCachedStatements) {
+    this.poolMaximumCachedStatements = poolMaximumCachedStatements;
+    forceCloseAll();
+  }
+
+  /**
+   * The delay between two runs of the housekeeping thread.
+   *
+   * @param milliseconds the delay
+   * @since 3.5.3
+   */
+  public void setPoolHousekeepingInterval(int milliseconds) {
+    this.poolHousekeepingInterval = milliseconds;
+    if (housekeeper != null) {
+      stopHousekeeping();
+      startHousekeeping();
+    }
+  }
+
   public String getDriver() {
     return dataSource.getDriver();
   }
@@ -322,6 +475,30 @@ public class PooledDataSource implements DataSource {
     return dataSource.getDefaultNetworkTimeout();
   }
 
+  /**
+   * @since 3.5.3
+   */
+  public PoolType getPoolType() {
+    return poolType;
+  }
+
+  /**
+   * Sets the listener notified on every checkout, wait, return and bad connection.
+   *
+   * @param metricsListener the listener, or null to remove it
+   * @since 3.5.3
+   */
+  public void setPoolMetricsListener(PoolMetricsListener metricsListener) {
+    state.setMetricsListener(metricsListener);
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public PoolMetricsListener getPoolMetricsListener() {
+    return state.getMetricsListener();
+  }
+
   public int getPoolMaximumActiveConnections() {
     return poolMaximumActiveConnections;
   }
@@ -354,13 +531,116 @@ public class PooledDataSource implements DataSource {
     return poolPingConnectionsNotUsedFor;
   }
 
+  /**
+   * @since 3.5.3
+   */
+  public boolean isPoolPingInBackground() {
+    return poolPingInBackground;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public int getPoolMinimumIdleConnections() {
+    return poolMinimumIdleConnections;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public int getPoolMaximumConnectionLifetime() {
+    return poolMaximumConnectionLifetime;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public int getPoolMaximumIdleTime() {
+    return poolMaximumIdleTime;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public int getPoolHousekeepingInterval() {
+    return poolHousekeepingInterval;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public int getPoolMaximumCachedStatements() {
+    return poolMaximumCachedStatements;
+  }
+
+  /**
+   * 启动后台维护线程，仅当配置了 poolMinimumIdleConnections、poolMaximumConnectionLifetime、
+   * poolMaximumIdleTime 或 poolPingInBackground 时生效。启动后立即执行一次，预热连接池。
+   *
+   * Starts the background housekeeping thread if any housekeeping setting is enabled.
+   *
+   * @since 3.5.3
+   */
+  public void startHousekeeping() {
+    // 可能由借出连接的虚拟线程调用，使用 lock 而不是 synchronized
+    lock.lock();
+    try {
+      housekeepingStopped = false;
+      if (housekeeper == null && isHousekeepingRequired()) {
+        housekeeper = new PoolHousekeeper(this, poolHousekeepingInterval);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * 首次获取连接时启动后台维护线程，显式停止后不再启动
+   */
+  private void startHousekeepingOnCheckout() {
+    lock.lock();
+    try {
+      if (housekeeper == null && !housekeepingStopped && isHousekeepingRequired()) {
+        housekeeper = new PoolHousekeeper(this, poolHousekeepingInterval);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Stops the background housekeeping thread. It stays stopped, also for later checkouts,
+   * until {@link #startHousekeeping()} is called again.
+   *
+   * @since 3.5.3
+   */
+  public void stopHousekeeping() {
+    lock.lock();
+    try {
+      housekeepingStopped = true;
+      if (housekeeper != null) {
+        housekeeper.shutdown();
+        housekeeper = null;
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private boolean isHousekeepingRequired() {
+    return poolMinimumIdleConnections > 0 || poolMaximumConnectionLifetime > 0 || poolMaximumIdleTime > 0
+        || (poolPingEnabled && poolPingInBackground);
+  }
+
   /**
    * 关闭所有的activeConnection和idleConnections的连接
    *
    * Closes all active and idle connections in the pool.
    */
   public void forceCloseAll() {
-    synchronized (state) {
+    lock.lock();
+    try {
+      poolGeneration++;
       //计算expectedConnectionTypeCode
       expectedConnectionTypeCode = assembleConnectionTypeCode(dataSource.getUrl(), dataSource.getUsername(), dataSource.getPassword());
       //遍历activeConnections 进行关闭
@@ -398,7 +678,12 @@ public class PooledDataSource implements DataSource {
           // ignore
         }
       }
+    } finally {
+      state.updateConnectionCounts();
+      lock.unlock();
     }
+    //关闭 CONCURRENT 模式下的所有连接
+    concurrentBag.forceCloseAll();
     if (log.isDebugEnabled()) {
       log.debug("PooledDataSource forcefully closed/removed all connections.");
     }
@@ -408,21 +693,35 @@ public class PooledDataSource implements DataSource {
     return state;
   }
 
-  private int assembleConnectionTypeCode(String url, String username, String password) {
+  ConcurrentConnectionBag getConcurrentBag() {
+    return concurrentBag;
+  }
+
+  int getExpectedConnectionTypeCode() {
+    return expectedConnectionTypeCode;
+  }
+
+  int assembleConnectionTypeCode(String url, String username, String password) {
     return ("" + url + username + password).hashCode();
   }
 
   protected void pushConnection(PooledConnection conn) throws SQLException {
+    if (poolType == PoolType.CONCURRENT) {
+      concurrentBag.requite(conn);
+      return;
+    }
 
-    synchronized (state) {
+    lock.lock();
+    try {
       //从活动连接集合移除该连接
       state.activeConnections.remove(conn);
       //通过ping来测试连接是否有效
       if (conn.isValid()) {
-        //判断是否超过空闲连接上限，并且和当前连接池的标识匹配
-        if (state.idleConnections.size() < poolMaximumIdleConnections && conn.getConnectionTypeCode() == expectedConnectionTypeCode) {
+        //判断是否超过空闲连接上限，并且和当前连接池的标识匹配，并且没有超过最大存活时间
+        if (state.idleConnections.size() < poolMaximumIdleConnections && conn.getConnectionTypeCode() == expectedConnectionTypeCode
+            && !isExpired(conn.getCreatedTimestamp())) {
           //统计连接使用时长
-          state.accumulatedCheckoutTime += conn.getCheckoutTime();
+          state.recordCheckoutTime(conn.getCheckoutTime());
           if (!conn.getRealConnection().getAutoCommit()) {
             //回滚事务，避免适用防止未提交或者回滚事务
             conn.getRealConnection().rollback();
@@ -440,12 +739,12 @@ public class PooledDataSource implements DataSource {
             log.debug("Returned connection " + newConn.getRealHashCode() + " to pool.");
           }
           //唤醒正在等待连接的线程
-          state.notifyAll();
+          condition.signalAll();
 
           //如果超过空闲连接
         } else {
           //统计连接适用时长
-          state.accumulatedCheckoutTime += conn.getCheckoutTime();
+          state.recordCheckoutTime(conn.getCheckoutTime());
 
           if (!conn.getRealConnection().getAutoCommit()) {
             //回滚事务，避免适用防止未提交或者回滚事务
@@ -464,12 +763,21 @@ public class PooledDataSource implements DataSource {
           log.debug("A bad connection (" + conn.getRealHashCode() + ") attempted to return to the pool, discarding connection.");
         }
         // 统计获取到坏的连接的次数
-        state.badConnectionCount++;
+        state.recordBadConnection();
       }
+    } finally {
+      state.updateConnectionCounts();
+      lock.unlock();
     }
   }
 
   private PooledConnection popConnection(String username, String password) throws SQLException {
+    if (housekeeper == null && !housekeepingStopped && isHousekeepingRequired()) {
+      startHousekeepingOnCheckout();
+    }
+    if (poolType == PoolType.CONCURRENT) {
+      return concurrentBag.borrow(username, password);
+    }
     //标记获取连接的时候是否进行了等待
     boolean countedWait = false;
     //最终获取到的链接对象
@@ -482,7 +790,8 @@ public class PooledDataSource implements DataSource {
     //循环获取可用的连接
     while (conn == null) {
 
-      synchronized (state) {
+      lock.lock();
+      try {
         //空闲连接非空
         if (!state.idleConnections.isEmpty()) {
           // Pool has available connection
@@ -498,7 +807,7 @@ public class PooledDataSource implements DataSource {
           if (state.activeConnections.size() < poolMaximumActiveConnections) {
             // Can create new connection
             //创建新的连接
-            conn = new PooledConnection(dataSource.getConnection(), this);
+            conn = new PooledConnection(openConnection(), this);
             if (log.isDebugEnabled()) {
               log.debug("Created connection " + conn.getRealHashCode() + ".");
             }
@@ -512,13 +821,8 @@ public class PooledDataSource implements DataSource {
             //如果超时
             if (longestCheckoutTime > poolMaximumCheckoutTime) {
               // Can claim overdue connection
-              //对连接超时的时间统计
-                //声明过期的连接数+1
-              state.claimedOverdueConnectionCount++;
-                //累加过期校验时间
-              state.accumulatedCheckoutTimeOfOverdueConnections += longestCheckoutTime;
-                //累加过期时间
-              state.accumulatedCheckoutTime += longestCheckoutTime;
+              //对连接超时的时间统计：过期的连接数+1，累加过期校验时间、累加过期时间
+              state.recordClaimedOverdue(longestCheckoutTime);
                 //从活动连接中移除
               state.activeConnections.remove(oldestActiveConnection);
               // 如果非自动提交的，需要进行回滚。即将原有执行中的事务，全部回滚。
@@ -552,7 +856,7 @@ public class PooledDataSource implements DataSource {
               try {
                 //对等待连接统计，通过 countedWait 标识，在这个循环中，只记录一次。
                 if (!countedWait) {
-                  state.hadToWaitCount++;
+                  state.recordWait();
                   countedWait = true;
                 }
                 if (log.isDebugEnabled()) {
@@ -560,10 +864,10 @@ public class PooledDataSource implements DataSource {
                 }
                 //记录当前时间
                 long wt = System.currentTimeMillis();
-                //等待，直到超时，或 pingConnection 方法中归还连接时的唤醒
-                state.wait(poolTimeToWait);
+                //等待，直到超时，或 pushConnection 方法中归还连接时的唤醒
+                condition.await(poolTimeToWait, TimeUnit.MILLISECONDS);
                 //统计等待的时间
-                state.accumulatedWaitTime += System.currentTimeMillis() - wt;
+                state.recordWaitTime(System.currentTimeMillis() - wt);
               } catch (InterruptedException e) {
                 break;
               }
@@ -586,14 +890,13 @@ public class PooledDataSource implements DataSource {
             //添加到活动连接池中
             state.activeConnections.add(conn);
             // 对获取成功连接的统计
-            state.requestCount++;
-            state.accumulatedRequestTime += System.currentTimeMillis() - t;
+            state.recordRequest(System.currentTimeMillis() - t);
           } else {
             if (log.isDebugEnabled()) {
               log.debug("A bad connection (" + conn.getRealHashCode() + ") was returned from the pool, getting another connection.");
             }
             //统计获取坏的连接的次数
-            state.badConnectionCount++;
+            state.recordBadConnection();
             // 记录获取到坏的连接的次数【本方法】
             localBadConnectionCount++;
             // 将 conn 置空，那么可以继续获取
@@ -608,6 +911,9 @@ public class PooledDataSource implements DataSource {
             }
           }
         }
+      } finally {
+        state.updateConnectionCounts();
+        lock.unlock();
       }
 
     }
@@ -643,46 +949,201 @@ public class PooledDataSource implements DataSource {
       result = false;
     }
 
-    if (result) {
-      //是否启用侦测查询
-      if (poolPingEnabled) {
-        //判断是否长时间未适用，如果是，才能要发起ping
-        if (poolPingConnectionsNotUsedFor >= 0 && conn.getTimeElapsedSinceLastUse() > poolPingConnectionsNotUsedFor) {
-          try {
-            if (log.isDebugEnabled()) {
-              log.debug("Testing connection " + conn.getRealHashCode() + " ...");
-            }
-            //通过poolpingquery语句来发起ping
-            Connection realConn = conn.getRealConnection();
-            try (Statement statement = realConn.createStatement()) {
-              statement.executeQuery(poolPingQuery).close();
-            }
-            if (!realConn.getAutoCommit()) {
-              realConn.rollback();
-            }
-            //标记执行成功
-            result = true;
-            if (log.isDebugEnabled()) {
-              log.debug("Connection " + conn.getRealHashCode() + " is GOOD!");
-            }
-          } catch (Exception e) {
-            log.warn("Execution of ping query '" + poolPingQuery + "' failed: " + e.getMessage());
-            try {
-              //关闭数据库真实的连接
-              conn.getRealConnection().close();
-            } catch (Exception e2) {
-              //ignore
-            }
-            //执行失败
-            result = false;
-            if (log.isDebugEnabled()) {
-              log.debug("Connection " + conn.getRealHashCode() + " is BAD: " + e.getMessage());
-            }
+    //是否启用侦测查询，后台侦测时由维护线程执行
+    if (result && poolPingEnabled && !poolPingInBackground && isPingRequired(conn)) {
+      result = executePingQuery(conn);
+    }
+    return result;
+  }
+
+  /**
+   * 判断是否长时间未使用，如果是，才需要发起ping
+   */
+  boolean isPingRequired(PooledConnection conn) {
+    return poolPingConnectionsNotUsedFor >= 0 && conn.getTimeElapsedSinceLastUse() > poolPingConnectionsNotUsedFor;
+  }
+
+  /**
+   * 后台维护线程校验空闲连接
+   *
+   * @param conn 空闲连接
+   * @return True if the connection is still usable
+   */
+  boolean pingConnectionInBackground(PooledConnection conn) {
+    try {
+      if (conn.getRealConnection().isClosed()) {
+        return false;
+      }
+    } catch (SQLException e) {
+      return false;
+    }
+    return !poolPingEnabled || !isPingRequired(conn) || executePingQuery(conn);
+  }
+
+  /**
+   * 是否超过最大存活时间
+   */
+  boolean isExpired(long createdTimestamp) {
+    return poolMaximumConnectionLifetime > 0 && System.currentTimeMillis() - createdTimestamp > poolMaximumConnectionLifetime;
+  }
+
+  /**
+   * 是否超过最大空闲时间
+   */
+  boolean isIdleTimeout(long lastUsedTimestamp) {
+    return poolMaximumIdleTime > 0 && System.currentTimeMillis() - lastUsedTimestamp > poolMaximumIdleTime;
+  }
+
+  private boolean executePingQuery(PooledConnection conn) {
+    boolean result;
+    try {
+      if (log.isDebugEnabled()) {
+        log.debug("Testing connection " + conn.getRealHashCode() + " ...");
+      }
+      //通过poolpingquery语句来发起ping
+      Connection realConn = conn.getRealConnection();
+      try (Statement statement = realConn.createStatement()) {
+        statement.executeQuery(poolPingQuery).close();
+      }
+      if (!realConn.getAutoCommit()) {
+        realConn.rollback();
+      }
+      //标记执行成功
+      result = true;
+      if (log.isDebugEnabled()) {
+        log.debug("Connection " + conn.getRealHashCode() + " is GOOD!");
+      }
+    } catch (Exception e) {
+      log.warn("Execution of ping query '" + poolPingQuery + "' failed: " + e.getMessage());
+      try {
+        //关闭数据库真实的连接
+        conn.getRealConnection().close();
+      } catch (Exception e2) {
+        //ignore
+      }
+      //执行失败
+      result = false;
+      if (log.isDebugEnabled()) {
+        log.debug("Connection " + conn.getRealHashCode() + " is BAD: " + e.getMessage());
+      }
+    }
+    return result;
+  }
+
+  /**
+   * 后台维护连接池：关闭超过最大存活时间和最大空闲时间的空闲连接，后台侦测空闲连接，补足最少空闲连接数
+   */
+  void housekeep() {
+    if (poolType == PoolType.CONCURRENT) {
+      concurrentBag.housekeep();
+      return;
+    }
+    List<PooledConnection> retired = new ArrayList<>();
+    List<PooledConnection> pinged = new ArrayList<>();
+    int generation;
+    lock.lock();
+    try {
+      generation = poolGeneration;
+      int idleCount = state.idleConnections.size();
+      for (Iterator<PooledConnection> it = state.idleConnections.iterator(); it.hasNext();) {
+        PooledConnection conn = it.next();
+        if (isExpired(conn.getCreatedTimestamp())
+            || (idleCount > poolMinimumIdleConnections && isIdleTimeout(conn.getLastUsedTimestamp()))) {
+          it.remove();
+          idleCount--;
+          retired.add(conn);
+        } else if (poolPingEnabled && poolPingInBackground && isPingRequired(conn)) {
+          //侦测期间从空闲连接中移除，避免被其他线程获取
+          it.remove();
+          pinged.add(conn);
+        }
+      }
+    } finally {
+      state.updateConnectionCounts();
+      lock.unlock();
+    }
+    for (PooledConnection conn : retired) {
+      conn.invalidate();
+      closeQuietly(conn.getRealConnection());
+      if (log.isDebugEnabled()) {
+        log.debug("Retired idle connection " + conn.getRealHashCode() + ".");
+      }
+    }
+    for (PooledConnection conn : pinged) {
+      boolean valid = pingConnectionInBackground(conn);
+      lock.lock();
+      try {
+        if (valid && generation == poolGeneration && state.idleConnections.size() < poolMaximumIdleConnections) {
+          state.idleConnections.add(conn);
+          condition.signalAll();
+          continue;
+        }
+      } finally {
+        state.updateConnectionCounts();
+        lock.unlock();
+      }
+      if (!valid) {
+        state.recordBadConnection();
+      }
+      conn.invalidate();
+      closeQuietly(conn.getRealConnection());
+    }
+    //补足最少空闲连接数
+    int minimumIdle = Math.min(poolMinimumIdleConnections, poolMaximumIdleConnections);
+    while (true) {
+      lock.lock();
+      try {
+        if (generation != poolGeneration || state.idleConnections.size() >= minimumIdle
+            || state.idleConnections.size() + state.activeConnections.size() >= poolMaximumActiveConnections) {
+          return;
+        }
+      } finally {
+        lock.unlock();
+      }
+      PooledConnection conn;
+      try {
+        conn = new PooledConnection(openConnection(), this);
+      } catch (SQLException e) {
+        log.warn("Could not create idle connection: " + e.getMessage());
+        return;
+      }
+      lock.lock();
+      try {
+        if (generation == poolGeneration && state.idleConnections.size() < minimumIdle
+            && state.idleConnections.size() + state.activeConnections.size() < poolMaximumActiveConnections) {
+          state.idleConnections.add(conn);
+          condition.signalAll();
+          if (log.isDebugEnabled()) {
+            log.debug("Created idle connection " + conn.getRealHashCode() + ".");
           }
+          continue;
         }
+      } finally {
+        state.updateConnectionCounts();
+        lock.unlock();
       }
+      closeQuietly(conn.getRealConnection());
+      return;
+    }
+  }
+
+  /**
+   * 创建真实连接，开启 Statement 缓存时使用 {@link StatementCachingConnection} 代理
+   */
+  Connection openConnection() throws SQLException {
+    Connection connection = dataSource.getConnection();
+    if (poolMaximumCachedStatements > 0) {
+      connection = StatementCachingConnection.wrap(connection, poolMaximumCachedStatements, state);
+    }
+    return connection;
+  }
+
+  private void closeQuietly(Connection realConnection) {
+    try {
+      realConnection.close();
+    } catch (Exception e) {
+      // ignore
     }
-    return result;
   }
 
   /**
@@ -700,7 +1161,7 @@ public class PooledDataSource implements DataSource {
       InvocationHandler handler = Proxy.getInvocationHandler(conn);
       if (handler instanceof PooledConnection) {
         //如果是PooledConnection对象，则获取真实的连接
-        return ((PooledConnection) handler).getRealConnection();
+        return StatementCachingConnection.unwrap(((PooledConnection) handler).getRealConnection());
       }
     }
     return conn;
@@ -713,6 +1174,8 @@ public class PooledDataSource implements DataSource {
    */
   @Override
   protected void finalize() throws Throwable {
+    //停止后台维护线程
+    stopHousekeeping();
     //关闭所有连接
     forceCloseAll();
     //执行对象销毁
@@ -15,9 +15,13 @@
  */
 package org.apache.ibatis.datasource.pooled;
 
+import java.util.Properties;
+
 import org.apache.ibatis.datasource.unpooled.UnpooledDataSourceFactory;
 
 /**
+ * 池化的数据源工厂实现，通过 poolType 属性选择连接池的实现方式，见 {@link PoolType}
+ *
  * @author Clinton Begin
  */
 public class PooledDataSourceFactory extends UnpooledDataSourceFactory {
@@ -28,4 +32,14 @@ public class PooledDataSourceFactory extends UnpooledDataSourceFactory {
     this.dataSource = new PooledDataSource();
   }
 
+  /**
+   * 设置属性后，如果配置了后台维护相关的属性，启动后台维护线程并预热连接池
+   * @param properties
+   */
+  @Override
+  public void setProperties(Properties properties) {
+    super.setProperties(properties);
+    ((PooledDataSource) dataSource).startHousekeeping();
+  }
+
 }
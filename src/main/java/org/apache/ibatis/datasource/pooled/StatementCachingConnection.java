@@ -0,0 +1,316 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.ibatis.reflection.ExceptionUtil;
+
+/**
+ * 缓存 PreparedStatement 的真实连接
+ *
+ * 连接池创建的真实连接被它代理，所以缓存跟随真实连接，在多个 SqlSession 之间共享。
+ * prepareStatement 和 prepareCall 先从空闲的 Statement 中查找，Statement 关闭时清空参数并放回缓存，
+ * 超过 {@link PooledDataSource#setPoolMaximumCachedStatements(int)} 时关闭最久没有使用的 Statement。
+ * 真实连接关闭时关闭所有空闲的 Statement。
+ *
+ * @since 3.5.3
+ */
+class StatementCachingConnection implements InvocationHandler {
+
+  private static final Class<?>[] IFACES = new Class<?>[] { Connection.class };
+
+  /**
+   * 使用后需要恢复初始值的 Statement 设置
+   */
+  private static final List<String> RESETTABLE_SETTERS = Arrays.asList("setQueryTimeout", "setFetchSize",
+      "setFetchDirection", "setMaxRows", "setLargeMaxRows", "setMaxFieldSize");
+
+  private final Connection realConnection;
+  private final int capacity;
+  private final PoolState state;
+  /**
+   * 空闲的 Statement，按访问顺序排列
+   */
+  private final LinkedHashMap<StatementKey, Statement> idleStatements = new LinkedHashMap<>(16, 0.75f, true);
+  /**
+   * 保护 {@link #idleStatements} 的锁
+   */
+  private final ReentrantLock lock = new ReentrantLock();
+
+  private StatementCachingConnection(Connection realConnection, int capacity, PoolState state) {
+    this.realConnection = realConnection;
+    this.capacity = capacity;
+    this.state = state;
+  }
+
+  static Connection wrap(Connection realConnection, int capacity, PoolState state) {
+    return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), IFACES,
+        new StatementCachingConnection(realConnection, capacity, state));
+  }
+
+  /**
+   * @return 被代理的真实连接，不是代理时返回传入的连接
+   */
+  static Connection unwrap(Connection connection) {
+    if (Proxy.isProxyClass(connection.getClass())) {
+      InvocationHandler handler = Proxy.getInvocationHandler(connection);
+      if (handler instanceof StatementCachingConnection) {
+        return ((StatementCachingConnection) handler).realConnection;
+      }
+    }
+    return connection;
+  }
+
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    String methodName = method.getName();
+    try {
+      if ("prepareStatement".equals(methodName) || "prepareCall".equals(methodName)) {
+        return prepare(method, args);
+      } else if ("close".equals(methodName)) {
+        closeIdleStatements();
+      } else if ("equals".equals(methodName)) {
+        return proxy == args[0];
+      } else if ("hashCode".equals(methodName)) {
+        return System.identityHashCode(proxy);
+      }
+      return method.invoke(realConnection, args);
+    } catch (Throwable t) {
+      throw ExceptionUtil.unwrapThrowable(t);
+    }
+  }
+
+  private Object prepare(Method method, Object[] args) throws Throwable {
+    StatementKey key = new StatementKey(method.getName(), args);
+    Statement statement;
+    lock.lock();
+    try {
+      statement = idleStatements.remove(key);
+    } finally {
+      lock.unlock();
+    }
+    if (statement != null && !statement.isClosed()) {
+      state.recordStatementCacheHit();
+    } else {
+      state.recordStatementCacheMiss();
+      statement = (Statement) method.invoke(realConnection, args);
+    }
+    return Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[] { method.getReturnType() },
+        new CachedStatement(key, statement));
+  }
+
+  private void release(StatementKey key, Statement statement) {
+    List<Statement> evicted = new ArrayList<>(1);
+    lock.lock();
+    try {
+      Statement previous = idleStatements.put(key, statement);
+      if (previous != null) {
+        // 同一条 SQL 同时被多次使用，只缓存一个
+        evicted.add(previous);
+      }
+      Iterator<Statement> iterator = idleStatements.values().iterator();
+      while (idleStatements.size() > capacity && iterator.hasNext()) {
+        evicted.add(iterator.next());
+        iterator.remove();
+      }
+    } finally {
+      lock.unlock();
+    }
+    // 不在锁内关闭
+    for (Statement stmt : evicted) {
+      closeQuietly(stmt);
+    }
+  }
+
+  private void closeIdleStatements() {
+    List<Statement> statements;
+    lock.lock();
+    try {
+      statements = new ArrayList<>(idleStatements.values());
+      idleStatements.clear();
+    } finally {
+      lock.unlock();
+    }
+    for (Statement stmt : statements) {
+      closeQuietly(stmt);
+    }
+  }
+
+  private static void closeQuietly(Statement statement) {
+    try {
+      statement.close();
+    } catch (SQLException e) {
+      // ignore
+    }
+  }
+
+  /**
+   * 借出的 Statement，close 时放回缓存
+   */
+  private class CachedStatement implements InvocationHandler {
+
+    private final StatementKey key;
+    private final Statement statement;
+    private boolean closed;
+    private boolean closeOnCompletion;
+    /**
+     * 被修改过的设置和它们的初始值
+     */
+    private Map<String, Object> originalSettings;
+    /**
+     * 借出期间返回的结果集，归还前关闭
+     */
+    private List<ResultSet> resultSets;
+
+    CachedStatement(StatementKey key, Statement statement) {
+      this.key = key;
+      this.statement = statement;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      String methodName = method.getName();
+      try {
+        switch (methodName) {
+          case "close":
+            close();
+            return null;
+          case "isClosed":
+            return closed || statement.isClosed();
+          case "equals":
+            return proxy == args[0];
+          case "hashCode":
+            return System.identityHashCode(proxy);
+          case "closeOnCompletion":
+            // 无法撤销，归还时直接关闭
+            closeOnCompletion = true;
+            break;
+          default:
+            if (closed) {
+              throw new SQLException("Statement is closed.");
+            }
+            if (RESETTABLE_SETTERS.contains(methodName)) {
+              rememberOriginal(methodName);
+            }
+        }
+        Object result = method.invoke(statement, args);
+        if (result instanceof ResultSet) {
+          if (resultSets == null) {
+            resultSets = new ArrayList<>(1);
+          }
+          resultSets.add((ResultSet) result);
+        }
+        return result;
+      } catch (Throwable t) {
+        throw ExceptionUtil.unwrapThrowable(t);
+      }
+    }
+
+    private void rememberOriginal(String setterName) throws Exception {
+      if (originalSettings == null) {
+        originalSettings = new HashMap<>();
+      }
+      if (!originalSettings.containsKey(setterName)) {
+        Method getter = Statement.class.getMethod("get" + setterName.substring(3));
+        originalSettings.put(setterName, getter.invoke(statement));
+      }
+    }
+
+    private void close() throws SQLException {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      if (closeOnCompletion || statement.isClosed() || realConnection.isClosed()) {
+        statement.close();
+        return;
+      }
+      try {
+        // 真正关闭 Statement 时会关闭它的结果集，放回缓存前需要手动关闭
+        if (resultSets != null) {
+          for (ResultSet rs : resultSets) {
+            rs.close();
+          }
+          resultSets = null;
+        }
+        statement.clearBatch();
+        statement.clearWarnings();
+        if (statement instanceof PreparedStatement) {
+          ((PreparedStatement) statement).clearParameters();
+        }
+        if (originalSettings != null) {
+          for (Map.Entry<String, Object> entry : originalSettings.entrySet()) {
+            Method getter = Statement.class.getMethod("get" + entry.getKey().substring(3));
+            Statement.class.getMethod(entry.getKey(), getter.getReturnType()).invoke(statement, entry.getValue());
+          }
+        }
+      } catch (Exception e) {
+        statement.close();
+        return;
+      }
+      release(key, statement);
+    }
+  }
+
+  /**
+   * prepareStatement 或 prepareCall 的方法名和参数
+   */
+  private static final class StatementKey {
+    private final String methodName;
+    private final Object[] args;
+    private final int hashCode;
+
+    StatementKey(String methodName, Object[] args) {
+      this.methodName = methodName;
+      this.args = args;
+      this.hashCode = 31 * methodName.hashCode() + Arrays.deepHashCode(args);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof StatementKey)) {
+        return false;
+      }
+      StatementKey other = (StatementKey) o;
+      return hashCode == other.hashCode && methodName.equals(other.methodName) && Arrays.deepEquals(args, other.args);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+
+}
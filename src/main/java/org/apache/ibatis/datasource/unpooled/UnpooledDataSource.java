@@ -26,6 +26,7 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Logger;
 
 import javax.sql.DataSource;
@@ -56,6 +57,10 @@ public class UnpooledDataSource implements DataSource {
    * JDBC驱动的Java类的完全限定名
    */
   private String driver;
+  /**
+   * 保护 {@link #driver} 的初始化，不使用监视器锁以免固定虚拟线程的载体线程
+   */
+  private final ReentrantLock lock = new ReentrantLock();
   /**
    * 数据库JDBC URL地址
    */
@@ -172,8 +177,13 @@ public class UnpooledDataSource implements DataSource {
     return driver;
   }
 
-  public synchronized void setDriver(String driver) {
-    this.driver = driver;
+  public void setDriver(String driver) {
+    lock.lock();
+    try {
+      this.driver = driver;
+    } finally {
+      lock.unlock();
+    }
   }
 
   public String getUrl() {
@@ -262,28 +272,33 @@ public class UnpooledDataSource implements DataSource {
     return connection;
   }
 
-  private synchronized void initializeDriver() throws SQLException {
-    //判断registerDrivers是否已经存在改driver，如果不存在 进行初始化
-    if (!registeredDrivers.containsKey(driver)) {
-      Class<?> driverType;
-      try {
-        //获取driver类
-        if (driverClassLoader != null) {
-          driverType = Class.forName(driver, true, driverClassLoader);
-        } else {
-          driverType = Resources.classForName(driver);
+  private void initializeDriver() throws SQLException {
+    lock.lock();
+    try {
+      //判断registerDrivers是否已经存在改driver，如果不存在 进行初始化
+      if (!registeredDrivers.containsKey(driver)) {
+        Class<?> driverType;
+        try {
+          //获取driver类
+          if (driverClassLoader != null) {
+            driverType = Class.forName(driver, true, driverClassLoader);
+          } else {
+            driverType = Resources.classForName(driver);
+          }
+          // DriverManager requires the driver to be loaded via the system ClassLoader.
+          // http://www.kfu.com/~nsayer/Java/dyn-jdbc.html
+          //创建Driver对象
+          Driver driverInstance = (Driver)driverType.getDeclaredConstructor().newInstance();
+          //创建DriverProxy对象，并且注册到DriverManager对象中
+          DriverManager.registerDriver(new DriverProxy(driverInstance));
+          //添加到registerDrivers中
+          registeredDrivers.put(driver, driverInstance);
+        } catch (Exception e) {
+          throw new SQLException("Error setting driver on UnpooledDataSource. Cause: " + e);
         }
-        // DriverManager requires the driver to be loaded via the system ClassLoader.
-        // http://www.kfu.com/~nsayer/Java/dyn-jdbc.html
-        //创建Driver对象
-        Driver driverInstance = (Driver)driverType.getDeclaredConstructor().newInstance();
-        //创建DriverProxy对象，并且注册到DriverManager对象中
-        DriverManager.registerDriver(new DriverProxy(driverInstance));
-        //添加到registerDrivers中
-        registeredDrivers.put(driver, driverInstance);
-      } catch (Exception e) {
-        throw new SQLException("Error setting driver on UnpooledDataSource. Cause: " + e);
       }
+    } finally {
+      lock.unlock();
     }
   }
 
@@ -21,7 +21,13 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.executor.keygen.Jdbc3KeyGenerator;
@@ -30,10 +36,15 @@ import org.apache.ibatis.executor.keygen.NoKeyGenerator;
 import org.apache.ibatis.executor.statement.StatementHandler;
 import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.ParameterMode;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.reflection.MetaObject;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
 import org.apache.ibatis.transaction.Transaction;
+import org.apache.ibatis.type.TypeHandlerRegistry;
 
 /**
  * @author Jeff Butler
@@ -46,9 +57,59 @@ public class BatchExecutor extends BaseExecutor {
   private final List<BatchResult> batchResultList = new ArrayList<>();
   private String currentSql;
   private MappedStatement currentStatement;
+  /**
+   * 是否按 SQL 和 MappedStatement 分组，而不是只复用相邻的 Statement
+   */
+  private final boolean grouping;
+  /**
+   * 分组时还可以追加的 insert 语句在 statementList 中的下标
+   */
+  private final Map<BatchKey, Integer> openInserts = new HashMap<>();
+  /**
+   * 自动执行前最多累积的行数，0 表示不限制
+   */
+  private final int flushSize;
+  /**
+   * 自动执行前最多累积的参数字节数（估算值），0 表示不限制
+   */
+  private final long flushBytes;
+  /**
+   * 自动执行的批次是否在 BatchResult 中保留参数对象，直到 flushStatements 返回。
+   * 不保留时自动执行的结果只包含更新行数，内存占用只和自动执行的次数有关
+   */
+  private final boolean retainParameters;
+  /**
+   * 还没有执行的行数
+   */
+  private int pendingRows;
+  /**
+   * 还没有执行的参数字节数（估算值）
+   */
+  private long pendingBytes;
+  /**
+   * 自动执行的结果，下一次 flushStatements 时一起返回
+   */
+  private final List<BatchResult> flushedResults = new ArrayList<>();
+  /**
+   * 是否在后台线程执行自动执行的批次
+   */
+  private final boolean pipelining;
+  /**
+   * 正在后台执行的批次，同一时间最多一个。结果包含之前所有自动执行的结果
+   */
+  private Future<List<BatchResult>> pendingFlush;
+  /**
+   * 正在后台执行的 Statement，回滚时取消
+   */
+  private List<Statement> pendingStatements;
 
   public BatchExecutor(Configuration configuration, Transaction transaction) {
     super(configuration, transaction);
+    this.grouping = configuration.isBatchGroupingEnabled();
+    this.flushSize = configuration.getBatchFlushSize() == null ? 0 : configuration.getBatchFlushSize();
+    this.flushBytes = configuration.getBatchFlushBytes() == null ? 0 : configuration.getBatchFlushBytes();
+    this.retainParameters = configuration.isBatchRetainParameters();
+    this.pipelining = configuration.isBatchPipeliningEnabled();
   }
 
   @Override
@@ -58,12 +119,12 @@ public class BatchExecutor extends BaseExecutor {
     final BoundSql boundSql = handler.getBoundSql();
     final String sql = boundSql.getSql();
     final Statement stmt;
-    if (sql.equals(currentSql) && ms.equals(currentStatement)) {
-      int last = statementList.size() - 1;
-      stmt = statementList.get(last);
+    final int index = findStatement(ms, sql);
+    if (index >= 0) {
+      stmt = statementList.get(index);
       applyTransactionTimeout(stmt);
       handler.parameterize(stmt);//fix Issues 322
-      BatchResult batchResult = batchResultList.get(last);
+      BatchResult batchResult = batchResultList.get(index);
       batchResult.addParameterObject(parameterObject);
     } else {
       Connection connection = getConnection(ms.getStatementLog());
@@ -73,11 +134,162 @@ public class BatchExecutor extends BaseExecutor {
       currentStatement = ms;
       statementList.add(stmt);
       batchResultList.add(new BatchResult(ms, sql, parameterObject));
+      if (grouping) {
+        if (ms.getSqlCommandType() == SqlCommandType.INSERT) {
+          openInserts.put(new BatchKey(ms, sql), statementList.size() - 1);
+        } else {
+          // update 和 delete 可能依赖之前的 insert，之后的 insert 不能再提前到它前面执行
+          openInserts.clear();
+        }
+      }
     }
     handler.batch(stmt);
+    pendingRows++;
+    if (flushBytes > 0) {
+      pendingBytes += estimateSize(configuration, boundSql, parameterObject);
+    }
+    if ((flushSize > 0 && pendingRows >= flushSize) || (flushBytes > 0 && pendingBytes >= flushBytes)) {
+      // 达到阈值，执行所有累积的语句以保持执行顺序
+      autoFlush();
+    }
     return BATCH_UPDATE_RETURN_VALUE;
   }
 
+  private void autoFlush() throws SQLException {
+    // 上一个批次执行完之后才能执行下一个批次，它的异常也在这里抛出
+    awaitPendingFlush();
+    if (!pipelining || !isPipelineSafe()) {
+      try {
+        executeStatements(statementList, batchResultList, flushedResults, retainParameters);
+      } finally {
+        closeStatements();
+      }
+      return;
+    }
+    final List<Statement> statements = new ArrayList<>(statementList);
+    final List<BatchResult> batchResults = new ArrayList<>(batchResultList);
+    // 和同步执行一样，失败时 BatchExecutorException 包含之前所有成功的结果
+    final List<BatchResult> results = new ArrayList<>(flushedResults);
+    // 交给后台线程执行和关闭，调用方继续在新的 Statement 上绑定参数
+    statementList.clear();
+    closeStatements();
+    pendingStatements = statements;
+    pendingFlush = Pipeline.EXECUTOR.submit(() -> {
+      try {
+        executeStatements(statements, batchResults, results, retainParameters);
+      } finally {
+        for (Statement stmt : statements) {
+          closeStatement(stmt);
+        }
+      }
+      return results;
+    });
+  }
+
+  /**
+   * 除了 Jdbc3KeyGenerator 之外的主键生成器会在执行后使用同一个连接查询，不能和调用方并发
+   */
+  private boolean isPipelineSafe() {
+    for (BatchResult batchResult : batchResultList) {
+      Class<?> keyGeneratorType = batchResult.getMappedStatement().getKeyGenerator().getClass();
+      if (!NoKeyGenerator.class.equals(keyGeneratorType) && !Jdbc3KeyGenerator.class.equals(keyGeneratorType)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * 等待后台执行的批次完成，它的结果包含之前的 flushedResults，所以直接替换
+   */
+  private void awaitPendingFlush() throws SQLException {
+    if (pendingFlush == null) {
+      return;
+    }
+    Future<List<BatchResult>> flush = pendingFlush;
+    pendingFlush = null;
+    pendingStatements = null;
+    try {
+      List<BatchResult> results = flush.get();
+      flushedResults.clear();
+      flushedResults.addAll(results);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ExecutorException("Interrupted while waiting for a pipelined batch.", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof SQLException) {
+        throw (SQLException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new ExecutorException("Error executing a pipelined batch.  Cause: " + cause, cause);
+    }
+  }
+
+  /**
+   * 估算一行参数占用的字节数，只用于判断是否达到 batchFlushBytes
+   */
+  private long estimateSize(Configuration configuration, BoundSql boundSql, Object parameterObject) {
+    List<ParameterMapping> parameterMappings = boundSql.getParameterMappings();
+    if (parameterMappings == null) {
+      return 0;
+    }
+    TypeHandlerRegistry typeHandlerRegistry = configuration.getTypeHandlerRegistry();
+    MetaObject metaObject = null;
+    long size = 0;
+    for (ParameterMapping parameterMapping : parameterMappings) {
+      if (parameterMapping.getMode() == ParameterMode.OUT) {
+        continue;
+      }
+      Object value;
+      String propertyName = parameterMapping.getProperty();
+      if (boundSql.hasAdditionalParameter(propertyName)) {
+        value = boundSql.getAdditionalParameter(propertyName);
+      } else if (parameterObject == null) {
+        value = null;
+      } else if (typeHandlerRegistry.hasTypeHandler(parameterObject.getClass())) {
+        value = parameterObject;
+      } else {
+        if (metaObject == null) {
+          metaObject = configuration.newMetaObject(parameterObject);
+        }
+        value = metaObject.getValue(propertyName);
+      }
+      if (value instanceof CharSequence) {
+        size += 2L * ((CharSequence) value).length();
+      } else if (value instanceof byte[]) {
+        size += ((byte[]) value).length;
+      } else {
+        size += 16;
+      }
+    }
+    return size;
+  }
+
+  /**
+   * 查找可以追加的 Statement
+   *
+   * 默认只复用最后一个 Statement。分组时 insert 语句还可以追加到之前打开的相同 Statement，
+   * 执行时按照 Statement 第一次出现的顺序，所以交替插入父表和子表时父表的行仍然先执行。
+   * 没有表结构信息，无法判断追加的行是否依赖之后打开的 Statement，第一次出现的是子表时不保证顺序，
+   * 见 {@link Configuration#setBatchGroupingEnabled(boolean)}
+   *
+   * @return statementList 中的下标，没有时返回 -1
+   */
+  private int findStatement(MappedStatement ms, String sql) {
+    if (sql.equals(currentSql) && ms.equals(currentStatement)) {
+      return statementList.size() - 1;
+    }
+    if (grouping && ms.getSqlCommandType() == SqlCommandType.INSERT) {
+      Integer index = openInserts.get(new BatchKey(ms, sql));
+      if (index != null) {
+        return index;
+      }
+    }
+    return -1;
+  }
+
   @Override
   public <E> List<E> doQuery(MappedStatement ms, Object parameterObject, RowBounds rowBounds, ResultHandler resultHandler, BoundSql boundSql)
       throws SQLException {
@@ -110,53 +322,138 @@ public class BatchExecutor extends BaseExecutor {
   @Override
   public List<BatchResult> doFlushStatements(boolean isRollback) throws SQLException {
     try {
-      List<BatchResult> results = new ArrayList<>();
       if (isRollback) {
+        cancelPendingFlush();
         return Collections.emptyList();
       }
-      for (int i = 0, n = statementList.size(); i < n; i++) {
-        Statement stmt = statementList.get(i);
-        applyTransactionTimeout(stmt);
-        BatchResult batchResult = batchResultList.get(i);
-        try {
-          batchResult.setUpdateCounts(stmt.executeBatch());
-          MappedStatement ms = batchResult.getMappedStatement();
-          List<Object> parameterObjects = batchResult.getParameterObjects();
-          KeyGenerator keyGenerator = ms.getKeyGenerator();
-          if (Jdbc3KeyGenerator.class.equals(keyGenerator.getClass())) {
-            Jdbc3KeyGenerator jdbc3KeyGenerator = (Jdbc3KeyGenerator) keyGenerator;
-            jdbc3KeyGenerator.processBatch(ms, stmt, parameterObjects);
-          } else if (!NoKeyGenerator.class.equals(keyGenerator.getClass())) { //issue #141
-            for (Object parameter : parameterObjects) {
-              keyGenerator.processAfter(this, ms, stmt, parameter);
-            }
-          }
-          // Close statement to close cursor #1109
-          closeStatement(stmt);
-        } catch (BatchUpdateException e) {
-          StringBuilder message = new StringBuilder();
-          message.append(batchResult.getMappedStatement().getId())
-              .append(" (batch index #")
-              .append(i + 1)
-              .append(")")
-              .append(" failed.");
-          if (i > 0) {
-            message.append(" ")
-                .append(i)
-                .append(" prior sub executor(s) completed successfully, but will be rolled back.");
-          }
-          throw new BatchExecutorException(message.toString(), e, results, batchResult);
-        }
-        results.add(batchResult);
-      }
+      awaitPendingFlush();
+      List<BatchResult> results = new ArrayList<>(flushedResults);
+      executeStatements(statementList, batchResultList, results, true);
       return results;
     } finally {
-      for (Statement stmt : statementList) {
+      closeStatements();
+      flushedResults.clear();
+    }
+  }
+
+  /**
+   * 回滚或者关闭时取消后台执行的批次，并且等待它结束，之后才能回滚或者关闭连接
+   */
+  private void cancelPendingFlush() {
+    if (pendingFlush == null) {
+      return;
+    }
+    for (Statement stmt : pendingStatements) {
+      try {
+        stmt.cancel();
+      } catch (SQLException e) {
+        // 已经执行完或者已经关闭
+      }
+    }
+    try {
+      awaitPendingFlush();
+    } catch (SQLException | RuntimeException e) {
+      // 回滚时忽略后台批次的异常
+    }
+  }
+
+  /**
+   * 依次执行累积的语句，成功的结果添加到 results 中
+   *
+   * @param retain 是否在结果中保留参数对象，不保留时添加只包含更新行数的新 BatchResult
+   */
+  private void executeStatements(List<Statement> statementList, List<BatchResult> batchResultList,
+      List<BatchResult> results, boolean retain) throws SQLException {
+    for (int i = 0, n = statementList.size(); i < n; i++) {
+      Statement stmt = statementList.get(i);
+      applyTransactionTimeout(stmt);
+      BatchResult batchResult = batchResultList.get(i);
+      try {
+        batchResult.setUpdateCounts(stmt.executeBatch());
+        MappedStatement ms = batchResult.getMappedStatement();
+        List<Object> parameterObjects = batchResult.getParameterObjects();
+        KeyGenerator keyGenerator = ms.getKeyGenerator();
+        if (Jdbc3KeyGenerator.class.equals(keyGenerator.getClass())) {
+          Jdbc3KeyGenerator jdbc3KeyGenerator = (Jdbc3KeyGenerator) keyGenerator;
+          jdbc3KeyGenerator.processBatch(ms, stmt, parameterObjects);
+        } else if (!NoKeyGenerator.class.equals(keyGenerator.getClass())) { //issue #141
+          for (Object parameter : parameterObjects) {
+            keyGenerator.processAfter(this, ms, stmt, parameter);
+          }
+        }
+        // Close statement to close cursor #1109
         closeStatement(stmt);
+        if (!retain) {
+          // 主键已经回填，结果中不再持有参数对象
+          BatchResult executed = new BatchResult(ms, batchResult.getSql());
+          executed.setUpdateCounts(batchResult.getUpdateCounts());
+          batchResult = executed;
+        }
+      } catch (BatchUpdateException e) {
+        StringBuilder message = new StringBuilder();
+        message.append(batchResult.getMappedStatement().getId())
+            .append(" (batch index #")
+            .append(results.size() + 1)
+            .append(")")
+            .append(" failed.");
+        if (!results.isEmpty()) {
+          message.append(" ")
+              .append(results.size())
+              .append(" prior sub executor(s) completed successfully, but will be rolled back.");
+        }
+        throw new BatchExecutorException(message.toString(), e, results, batchResult);
+      }
+      results.add(batchResult);
+    }
+  }
+
+  private void closeStatements() {
+    for (Statement stmt : statementList) {
+      closeStatement(stmt);
+    }
+    currentSql = null;
+    statementList.clear();
+    batchResultList.clear();
+    openInserts.clear();
+    pendingRows = 0;
+    pendingBytes = 0;
+  }
+
+  /**
+   * 所有 BatchExecutor 共享的后台执行线程
+   */
+  private static final class Pipeline {
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(r -> {
+      Thread thread = new Thread(r, "mybatis-batch-pipeline");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  private static final class BatchKey {
+    private final MappedStatement ms;
+    private final String sql;
+
+    BatchKey(MappedStatement ms, String sql) {
+      this.ms = ms;
+      this.sql = sql;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof BatchKey)) {
+        return false;
       }
-      currentSql = null;
-      statementList.clear();
-      batchResultList.clear();
+      BatchKey other = (BatchKey) o;
+      return ms.equals(other.ms) && sql.equals(other.sql);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * ms.hashCode() + sql.hashCode();
     }
   }
 
@@ -16,21 +16,29 @@
 package org.apache.ibatis.executor;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.cache.RefreshableCache;
 import org.apache.ibatis.cache.TransactionalCacheManager;
+import org.apache.ibatis.cache.decorators.MetricsCache;
 import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.Environment;
 import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.mapping.ParameterMapping;
 import org.apache.ibatis.mapping.ParameterMode;
 import org.apache.ibatis.mapping.StatementType;
 import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ExecutorType;
 import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
 import org.apache.ibatis.transaction.Transaction;
+import org.apache.ibatis.type.TypeHandlerRegistry;
 
 /**
  * @author Clinton Begin
@@ -78,6 +86,10 @@ public class CachingExecutor implements Executor {
 
   @Override
   public <E> List<E> query(MappedStatement ms, Object parameterObject, RowBounds rowBounds, ResultHandler resultHandler) throws SQLException {
+    if (ms.getCache() == null) {
+      //没有二级缓存，由被委托的执行器决定是否需要 CacheKey
+      return delegate.query(ms, parameterObject, rowBounds, resultHandler);
+    }
     BoundSql boundSql = ms.getBoundSql(parameterObject);
     CacheKey key = createCacheKey(ms, parameterObject, rowBounds, boundSql);
     return query(ms, parameterObject, rowBounds, resultHandler, key, boundSql);
@@ -100,8 +112,15 @@ public class CachingExecutor implements Executor {
         @SuppressWarnings("unchecked")
         List<E> list = (List<E>) tcm.getObject(cache, key);
         if (list == null) {
+          long start = System.nanoTime();
           list = delegate.query(ms, parameterObject, rowBounds, resultHandler, key, boundSql);
-          tcm.putObject(cache, key, list); // issue #578 and #116
+          if (cache instanceof MetricsCache) {
+            ((MetricsCache) cache).recordLoad(System.nanoTime() - start);
+          }
+          tcm.putObject(cache, key, list, ms.getCacheTags()); // issue #578 and #116
+        } else if (cache instanceof RefreshableCache && ((RefreshableCache) cache).claimRefresh(key)) {
+          //热点键即将过期，在后台重新查询
+          ((RefreshableCache) cache).refresh(key, newRefreshLoader(ms, parameterObject, rowBounds, key, boundSql));
         }
         return list;
       }
@@ -131,6 +150,72 @@ public class CachingExecutor implements Executor {
     }
   }
 
+  /**
+   * 创建后台刷新使用的 loader，使用独立的事务和不经过二级缓存的 SIMPLE 执行器（插件仍然生效），不影响当前会话。
+   * 参数值在创建 loader 时复制，调用方之后修改参数对象不会影响刷新的结果
+   */
+  private Callable<Object> newRefreshLoader(MappedStatement ms, Object parameterObject, RowBounds rowBounds, CacheKey key, BoundSql boundSql) {
+    Configuration configuration = ms.getConfiguration();
+    BoundSql snapshot = snapshotBoundSql(configuration, parameterObject, boundSql);
+    return () -> {
+      Environment environment = configuration.getEnvironment();
+      if (environment == null) {
+        return null;
+      }
+      Transaction tx = environment.getTransactionFactory().newTransaction(environment.getDataSource(), null, false);
+      Executor executor = configuration.newExecutor(tx, ExecutorType.SIMPLE, false);
+      try {
+        return executor.query(ms, null, rowBounds, Executor.NO_RESULT_HANDLER, key, snapshot);
+      } finally {
+        executor.close(false);
+      }
+    };
+  }
+
+  /**
+   * 按 {@link org.apache.ibatis.scripting.defaults.DefaultParameterHandler} 的规则取出每个参数的当前值，
+   * 作为附加参数放入新的 BoundSql
+   */
+  private BoundSql snapshotBoundSql(Configuration configuration, Object parameterObject, BoundSql boundSql) {
+    TypeHandlerRegistry typeHandlerRegistry = configuration.getTypeHandlerRegistry();
+    List<ParameterMapping> parameterMappings = boundSql.getParameterMappings();
+    List<ParameterMapping> snapshotMappings = new ArrayList<>(parameterMappings.size());
+    List<Object> values = new ArrayList<>(parameterMappings.size());
+    MetaObject metaObject = null;
+    for (int i = 0; i < parameterMappings.size(); i++) {
+      ParameterMapping parameterMapping = parameterMappings.get(i);
+      String propertyName = parameterMapping.getProperty();
+      Object value;
+      if (boundSql.hasAdditionalParameter(propertyName)) {
+        value = boundSql.getAdditionalParameter(propertyName);
+      } else if (parameterObject == null) {
+        value = null;
+      } else if (typeHandlerRegistry.hasTypeHandler(parameterObject.getClass())) {
+        value = parameterObject;
+      } else {
+        if (metaObject == null) {
+          metaObject = configuration.newMetaObject(parameterObject);
+        }
+        value = metaObject.getValue(propertyName);
+      }
+      values.add(value);
+      snapshotMappings.add(new ParameterMapping.Builder(configuration, "__refresh_" + i, parameterMapping.getTypeHandler())
+          .mode(parameterMapping.getMode())
+          .javaType(parameterMapping.getJavaType())
+          .jdbcType(parameterMapping.getJdbcType())
+          .numericScale(parameterMapping.getNumericScale())
+          .resultMapId(parameterMapping.getResultMapId())
+          .jdbcTypeName(parameterMapping.getJdbcTypeName())
+          .expression(parameterMapping.getExpression())
+          .build());
+    }
+    BoundSql snapshot = new BoundSql(configuration, boundSql.getSql(), snapshotMappings, null);
+    for (int i = 0; i < values.size(); i++) {
+      snapshot.setAdditionalParameter("__refresh_" + i, values.get(i));
+    }
+    return snapshot;
+  }
+
   private void ensureNoOutParams(MappedStatement ms, BoundSql boundSql) {
     if (ms.getStatementType() == StatementType.CALLABLE) {
       for (ParameterMapping parameterMapping : boundSql.getParameterMappings()) {
@@ -164,7 +249,11 @@ public class CachingExecutor implements Executor {
   private void flushCacheIfRequired(MappedStatement ms) {
     Cache cache = ms.getCache();
     if (cache != null && ms.isFlushCacheRequired()) {
-      tcm.clear(cache);
+      if (ms.getCacheTags() != null) {
+        tcm.invalidate(cache, ms.getCacheTags());
+      } else {
+        tcm.clear(cache);
+      }
     }
   }
 
@@ -16,10 +16,13 @@
 package org.apache.ibatis.executor;
 
 import java.sql.Connection;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -38,10 +41,32 @@ import org.apache.ibatis.transaction.Transaction;
  */
 public class ReuseExecutor extends BaseExecutor {
 
-  private final Map<String, Statement> statementMap = new HashMap<>();
+  private final Map<String, Statement> statementMap;
+  /**
+   * 超过上限被移出 statementMap，但是结果集仍在使用（嵌套查询、打开的 Cursor）而延迟关闭的 Statement
+   */
+  private final List<Statement> retiredStatements = new ArrayList<>();
 
   public ReuseExecutor(Configuration configuration, Transaction transaction) {
     super(configuration, transaction);
+    final Integer limit = configuration.getStatementReuseLimit();
+    if (limit == null) {
+      this.statementMap = new LinkedHashMap<>();
+    } else {
+      // 超过上限时移除最久没有使用的 Statement，结果集仍在使用时延迟关闭
+      this.statementMap = new LinkedHashMap<String, Statement>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Statement> eldest) {
+          if (size() > limit) {
+            retire(eldest.getValue());
+            return true;
+          }
+          return false;
+        }
+      };
+    }
   }
 
   @Override
@@ -74,10 +99,50 @@ public class ReuseExecutor extends BaseExecutor {
       closeStatement(stmt);
     }
     statementMap.clear();
+    for (Statement stmt : retiredStatements) {
+      closeStatement(stmt);
+    }
+    retiredStatements.clear();
     return Collections.emptyList();
   }
 
+  private void retire(Statement stmt) {
+    if (isBusy(stmt)) {
+      retiredStatements.add(stmt);
+    } else {
+      closeStatement(stmt);
+    }
+  }
+
+  /**
+   * 关闭结果集已经用完的延迟关闭的 Statement
+   */
+  private void closeRetiredStatements() {
+    for (Iterator<Statement> it = retiredStatements.iterator(); it.hasNext();) {
+      Statement stmt = it.next();
+      if (!isBusy(stmt)) {
+        it.remove();
+        closeStatement(stmt);
+      }
+    }
+  }
+
+  /**
+   * @return Statement 的结果集是否还没有关闭
+   */
+  private boolean isBusy(Statement stmt) {
+    try {
+      ResultSet rs = stmt.getResultSet();
+      return rs != null && !rs.isClosed();
+    } catch (SQLException e) {
+      return false;
+    }
+  }
+
   private Statement prepareStatement(StatementHandler handler, Log statementLog) throws SQLException {
+    if (!retiredStatements.isEmpty()) {
+      closeRetiredStatements();
+    }
     Statement stmt;
     BoundSql boundSql = handler.getBoundSql();
     String sql = boundSql.getSql();
@@ -0,0 +1,306 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.loader;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.ibatis.binding.MapperMethod.ParamMap;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.ExecutorException;
+import org.apache.ibatis.executor.ResultExtractor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
+
+/**
+ * 批量执行嵌套查询的加载器
+ *
+ * 收集多个父对象的键，使用一次嵌套查询加载所有父对象的属性。嵌套查询的参数是去重后的键的列表，
+ * 可以通过 list 或 collection 访问，复合键是属性名与值的 Map。查询结果按照 foreignColumn 指定的列
+ * 对应的属性值分配给键相同的父对象。
+ *
+ * 延迟加载时每个父对象通过 {@link #addLazyTarget(Object)} 得到自己的 {@link ResultLoader}，
+ * 其中任意一个触发加载时查询整个批次，其他父对象之后触发加载时直接使用已经查询出的值。
+ *
+ * <pre>
+ * &lt;association property="author" column="author_id" select="selectAuthors"
+ *     foreignColumn="id" batchSize="100"/&gt;
+ *
+ * &lt;select id="selectAuthors" resultType="Author"&gt;
+ *   select * from author where id in
+ *   &lt;foreach collection="list" item="id" open="(" separator="," close=")"&gt;#{id}&lt;/foreach&gt;
+ * &lt;/select&gt;
+ * </pre>
+ *
+ * @since 3.5.3
+ */
+public class BatchResultLoader {
+
+  protected final Configuration configuration;
+  protected final Executor executor;
+  protected final MappedStatement mappedStatement;
+  protected final ResultMapping resultMapping;
+  protected final ResultExtractor resultExtractor;
+  private final String[] foreignColumns;
+
+  /**
+   * 去重后的键，key 为用于比较的键，value 为传给嵌套查询的键
+   */
+  private final Map<Object, Object> keys = new LinkedHashMap<>();
+  private final List<MetaObject> targets = new ArrayList<>();
+  private final List<Object> targetKeys = new ArrayList<>();
+
+  // 以下字段用于延迟加载，由 lock 保护
+  private final ReentrantLock lock = new ReentrantLock();
+  /**
+   * 每个父对象的值，查询之前为 null
+   */
+  private List<Object> lazyValues;
+
+  public BatchResultLoader(Configuration configuration, Executor executor, MappedStatement mappedStatement, ResultMapping resultMapping) {
+    this.configuration = configuration;
+    this.executor = executor;
+    this.mappedStatement = mappedStatement;
+    this.resultMapping = resultMapping;
+    this.resultExtractor = new ResultExtractor(configuration, configuration.getObjectFactory());
+    this.foreignColumns = resultMapping.getForeignColumn().split(",");
+    for (int i = 0; i < foreignColumns.length; i++) {
+      foreignColumns[i] = foreignColumns[i].trim();
+    }
+  }
+
+  /**
+   * 添加需要加载属性的父对象
+   *
+   * @param metaResultObject 父对象
+   * @param key 父对象的键，复合键是属性名与值的 Map
+   */
+  public void addTarget(MetaObject metaResultObject, Object key) {
+    addKey(key);
+    targets.add(metaResultObject);
+  }
+
+  /**
+   * 添加需要延迟加载属性的父对象
+   *
+   * @param key 父对象的键，复合键是属性名与值的 Map
+   * @return 加载该父对象属性的 ResultLoader，需要添加到父对象的 {@link ResultLoaderMap}
+   */
+  public ResultLoader addLazyTarget(Object key) {
+    if (isLoaded()) {
+      throw new IllegalStateException("Cannot add targets to a batch that was already loaded");
+    }
+    addKey(key);
+    // 反序列化后无法恢复批次，只使用自己的键查询
+    List<Object> keyList = new ArrayList<>(1);
+    keyList.add(key);
+    return new LazyResultLoader(this, targetKeys.size() - 1, wrapKeys(keyList));
+  }
+
+  private void addKey(Object key) {
+    Object comparableKey = comparableParentKey(key);
+    keys.putIfAbsent(comparableKey, key);
+    targetKeys.add(comparableKey);
+  }
+
+  public int size() {
+    return targetKeys.size();
+  }
+
+  /**
+   * @return 延迟加载的批次是否已经查询过，查询过的批次不能再添加父对象
+   */
+  public boolean isLoaded() {
+    lock.lock();
+    try {
+      return lazyValues != null;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * 执行嵌套查询，把结果设置到所有父对象的属性，然后清空父对象
+   */
+  public void load() throws SQLException {
+    if (targets.isEmpty()) {
+      return;
+    }
+    List<Object> values = query(new ResultLoader(configuration, executor, mappedStatement, null, List.class, null, null));
+    String property = resultMapping.getProperty();
+    for (int i = 0; i < targets.size(); i++) {
+      MetaObject metaObject = targets.get(i);
+      Object value = values.get(i);
+      if (value != null || (configuration.isCallSettersOnNulls() && !metaObject.getSetterType(property).isPrimitive())) {
+        metaObject.setValue(property, value);
+      }
+    }
+    keys.clear();
+    targets.clear();
+    targetKeys.clear();
+  }
+
+  private Object loadLazily(ResultLoader resultLoader, int index) throws SQLException {
+    lock.lock();
+    try {
+      if (lazyValues == null) {
+        lazyValues = query(resultLoader);
+      }
+      return lazyValues.get(index);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * 查询批次中所有的键
+   *
+   * @param resultLoader 用于选择执行器
+   * @return 按添加顺序排列的每个父对象的值
+   */
+  private List<Object> query(ResultLoader resultLoader) throws SQLException {
+    List<Object> results = resultLoader.selectList(wrapKeys(new ArrayList<>(keys.values())));
+
+    Map<Object, List<Object>> resultsByKey = new HashMap<>();
+    for (Object result : results) {
+      if (result != null) {
+        resultsByKey.computeIfAbsent(comparableChildKey(result), k -> new ArrayList<>()).add(result);
+      }
+    }
+    List<Object> values = new ArrayList<>(targetKeys.size());
+    for (Object targetKey : targetKeys) {
+      List<Object> matches = resultsByKey.getOrDefault(targetKey, Collections.emptyList());
+      // 每个父对象使用自己的集合
+      values.add(resultExtractor.extractObjectFromList(new ArrayList<>(matches), resultMapping.getJavaType()));
+    }
+    return values;
+  }
+
+  private static Object wrapKeys(List<Object> keyList) {
+    ParamMap<Object> parameterObject = new ParamMap<>();
+    parameterObject.put("collection", keyList);
+    parameterObject.put("list", keyList);
+    return parameterObject;
+  }
+
+  private Object comparableParentKey(Object key) {
+    if (!resultMapping.isCompositeResult()) {
+      return comparable(key);
+    }
+    MetaObject metaKey = configuration.newMetaObject(key);
+    List<Object> values = new ArrayList<>(resultMapping.getComposites().size());
+    for (ResultMapping composite : resultMapping.getComposites()) {
+      values.add(comparable(metaKey.getValue(composite.getProperty())));
+    }
+    return values;
+  }
+
+  private Object comparableChildKey(Object result) {
+    MetaObject metaResult = configuration.newMetaObject(result);
+    if (foreignColumns.length == 1) {
+      return comparable(getForeignValue(metaResult, foreignColumns[0]));
+    }
+    List<Object> values = new ArrayList<>(foreignColumns.length);
+    for (String column : foreignColumns) {
+      values.add(comparable(getForeignValue(metaResult, column)));
+    }
+    return values;
+  }
+
+  /**
+   * 获取子对象中与 foreignColumn 对应的值，依次查找嵌套查询的结果映射、同名（或驼峰命名）的属性
+   */
+  private Object getForeignValue(MetaObject metaResult, String column) {
+    if (metaResult.getOriginalObject() instanceof Map) {
+      Map<?, ?> map = (Map<?, ?>) metaResult.getOriginalObject();
+      if (map.containsKey(column)) {
+        return map.get(column);
+      }
+      for (Map.Entry<?, ?> entry : map.entrySet()) {
+        if (entry.getKey() instanceof String && column.equalsIgnoreCase((String) entry.getKey())) {
+          return entry.getValue();
+        }
+      }
+      return null;
+    }
+    String property = null;
+    List<ResultMap> resultMaps = mappedStatement.getResultMaps();
+    if (!resultMaps.isEmpty()) {
+      for (ResultMapping mapping : resultMaps.get(0).getPropertyResultMappings()) {
+        if (column.equalsIgnoreCase(mapping.getColumn())) {
+          property = mapping.getProperty();
+          break;
+        }
+      }
+    }
+    if (property == null) {
+      property = metaResult.findProperty(column, configuration.isMapUnderscoreToCamelCase());
+    }
+    if (property == null || !metaResult.hasGetter(property)) {
+      throw new ExecutorException("No property of '" + metaResult.getOriginalObject().getClass().getName()
+          + "' matches foreignColumn '" + column + "' of property '" + resultMapping.getProperty() + "'.");
+    }
+    return metaResult.getValue(property);
+  }
+
+  /**
+   * 父对象的键和子对象的属性的类型可能不同（比如 Integer 和 Long），数字统一转换为 BigDecimal 比较
+   */
+  private static Object comparable(Object value) {
+    if (value instanceof Number) {
+      try {
+        BigDecimal decimal = new BigDecimal(value.toString());
+        return decimal.signum() == 0 ? BigDecimal.ZERO : decimal.stripTrailingZeros();
+      } catch (NumberFormatException e) {
+        return value;
+      }
+    }
+    return value;
+  }
+
+  /**
+   * 延迟加载批次中一个父对象的属性
+   */
+  private static class LazyResultLoader extends ResultLoader {
+
+    private final BatchResultLoader batch;
+    private final int index;
+
+    LazyResultLoader(BatchResultLoader batch, int index, Object parameterObject) {
+      super(batch.configuration, batch.executor, batch.mappedStatement, parameterObject, batch.resultMapping.getJavaType(), null, null);
+      this.batch = batch;
+      this.index = index;
+    }
+
+    @Override
+    public Object loadResult() throws SQLException {
+      resultObject = batch.loadLazily(this, index);
+      return resultObject;
+    }
+
+  }
+
+}
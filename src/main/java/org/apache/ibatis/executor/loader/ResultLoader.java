@@ -86,6 +86,25 @@ public class ResultLoader {
     }
   }
 
+  /**
+   * 使用其他参数执行 {@link #mappedStatement}，与 {@link #loadResult()} 一样，不在创建线程或者执行器已关闭时使用新的执行器
+   *
+   * @since 3.5.3
+   */
+  protected <E> List<E> selectList(Object parameterObject) throws SQLException {
+    Executor localExecutor = executor;
+    if (Thread.currentThread().getId() != this.creatorThreadId || localExecutor.isClosed()) {
+      localExecutor = newExecutor();
+    }
+    try {
+      return localExecutor.query(mappedStatement, parameterObject, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+    } finally {
+      if (localExecutor != executor) {
+        localExecutor.close(false);
+      }
+    }
+  }
+
   private Executor newExecutor() {
     final Environment environment = configuration.getEnvironment();
     if (environment == null) {
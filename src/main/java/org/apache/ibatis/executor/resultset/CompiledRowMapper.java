@@ -0,0 +1,273 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.lang.UsesJava7;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.reflection.ExceptionUtil;
+import org.apache.ibatis.reflection.MetaClass;
+import org.apache.ibatis.reflection.ReflectionException;
+import org.apache.ibatis.reflection.Reflector;
+import org.apache.ibatis.reflection.factory.ObjectFactory;
+import org.apache.ibatis.reflection.invoker.AmbiguousMethodInvoker;
+import org.apache.ibatis.reflection.invoker.Invoker;
+import org.apache.ibatis.reflection.invoker.MethodInvoker;
+import org.apache.ibatis.reflection.invoker.SetFieldInvoker;
+import org.apache.ibatis.reflection.wrapper.DefaultObjectWrapperFactory;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.type.TypeHandler;
+import org.apache.ibatis.type.TypeHandlerRegistry;
+
+/**
+ * 预编译的简单结果映射
+ *
+ * 对于只有简单属性映射的结果映射（没有构造方法映射、鉴别器、嵌套结果映射、嵌套查询和嵌套属性），
+ * 第一次处理某种列布局的结果集时，把属性映射和自动映射解析为列序号、类型处理器和绑定到 setter 的 {@link MethodHandle}，
+ * 缓存在 {@link ResultMap#getCompiledRowMappers()} 中。之后每一行直接按顺序读取列（启用 useColumnIndex 时按序号读取）并调用 setter，
+ * 不再经过 {@link org.apache.ibatis.reflection.MetaObject}、映射的列名列表和自动映射的缓存。
+ *
+ * 映射的结果与 {@link DefaultResultSetHandler} 的通用流程相同，无法预编译的结果映射继续使用通用流程。
+ *
+ * @since 3.5.3
+ */
+public final class CompiledRowMapper {
+
+  /**
+   * 无法预编译的列布局，同样缓存起来避免重复解析
+   */
+  static final CompiledRowMapper UNSUPPORTED = new CompiledRowMapper(null, new ColumnMapping[0], false);
+
+  private final Class<?> type;
+  private final ColumnMapping[] columnMappings;
+  private final boolean returnInstanceForEmptyRow;
+
+  private CompiledRowMapper(Class<?> type, ColumnMapping[] columnMappings, boolean returnInstanceForEmptyRow) {
+    this.type = type;
+    this.columnMappings = columnMappings;
+    this.returnInstanceForEmptyRow = returnInstanceForEmptyRow;
+  }
+
+  public boolean isSupported() {
+    return this != UNSUPPORTED;
+  }
+
+  /**
+   * 映射当前行
+   */
+  Object map(ResultSet rs, ObjectFactory objectFactory) throws SQLException {
+    final Object rowValue = objectFactory.create(type);
+    boolean foundValues = false;
+    for (ColumnMapping columnMapping : columnMappings) {
+      final Object value = columnMapping.getResult(rs);
+      if (value != null) {
+        foundValues = true;
+        columnMapping.set(rowValue, value);
+      } else if (columnMapping.setOnNull) {
+        // gcode issue #377, call setter on nulls (value is not 'found')
+        columnMapping.set(rowValue, null);
+      }
+    }
+    return foundValues || returnInstanceForEmptyRow ? rowValue : null;
+  }
+
+  /**
+   * 结果集的列布局以及影响映射的配置，用作 {@link CompiledRowMappers} 的 key
+   */
+  static Object layoutOf(ResultSetWrapper rsw, boolean autoMapping, Configuration configuration) {
+    return Arrays.asList(rsw.getColumnNames(), rsw.getClassNames(), rsw.getJdbcTypes(), autoMapping,
+        configuration.isMapUnderscoreToCamelCase(), configuration.isCallSettersOnNulls(), configuration.isReturnInstanceForEmptyRow(),
+        configuration.isUseColumnIndex());
+  }
+
+  /**
+   * 预编译结果映射
+   *
+   * @param autoMapping 是否应用自动映射
+   * @return 无法预编译时返回 {@link #UNSUPPORTED}
+   */
+  static CompiledRowMapper compile(ResultSetWrapper rsw, ResultMap resultMap, boolean autoMapping, Configuration configuration) throws SQLException {
+    final Class<?> type = resultMap.getType();
+    if (resultMap.getDiscriminator() != null || resultMap.hasNestedQueries() || resultMap.hasNestedResultMaps()
+        || !resultMap.getConstructorResultMappings().isEmpty()
+        || type.isInterface() || Collection.class.isAssignableFrom(type) || Map.class.isAssignableFrom(type)
+        || configuration.getObjectWrapperFactory().getClass() != DefaultObjectWrapperFactory.class) {
+      return UNSUPPORTED;
+    }
+    final MetaClass metaClass = MetaClass.forClass(type, configuration.getReflectorFactory());
+    if (!metaClass.hasDefaultConstructor()) {
+      return UNSUPPORTED;
+    }
+    final boolean callSettersOnNulls = configuration.isCallSettersOnNulls();
+    final List<ColumnMapping> columnMappings = new ArrayList<>();
+    // 与通用流程相同，先应用自动映射，再应用属性映射
+    if (autoMapping) {
+      final TypeHandlerRegistry typeHandlerRegistry = configuration.getTypeHandlerRegistry();
+      for (String columnName : rsw.getUnmappedColumnNames(resultMap, null)) {
+        final String property = metaClass.findProperty(columnName, configuration.isMapUnderscoreToCamelCase());
+        if (property == null || !isSimpleProperty(property) || !metaClass.hasSetter(property)) {
+          // 未知的列交给通用流程按 autoMappingUnknownColumnBehavior 处理
+          return UNSUPPORTED;
+        }
+        if (resultMap.getMappedProperties().contains(property)) {
+          continue;
+        }
+        final Class<?> propertyType = metaClass.getSetterType(property);
+        if (!typeHandlerRegistry.hasTypeHandler(propertyType, rsw.getJdbcType(columnName))) {
+          return UNSUPPORTED;
+        }
+        final TypeHandler<?> typeHandler = rsw.getTypeHandler(propertyType, columnName);
+        columnMappings.add(new ColumnMapping(columnName, rsw.getColumnIndex(columnName), typeHandler, rsw.isReadByColumnIndex(typeHandler),
+            property, metaClass.getSetInvoker(property), callSettersOnNulls && !propertyType.isPrimitive()));
+      }
+    }
+    for (ResultMapping propertyMapping : resultMap.getPropertyResultMappings()) {
+      final String property = propertyMapping.getProperty();
+      if (propertyMapping.isCompositeResult() || propertyMapping.getResultSet() != null) {
+        return UNSUPPORTED;
+      }
+      final String column = propertyMapping.getColumn();
+      // issue #541 make property optional
+      if (column == null || property == null) {
+        continue;
+      }
+      final int columnIndex = rsw.getColumnIndex(column);
+      if (columnIndex == 0) {
+        continue;
+      }
+      if (!isSimpleProperty(property) || !metaClass.hasSetter(property)) {
+        return UNSUPPORTED;
+      }
+      final TypeHandler<?> typeHandler = propertyMapping.getTypeHandler();
+      columnMappings.add(new ColumnMapping(column, columnIndex, typeHandler, rsw.isReadByColumnIndex(typeHandler), property,
+          metaClass.getSetInvoker(property), callSettersOnNulls && !metaClass.getSetterType(property).isPrimitive()));
+    }
+    return new CompiledRowMapper(type, columnMappings.toArray(new ColumnMapping[0]), configuration.isReturnInstanceForEmptyRow());
+  }
+
+  private static boolean isSimpleProperty(String property) {
+    return property.indexOf('.') < 0 && property.indexOf('[') < 0;
+  }
+
+  /**
+   * 一列到一个属性的映射
+   */
+  private static final class ColumnMapping {
+
+    private final String column;
+    private final int columnIndex;
+    private final TypeHandler<?> typeHandler;
+    private final boolean byIndex;
+    private final String property;
+    private final Invoker setInvoker;
+    private final MethodHandle setter;
+    private final boolean setOnNull;
+
+    ColumnMapping(String column, int columnIndex, TypeHandler<?> typeHandler, boolean byIndex, String property, Invoker setInvoker,
+        boolean setOnNull) {
+      this.column = column;
+      this.columnIndex = columnIndex;
+      this.typeHandler = typeHandler;
+      this.byIndex = byIndex;
+      this.property = property;
+      this.setInvoker = setInvoker;
+      this.setter = toMethodHandle(setInvoker);
+      this.setOnNull = setOnNull;
+    }
+
+    Object getResult(ResultSet rs) throws SQLException {
+      return byIndex ? typeHandler.getResult(rs, columnIndex) : typeHandler.getResult(rs, column);
+    }
+
+    /**
+     * invokeExact 是签名多态的方法，Java 8 的 API 签名中没有 (Object, Object)void，
+     * 用 {@link UsesJava7} 让 animal-sniffer 跳过这个方法
+     */
+    @UsesJava7
+    void set(Object target, Object value) {
+      try {
+        if (setter != null) {
+          setter.invokeExact(target, value);
+        } else {
+          try {
+            setInvoker.invoke(target, new Object[] { value });
+          } catch (Throwable t) {
+            throw ExceptionUtil.unwrapThrowable(t);
+          }
+        }
+      } catch (Throwable t) {
+        // 与 BeanWrapper 的异常信息相同
+        throw new ReflectionException("Could not set property '" + property + "' of '" + target.getClass() + "' with value '" + value + "' Cause: " + t.toString(), t);
+      }
+    }
+
+    /**
+     * 把 setter 方法或字段转换为 (Object, Object)void 的 MethodHandle，无法转换时返回 null，使用 Invoker 设置
+     */
+    private static MethodHandle toMethodHandle(Invoker setInvoker) {
+      try {
+        final MethodHandle handle;
+        if (setInvoker instanceof AmbiguousMethodInvoker) {
+          // 调用时抛出含糊的 setter 的异常
+          return null;
+        } else if (setInvoker instanceof MethodInvoker) {
+          final Method method = ((MethodInvoker) setInvoker).getMethod();
+          if (!isAccessible(method.getModifiers(), method.getDeclaringClass())) {
+            if (!Reflector.canControlMemberAccessible()) {
+              return null;
+            }
+            method.setAccessible(true);
+          }
+          handle = MethodHandles.lookup().unreflect(method);
+        } else if (setInvoker instanceof SetFieldInvoker) {
+          final Field field = ((SetFieldInvoker) setInvoker).getField();
+          if (!isAccessible(field.getModifiers(), field.getDeclaringClass())) {
+            if (!Reflector.canControlMemberAccessible()) {
+              return null;
+            }
+            field.setAccessible(true);
+          }
+          handle = MethodHandles.lookup().unreflectSetter(field);
+        } else {
+          return null;
+        }
+        return handle.asType(MethodType.methodType(void.class, Object.class, Object.class));
+      } catch (IllegalAccessException | RuntimeException e) {
+        return null;
+      }
+    }
+
+    private static boolean isAccessible(int modifiers, Class<?> declaringClass) {
+      return Modifier.isPublic(modifiers) && Modifier.isPublic(declaringClass.getModifiers());
+    }
+
+  }
+
+}
@@ -0,0 +1,59 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.ibatis.mapping.ResultMap;
+
+/**
+ * 一个结果映射按结果集列布局缓存的 {@link CompiledRowMapper} ，由 {@link ResultMap#getCompiledRowMappers()} 持有
+ *
+ * 最多缓存 {@link #MAX_LAYOUTS} 种列布局，之后遇到的新布局不再预编译，继续使用通用流程。
+ * 这样列名由 ${} 拼接等会产生大量布局的语句不会让缓存无限增长。
+ *
+ * @since 3.5.3
+ */
+public final class CompiledRowMappers {
+
+  /**
+   * 每个结果映射最多缓存的列布局数
+   */
+  static final int MAX_LAYOUTS = 8;
+
+  private final Map<Object, CompiledRowMapper> mappers = new ConcurrentHashMap<>();
+
+  CompiledRowMapper get(Object layout) {
+    return mappers.get(layout);
+  }
+
+  /**
+   * @return 是否还可以缓存新的列布局
+   */
+  boolean hasRoom() {
+    return mappers.size() < MAX_LAYOUTS;
+  }
+
+  /**
+   * 缓存列布局的行映射，并发的线程可能已经放入，返回先放入的那个
+   */
+  CompiledRowMapper putIfAbsent(Object layout, CompiledRowMapper rowMapper) {
+    CompiledRowMapper previous = mappers.putIfAbsent(layout, rowMapper);
+    return previous == null ? rowMapper : previous;
+  }
+
+}
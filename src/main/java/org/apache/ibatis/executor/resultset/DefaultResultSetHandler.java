@@ -23,6 +23,7 @@ import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -36,6 +37,7 @@ import org.apache.ibatis.cursor.defaults.DefaultCursor;
 import org.apache.ibatis.executor.ErrorContext;
 import org.apache.ibatis.executor.Executor;
 import org.apache.ibatis.executor.ExecutorException;
+import org.apache.ibatis.executor.loader.BatchResultLoader;
 import org.apache.ibatis.executor.loader.ResultLoader;
 import org.apache.ibatis.executor.loader.ResultLoaderMap;
 import org.apache.ibatis.executor.parameter.ParameterHandler;
@@ -84,14 +86,24 @@ public class DefaultResultSetHandler implements ResultSetHandler {
   private final ReflectorFactory reflectorFactory;
 
   // nested resultmaps
-  private final Map<CacheKey, Object> nestedResultObjects = new HashMap<>();
+  private final Map<RowKey, Object> nestedResultObjects = new HashMap<>();
+  private final RowKey.Buffer rowKeyBuffer = new RowKey.Buffer();
   private final Map<String, Object> ancestorObjects = new HashMap<>();
   private Object previousRowValue;
+  // 没有声明 resultOrdered 时，尚未提交的主结果及其键
+  private Object pendingRowValue;
+  private boolean hasPendingRowValue;
+  private RowKey pendingRowKey;
 
   // multiple resultsets
   private final Map<String, ResultMapping> nextResultMaps = new HashMap<>();
   private final Map<CacheKey, List<PendingRelation>> pendingRelations = new HashMap<>();
 
+  // batched nested queries
+  private final Map<ResultMapping, BatchResultLoader> pendingBatches = new IdentityHashMap<>();
+  private final Map<ResultMapping, BatchResultLoader> lazyBatches = new IdentityHashMap<>();
+  private boolean batchNestedQueries;
+
   // Cached Automappings
   private final Map<String, List<UnMappedColumnAutoMapping>> autoMappingsCache = new HashMap<>();
 
@@ -182,6 +194,8 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     ErrorContext.instance().activity("handling results").object(mappedStatement.getId());
 
     final List<Object> multipleResults = new ArrayList<>();
+    // 结果交给自定义 ResultHandler 或 Cursor 时立即可见，不能延后加载嵌套查询
+    batchNestedQueries = resultHandler == null;
 
     int resultSetCount = 0;
     ResultSetWrapper rsw = getFirstResultSet(stmt);
@@ -304,6 +318,9 @@ public class DefaultResultSetHandler implements ResultSetHandler {
           handleRowValues(rsw, resultMap, resultHandler, rowBounds, null);
         }
       }
+      loadPendingBatches();
+      lazyBatches.clear();
+      clearPendingRowValue();
     } finally {
       // issue #228 (close resultsets)
       closeResultSet(rsw.getResultSet());
@@ -349,13 +366,41 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     DefaultResultContext<Object> resultContext = new DefaultResultContext<>();
     ResultSet resultSet = rsw.getResultSet();
     skipRows(resultSet, rowBounds);
+    final CompiledRowMapper rowMapper = getCompiledRowMapper(rsw, resultMap);
     while (shouldProcessMoreRows(resultContext, rowBounds) && !resultSet.isClosed() && resultSet.next()) {
-      ResultMap discriminatedResultMap = resolveDiscriminatedResultMap(resultSet, resultMap, null);
-      Object rowValue = getRowValue(rsw, discriminatedResultMap, null);
+      Object rowValue;
+      if (rowMapper != null) {
+        rowValue = rowMapper.map(resultSet, objectFactory);
+      } else {
+        ResultMap discriminatedResultMap = resolveDiscriminatedResultMap(resultSet, resultMap, null);
+        rowValue = getRowValue(rsw, discriminatedResultMap, null);
+      }
       storeObject(resultHandler, resultContext, rowValue, parentMapping, resultSet);
     }
   }
 
+  /**
+   * 获取结果映射对于当前列布局预编译的行映射，第一次遇到该列布局时预编译
+   *
+   * @return 无法预编译时返回 null
+   */
+  private CompiledRowMapper getCompiledRowMapper(ResultSetWrapper rsw, ResultMap resultMap) throws SQLException {
+    final boolean autoMapping = shouldApplyAutomaticMappings(resultMap, false);
+    final Object layout = CompiledRowMapper.layoutOf(rsw, autoMapping, configuration);
+    final CompiledRowMappers rowMappers = resultMap.getCompiledRowMappers();
+    CompiledRowMapper rowMapper = rowMappers.get(layout);
+    if (rowMapper == null) {
+      // 缓存的列布局达到上限后，新的布局使用通用流程
+      if (!rowMappers.hasRoom()) {
+        return null;
+      }
+      rowMapper = hasTypeHandlerForResultObject(rsw, resultMap.getType())
+          ? CompiledRowMapper.UNSUPPORTED : CompiledRowMapper.compile(rsw, resultMap, autoMapping, configuration);
+      rowMapper = rowMappers.putIfAbsent(layout, rowMapper);
+    }
+    return rowMapper.isSupported() ? rowMapper : null;
+  }
+
   private void storeObject(ResultHandler<?> resultHandler, DefaultResultContext<Object> resultContext, Object rowValue, ResultMapping parentMapping, ResultSet rs) throws SQLException {
     if (parentMapping != null) {
       linkToParents(rs, parentMapping, rowValue);
@@ -438,7 +483,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
       if (propertyMapping.isCompositeResult()
           || (column != null && mappedColumnNames.contains(column.toUpperCase(Locale.ENGLISH)))
           || propertyMapping.getResultSet() != null) {
-        Object value = getPropertyMappingValue(rsw.getResultSet(), metaObject, propertyMapping, lazyLoader, columnPrefix);
+        Object value = getPropertyMappingValue(rsw, metaObject, propertyMapping, lazyLoader, columnPrefix);
         // issue #541 make property optional
         final String property = propertyMapping.getProperty();
         if (property == null) {
@@ -459,17 +504,17 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     return foundValues;
   }
 
-  private Object getPropertyMappingValue(ResultSet rs, MetaObject metaResultObject, ResultMapping propertyMapping, ResultLoaderMap lazyLoader, String columnPrefix)
+  private Object getPropertyMappingValue(ResultSetWrapper rsw, MetaObject metaResultObject, ResultMapping propertyMapping, ResultLoaderMap lazyLoader, String columnPrefix)
       throws SQLException {
     if (propertyMapping.getNestedQueryId() != null) {
-      return getNestedQueryMappingValue(rs, metaResultObject, propertyMapping, lazyLoader, columnPrefix);
+      return getNestedQueryMappingValue(rsw.getResultSet(), metaResultObject, propertyMapping, lazyLoader, columnPrefix);
     } else if (propertyMapping.getResultSet() != null) {
-      addPendingChildRelation(rs, metaResultObject, propertyMapping);   // TODO is that OK?
+      addPendingChildRelation(rsw.getResultSet(), metaResultObject, propertyMapping);   // TODO is that OK?
       return DEFERRED;
     } else {
       final TypeHandler<?> typeHandler = propertyMapping.getTypeHandler();
       final String column = prependPrefix(propertyMapping.getColumn(), columnPrefix);
-      return typeHandler.getResult(rs, column);
+      return rsw.getResult(typeHandler, column);
     }
   }
 
@@ -518,7 +563,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     boolean foundValues = false;
     if (!autoMapping.isEmpty()) {
       for (UnMappedColumnAutoMapping mapping : autoMapping) {
-        final Object value = mapping.typeHandler.getResult(rsw.getResultSet(), mapping.column);
+        final Object value = rsw.getResult(mapping.typeHandler, mapping.column);
         if (value != null) {
           foundValues = true;
         }
@@ -668,7 +713,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
       Class<?> parameterType = constructor.getParameterTypes()[i];
       String columnName = rsw.getColumnNames().get(i);
       TypeHandler<?> typeHandler = rsw.getTypeHandler(parameterType, columnName);
-      Object value = typeHandler.getResult(rsw.getResultSet(), columnName);
+      Object value = rsw.getResult(typeHandler, columnName);
       constructorArgTypes.add(parameterType);
       constructorArgs.add(value);
       foundValues = value != null || foundValues;
@@ -713,7 +758,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
       columnName = rsw.getColumnNames().get(0);
     }
     final TypeHandler<?> typeHandler = rsw.getTypeHandler(resultType, columnName);
-    return typeHandler.getResult(rsw.getResultSet(), columnName);
+    return rsw.getResult(typeHandler, columnName);
   }
 
   //
@@ -741,6 +786,11 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     final String nestedQueryId = propertyMapping.getNestedQueryId();
     final String property = propertyMapping.getProperty();
     final MappedStatement nestedQuery = configuration.getMappedStatement(nestedQueryId);
+    if (propertyMapping.getBatchSize() > 0 && propertyMapping.isLazy()) {
+      return addToLazyBatch(rs, metaResultObject, propertyMapping, nestedQuery, lazyLoader, columnPrefix);
+    } else if (propertyMapping.getBatchSize() > 0) {
+      return addToBatch(rs, metaResultObject, propertyMapping, nestedQuery, columnPrefix);
+    }
     final Class<?> nestedQueryParameterType = nestedQuery.getParameterMap().getType();
     final Object nestedQueryParameterObject = prepareParameterForNestedQuery(rs, propertyMapping, nestedQueryParameterType, columnPrefix);
     Object value = null;
@@ -764,6 +814,62 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     return value;
   }
 
+  private Object addToBatch(ResultSet rs, MetaObject metaResultObject, ResultMapping propertyMapping, MappedStatement nestedQuery, String columnPrefix)
+      throws SQLException {
+    final Object key = prepareKeyForBatch(rs, propertyMapping, nestedQuery, columnPrefix);
+    if (key == null) {
+      return null;
+    }
+    if (!batchNestedQueries) {
+      // 结果立即可见时不能延后加载，只用当前父对象的键组成批次立即查询，嵌套查询的参数仍然是键的列表
+      BatchResultLoader batch = new BatchResultLoader(configuration, executor, nestedQuery, propertyMapping);
+      batch.addTarget(metaResultObject, key);
+      batch.load();
+      return DEFERRED;
+    }
+    BatchResultLoader batch = pendingBatches.computeIfAbsent(propertyMapping, m -> new BatchResultLoader(configuration, executor, nestedQuery, m));
+    batch.addTarget(metaResultObject, key);
+    if (batch.size() >= propertyMapping.getBatchSize()) {
+      batch.load();
+    }
+    return DEFERRED;
+  }
+
+  /**
+   * 同一个结果集中的父对象共享延迟加载的批次，任意一个父对象触发加载时查询整个批次
+   */
+  private Object addToLazyBatch(ResultSet rs, MetaObject metaResultObject, ResultMapping propertyMapping, MappedStatement nestedQuery,
+      ResultLoaderMap lazyLoader, String columnPrefix) throws SQLException {
+    final Object key = prepareKeyForBatch(rs, propertyMapping, nestedQuery, columnPrefix);
+    if (key == null) {
+      return null;
+    }
+    BatchResultLoader batch = lazyBatches.get(propertyMapping);
+    // aggressiveLazyLoading 可能在映射过程中触发加载
+    if (batch == null || batch.isLoaded()) {
+      batch = new BatchResultLoader(configuration, executor, nestedQuery, propertyMapping);
+      lazyBatches.put(propertyMapping, batch);
+    }
+    lazyLoader.addLoader(propertyMapping.getProperty(), metaResultObject, batch.addLazyTarget(key));
+    if (batch.size() >= propertyMapping.getBatchSize()) {
+      lazyBatches.remove(propertyMapping);
+    }
+    return DEFERRED;
+  }
+
+  private Object prepareKeyForBatch(ResultSet rs, ResultMapping propertyMapping, MappedStatement nestedQuery, String columnPrefix) throws SQLException {
+    // 嵌套查询的参数是键的列表，复合键使用 Map
+    final Class<?> keyType = propertyMapping.isCompositeResult() ? null : nestedQuery.getParameterMap().getType();
+    return prepareParameterForNestedQuery(rs, propertyMapping, keyType, columnPrefix);
+  }
+
+  private void loadPendingBatches() throws SQLException {
+    for (BatchResultLoader batch : pendingBatches.values()) {
+      batch.load();
+    }
+    pendingBatches.clear();
+  }
+
   private Object prepareParameterForNestedQuery(ResultSet rs, ResultMapping resultMapping, Class<?> parameterType, String columnPrefix) throws SQLException {
     if (resultMapping.isCompositeResult()) {
       return prepareCompositeKeyParameter(rs, resultMapping, parameterType, columnPrefix);
@@ -857,7 +963,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     Object rowValue = previousRowValue;
     while (shouldProcessMoreRows(resultContext, rowBounds) && !resultSet.isClosed() && resultSet.next()) {
       final ResultMap discriminatedResultMap = resolveDiscriminatedResultMap(resultSet, resultMap, null);
-      final CacheKey rowKey = createRowKey(discriminatedResultMap, rsw, null);
+      final RowKey rowKey = createRowKey(discriminatedResultMap, rsw, null, null);
       Object partialObject = nestedResultObjects.get(rowKey);
       // issue #577 && #542
       if (mappedStatement.isResultOrdered()) {
@@ -866,11 +972,25 @@ public class DefaultResultSetHandler implements ResultSetHandler {
           storeObject(resultHandler, resultContext, rowValue, parentMapping, resultSet);
         }
         rowValue = getRowValue(rsw, discriminatedResultMap, rowKey, null, partialObject);
-      } else {
+      } else if (parentMapping != null) {
+        // 关联到父对象时需要读取当前行的外键，只能立即提交
         rowValue = getRowValue(rsw, discriminatedResultMap, rowKey, null, partialObject);
         if (partialObject == null) {
           storeObject(resultHandler, resultContext, rowValue, parentMapping, resultSet);
         }
+      } else {
+        // 主结果在遇到其他主结果的行时才提交，结果分组时 ResultHandler 和 Cursor 得到的是完整的对象。
+        // 后面的行仍然可能属于之前的主结果，所以 nestedResultObjects 保留到结果集结束
+        if (hasPendingRowValue && (partialObject == null || !rowKey.equals(pendingRowKey))) {
+          storeObject(resultHandler, resultContext, pendingRowValue, parentMapping, resultSet);
+          clearPendingRowValue();
+        }
+        rowValue = getRowValue(rsw, discriminatedResultMap, rowKey, null, partialObject);
+        if (partialObject == null) {
+          pendingRowValue = rowValue;
+          hasPendingRowValue = true;
+        }
+        pendingRowKey = rowKey;
       }
     }
     if (rowValue != null && mappedStatement.isResultOrdered() && shouldProcessMoreRows(resultContext, rowBounds)) {
@@ -879,13 +999,23 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     } else if (rowValue != null) {
       previousRowValue = rowValue;
     }
+    if (hasPendingRowValue && shouldProcessMoreRows(resultContext, rowBounds)) {
+      storeObject(resultHandler, resultContext, pendingRowValue, parentMapping, resultSet);
+      clearPendingRowValue();
+    }
+  }
+
+  private void clearPendingRowValue() {
+    pendingRowValue = null;
+    hasPendingRowValue = false;
+    pendingRowKey = null;
   }
 
   //
   // GET VALUE FROM ROW FOR NESTED RESULT MAP
   //
 
-  private Object getRowValue(ResultSetWrapper rsw, ResultMap resultMap, CacheKey combinedKey, String columnPrefix, Object partialObject) throws SQLException {
+  private Object getRowValue(ResultSetWrapper rsw, ResultMap resultMap, RowKey combinedKey, String columnPrefix, Object partialObject) throws SQLException {
     final String resultMapId = resultMap.getId();
     Object rowValue = partialObject;
     if (rowValue != null) {
@@ -909,7 +1039,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         foundValues = lazyLoader.size() > 0 || foundValues;
         rowValue = foundValues || configuration.isReturnInstanceForEmptyRow() ? rowValue : null;
       }
-      if (combinedKey != CacheKey.NULL_CACHE_KEY) {
+      if (combinedKey != RowKey.NULL_ROW_KEY) {
         nestedResultObjects.put(combinedKey, rowValue);
       }
     }
@@ -924,7 +1054,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
   // NESTED RESULT MAP (JOIN MAPPING)
   //
 
-  private boolean applyNestedResultMappings(ResultSetWrapper rsw, ResultMap resultMap, MetaObject metaObject, String parentPrefix, CacheKey parentRowKey, boolean newObject) {
+  private boolean applyNestedResultMappings(ResultSetWrapper rsw, ResultMap resultMap, MetaObject metaObject, String parentPrefix, RowKey parentRowKey, boolean newObject) {
     boolean foundValues = false;
     for (ResultMapping resultMapping : resultMap.getPropertyResultMappings()) {
       final String nestedResultMapId = resultMapping.getNestedResultMapId();
@@ -943,8 +1073,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
               continue;
             }
           }
-          final CacheKey rowKey = createRowKey(nestedResultMap, rsw, columnPrefix);
-          final CacheKey combinedKey = combineKeys(rowKey, parentRowKey);
+          final RowKey combinedKey = createRowKey(nestedResultMap, rsw, columnPrefix, parentRowKey);
           Object rowValue = nestedResultObjects.get(combinedKey);
           boolean knownValue = rowValue != null;
           instantiateCollectionPropertyIfAppropriate(resultMapping, metaObject); // mandatory
@@ -979,7 +1108,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     if (notNullColumns != null && !notNullColumns.isEmpty()) {
       ResultSet rs = rsw.getResultSet();
       for (String column : notNullColumns) {
-        rs.getObject(prependPrefix(column, columnPrefix));
+        rsw.getObject(prependPrefix(column, columnPrefix));
         if (!rs.wasNull()) {
           return true;
         }
@@ -1005,37 +1134,28 @@ public class DefaultResultSetHandler implements ResultSetHandler {
   // UNIQUE RESULT KEY
   //
 
-  private CacheKey createRowKey(ResultMap resultMap, ResultSetWrapper rsw, String columnPrefix) throws SQLException {
-    final CacheKey cacheKey = new CacheKey();
-    cacheKey.update(resultMap.getId());
+  /**
+   * 创建一行的键，嵌套的结果对象的键包含父对象的键
+   *
+   * @param parentRowKey 父对象的键，主结果为 null
+   * @return 没有找到值或者父对象没有键时返回 {@link RowKey#NULL_ROW_KEY}
+   */
+  private RowKey createRowKey(ResultMap resultMap, ResultSetWrapper rsw, String columnPrefix, RowKey parentRowKey) throws SQLException {
+    if (parentRowKey == RowKey.NULL_ROW_KEY) {
+      return RowKey.NULL_ROW_KEY;
+    }
+    final RowKey.Buffer buffer = rowKeyBuffer;
     List<ResultMapping> resultMappings = getResultMappingsForRowKey(resultMap);
     if (resultMappings.isEmpty()) {
       if (Map.class.isAssignableFrom(resultMap.getType())) {
-        createRowKeyForMap(rsw, cacheKey);
+        createRowKeyForMap(rsw, buffer);
       } else {
-        createRowKeyForUnmappedProperties(resultMap, rsw, cacheKey, columnPrefix);
+        createRowKeyForUnmappedProperties(resultMap, rsw, buffer, columnPrefix);
       }
     } else {
-      createRowKeyForMappedProperties(resultMap, rsw, cacheKey, resultMappings, columnPrefix);
-    }
-    if (cacheKey.getUpdateCount() < 2) {
-      return CacheKey.NULL_CACHE_KEY;
+      createRowKeyForMappedProperties(resultMap, rsw, buffer, resultMappings, columnPrefix);
     }
-    return cacheKey;
-  }
-
-  private CacheKey combineKeys(CacheKey rowKey, CacheKey parentRowKey) {
-    if (rowKey.getUpdateCount() > 1 && parentRowKey.getUpdateCount() > 1) {
-      CacheKey combinedKey;
-      try {
-        combinedKey = rowKey.clone();
-      } catch (CloneNotSupportedException e) {
-        throw new ExecutorException("Error cloning cache key.  Cause: " + e, e);
-      }
-      combinedKey.update(parentRowKey);
-      return combinedKey;
-    }
-    return CacheKey.NULL_CACHE_KEY;
+    return buffer.build(resultMap.getId(), columnPrefix, parentRowKey);
   }
 
   private List<ResultMapping> getResultMappingsForRowKey(ResultMap resultMap) {
@@ -1046,12 +1166,12 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     return resultMappings;
   }
 
-  private void createRowKeyForMappedProperties(ResultMap resultMap, ResultSetWrapper rsw, CacheKey cacheKey, List<ResultMapping> resultMappings, String columnPrefix) throws SQLException {
+  private void createRowKeyForMappedProperties(ResultMap resultMap, ResultSetWrapper rsw, RowKey.Buffer buffer, List<ResultMapping> resultMappings, String columnPrefix) throws SQLException {
     for (ResultMapping resultMapping : resultMappings) {
       if (resultMapping.getNestedResultMapId() != null && resultMapping.getResultSet() == null) {
         // Issue #392
         final ResultMap nestedResultMap = configuration.getResultMap(resultMapping.getNestedResultMapId());
-        createRowKeyForMappedProperties(nestedResultMap, rsw, cacheKey, nestedResultMap.getConstructorResultMappings(),
+        createRowKeyForMappedProperties(nestedResultMap, rsw, buffer, nestedResultMap.getConstructorResultMappings(),
             prependPrefix(resultMapping.getColumnPrefix(), columnPrefix));
       } else if (resultMapping.getNestedQueryId() == null) {
         final String column = prependPrefix(resultMapping.getColumn(), columnPrefix);
@@ -1059,17 +1179,14 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         List<String> mappedColumnNames = rsw.getMappedColumnNames(resultMap, columnPrefix);
         // Issue #114
         if (column != null && mappedColumnNames.contains(column.toUpperCase(Locale.ENGLISH))) {
-          final Object value = th.getResult(rsw.getResultSet(), column);
-          if (value != null || configuration.isReturnInstanceForEmptyRow()) {
-            cacheKey.update(column);
-            cacheKey.update(value);
-          }
+          final Object value = rsw.getResult(th, column);
+          buffer.add(value, value != null || configuration.isReturnInstanceForEmptyRow());
         }
       }
     }
   }
 
-  private void createRowKeyForUnmappedProperties(ResultMap resultMap, ResultSetWrapper rsw, CacheKey cacheKey, String columnPrefix) throws SQLException {
+  private void createRowKeyForUnmappedProperties(ResultMap resultMap, ResultSetWrapper rsw, RowKey.Buffer buffer, String columnPrefix) throws SQLException {
     final MetaClass metaType = MetaClass.forClass(resultMap.getType(), reflectorFactory);
     List<String> unmappedColumnNames = rsw.getUnmappedColumnNames(resultMap, columnPrefix);
     for (String column : unmappedColumnNames) {
@@ -1083,23 +1200,17 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         }
       }
       if (metaType.findProperty(property, configuration.isMapUnderscoreToCamelCase()) != null) {
-        String value = rsw.getResultSet().getString(column);
-        if (value != null) {
-          cacheKey.update(column);
-          cacheKey.update(value);
-        }
+        String value = rsw.getString(column);
+        buffer.add(value, value != null);
       }
     }
   }
 
-  private void createRowKeyForMap(ResultSetWrapper rsw, CacheKey cacheKey) throws SQLException {
+  private void createRowKeyForMap(ResultSetWrapper rsw, RowKey.Buffer buffer) throws SQLException {
     List<String> columnNames = rsw.getColumnNames();
     for (String columnName : columnNames) {
-      final String value = rsw.getResultSet().getString(columnName);
-      if (value != null) {
-        cacheKey.update(columnName);
-        cacheKey.update(value);
-      }
+      final String value = rsw.getString(columnName);
+      buffer.add(value, value != null);
     }
   }
 
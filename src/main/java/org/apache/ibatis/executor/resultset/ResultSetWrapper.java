@@ -48,11 +48,14 @@ public class ResultSetWrapper {
   private final Map<String, Map<Class<?>, TypeHandler<?>>> typeHandlerMap = new HashMap<>();
   private final Map<String, List<String>> mappedColumnNamesMap = new HashMap<>();
   private final Map<String, List<String>> unMappedColumnNamesMap = new HashMap<>();
+  private final boolean useColumnIndex;
+  private final Map<String, Integer> columnIndexMap = new HashMap<>();
 
   public ResultSetWrapper(ResultSet rs, Configuration configuration) throws SQLException {
     super();
     this.typeHandlerRegistry = configuration.getTypeHandlerRegistry();
     this.resultSet = rs;
+    this.useColumnIndex = configuration.isUseColumnIndex();
     final ResultSetMetaData metaData = rs.getMetaData();
     final int columnCount = metaData.getColumnCount();
     for (int i = 1; i <= columnCount; i++) {
@@ -87,6 +90,67 @@ public class ResultSetWrapper {
     return null;
   }
 
+  /**
+   * 获取列的序号，与 {@link ResultSet#findColumn(String)} 一样取第一个名称相同（忽略大小写）的列，每个列名只查找一次
+   *
+   * @param columnName 列名
+   * @return 从 1 开始的序号，不存在时返回 0
+   * @since 3.5.3
+   */
+  public int getColumnIndex(String columnName) {
+    Integer columnIndex = columnIndexMap.get(columnName);
+    if (columnIndex == null) {
+      columnIndex = 0;
+      for (int i = 0; i < columnNames.size(); i++) {
+        if (columnNames.get(i).equalsIgnoreCase(columnName)) {
+          columnIndex = i + 1;
+          break;
+        }
+      }
+      columnIndexMap.put(columnName, columnIndex);
+    }
+    return columnIndex;
+  }
+
+  /**
+   * 是否按序号读取列，启用 useColumnIndex 时只有内置的类型处理器按序号读取，自定义的类型处理器可能只实现了按列名读取
+   *
+   * @since 3.5.3
+   */
+  public boolean isReadByColumnIndex(TypeHandler<?> typeHandler) {
+    return useColumnIndex && TypeHandler.class.getPackage().equals(typeHandler.getClass().getPackage());
+  }
+
+  /**
+   * 使用类型处理器读取当前行的列
+   *
+   * @since 3.5.3
+   */
+  public Object getResult(TypeHandler<?> typeHandler, String columnName) throws SQLException {
+    final int columnIndex = isReadByColumnIndex(typeHandler) ? getColumnIndex(columnName) : 0;
+    return columnIndex > 0 ? typeHandler.getResult(resultSet, columnIndex) : typeHandler.getResult(resultSet, columnName);
+  }
+
+  /**
+   * 以字符串读取当前行的列
+   *
+   * @since 3.5.3
+   */
+  public String getString(String columnName) throws SQLException {
+    final int columnIndex = useColumnIndex ? getColumnIndex(columnName) : 0;
+    return columnIndex > 0 ? resultSet.getString(columnIndex) : resultSet.getString(columnName);
+  }
+
+  /**
+   * 读取当前行的列
+   *
+   * @since 3.5.3
+   */
+  public Object getObject(String columnName) throws SQLException {
+    final int columnIndex = useColumnIndex ? getColumnIndex(columnName) : 0;
+    return columnIndex > 0 ? resultSet.getObject(columnIndex) : resultSet.getObject(columnName);
+  }
+
   /**
    * Gets the type handler to use when reading the result set.
    * Tries to get from the TypeHandlerRegistry by searching for the property type.
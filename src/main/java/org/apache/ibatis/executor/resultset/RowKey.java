@@ -0,0 +1,129 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import org.apache.ibatis.reflection.ArrayUtil;
+
+/**
+ * 嵌套结果映射中一行数据的唯一标识
+ *
+ * 代替 {@link org.apache.ibatis.cache.CacheKey}：id 列的值按固定的顺序保存在一个长度确定的数组中（没有值的列保存 null），
+ * 哈希值在创建时计算好；嵌套层级的键直接引用父对象的键，不再复制父键的内容。
+ * 列值先读取到可以复用的 {@link Buffer} 中，只有找到值时才创建键。
+ *
+ * @since 3.5.3
+ */
+final class RowKey {
+
+  /**
+   * 没有找到任何值的行，不能用来识别对象
+   */
+  static final RowKey NULL_ROW_KEY = new RowKey(null, null, new Object[0], null);
+
+  private final String resultMapId;
+  private final String columnPrefix;
+  private final Object[] values;
+  private final RowKey parent;
+  private final int hashcode;
+
+  private RowKey(String resultMapId, String columnPrefix, Object[] values, RowKey parent) {
+    this.resultMapId = resultMapId;
+    this.columnPrefix = columnPrefix;
+    this.values = values;
+    this.parent = parent;
+    int hash = Objects.hashCode(resultMapId);
+    hash = 31 * hash + Objects.hashCode(columnPrefix);
+    for (Object value : values) {
+      hash = 31 * hash + (value == null ? 0 : ArrayUtil.hashCode(value));
+    }
+    this.hashcode = 31 * hash + (parent == null ? 0 : parent.hashcode);
+  }
+
+  @Override
+  public boolean equals(Object object) {
+    if (this == object) {
+      return true;
+    }
+    if (!(object instanceof RowKey)) {
+      return false;
+    }
+    final RowKey that = (RowKey) object;
+    if (hashcode != that.hashcode || values.length != that.values.length
+        || !Objects.equals(resultMapId, that.resultMapId) || !Objects.equals(columnPrefix, that.columnPrefix)) {
+      return false;
+    }
+    for (int i = 0; i < values.length; i++) {
+      Object thisValue = values[i];
+      Object thatValue = that.values[i];
+      if (thisValue != thatValue && (thisValue == null || !ArrayUtil.equals(thisValue, thatValue))) {
+        return false;
+      }
+    }
+    return parent == that.parent || (parent != null && parent.equals(that.parent));
+  }
+
+  @Override
+  public int hashCode() {
+    return hashcode;
+  }
+
+  @Override
+  public String toString() {
+    return (parent == null ? "" : parent + "/") + resultMapId + (columnPrefix == null ? "" : "[" + columnPrefix + "]")
+        + Arrays.toString(values);
+  }
+
+  /**
+   * 读取一行的 id 列时使用的缓冲区，创建键之后清空，可以在所有层级之间复用
+   */
+  static final class Buffer {
+
+    private Object[] values = new Object[8];
+    private int size;
+    private boolean found;
+
+    /**
+     * @param value 列值
+     * @param found 是否作为找到的值，没有找到任何值的行没有键
+     */
+    void add(Object value, boolean found) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size++] = value;
+      this.found |= found;
+    }
+
+    /**
+     * 创建键并清空缓冲区
+     *
+     * @param parent 父对象的键，没有时为 null
+     * @return 没有找到值时返回 {@link #NULL_ROW_KEY}
+     */
+    RowKey build(String resultMapId, String columnPrefix, RowKey parent) {
+      final RowKey rowKey = found ? new RowKey(resultMapId, columnPrefix, Arrays.copyOf(values, size), parent) : NULL_ROW_KEY;
+      Arrays.fill(values, 0, size, null);
+      size = 0;
+      found = false;
+      return rowKey;
+    }
+
+  }
+
+}
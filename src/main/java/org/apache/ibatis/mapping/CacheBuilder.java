@@ -24,12 +24,18 @@ import java.util.Properties;
 import org.apache.ibatis.builder.InitializingObject;
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.ConcurrentCache;
 import org.apache.ibatis.cache.decorators.BlockingCache;
 import org.apache.ibatis.cache.decorators.LoggingCache;
 import org.apache.ibatis.cache.decorators.LruCache;
+import org.apache.ibatis.cache.decorators.MetricsCache;
+import org.apache.ibatis.cache.decorators.RefreshAheadCache;
 import org.apache.ibatis.cache.decorators.ScheduledCache;
 import org.apache.ibatis.cache.decorators.SerializedCache;
+import org.apache.ibatis.cache.decorators.SingleFlightCache;
 import org.apache.ibatis.cache.decorators.SynchronizedCache;
+import org.apache.ibatis.cache.decorators.TaggedCache;
+import org.apache.ibatis.cache.impl.ConcurrentPerpetualCache;
 import org.apache.ibatis.cache.impl.PerpetualCache;
 import org.apache.ibatis.reflection.MetaObject;
 import org.apache.ibatis.reflection.SystemMetaObject;
@@ -46,6 +52,8 @@ public class CacheBuilder {
   private boolean readWrite;
   private Properties properties;
   private boolean blocking;
+  private boolean singleFlight;
+  private boolean tagInvalidation;
 
   public CacheBuilder(String id) {
     this.id = id;
@@ -84,6 +92,16 @@ public class CacheBuilder {
     return this;
   }
 
+  public CacheBuilder singleFlight(boolean singleFlight) {
+    this.singleFlight = singleFlight;
+    return this;
+  }
+
+  public CacheBuilder tagInvalidation(boolean tagInvalidation) {
+    this.tagInvalidation = tagInvalidation;
+    return this;
+  }
+
   public CacheBuilder properties(Properties properties) {
     this.properties = properties;
     return this;
@@ -94,12 +112,18 @@ public class CacheBuilder {
     Cache cache = newBaseCacheInstance(implementation, id);
     setCacheProperties(cache);
     // issue #352, do not apply decorators to custom caches
-    if (PerpetualCache.class.equals(cache.getClass())) {
+    if (PerpetualCache.class.equals(cache.getClass()) || ConcurrentPerpetualCache.class.equals(cache.getClass())) {
+      boolean concurrent = cache instanceof ConcurrentCache;
+      //统计淘汰策略从基础缓存中移除的数量
+      MetricsCache.EvictionCounter evictionCounter = new MetricsCache.EvictionCounter(cache);
+      cache = evictionCounter;
       for (Class<? extends Cache> decorator : decorators) {
         cache = newCacheDecoratorInstance(decorator, cache);
         setCacheProperties(cache);
+        concurrent &= cache instanceof ConcurrentCache;
       }
-      cache = setStandardDecorators(cache);
+      cache = setStandardDecorators(cache, concurrent, evictionCounter);
+      cache = new MetricsCache(cache, evictionCounter);
     } else if (!LoggingCache.class.isAssignableFrom(cache.getClass())) {
       cache = new LoggingCache(cache);
     }
@@ -113,26 +137,50 @@ public class CacheBuilder {
         decorators.add(LruCache.class);
       }
     }
+    // 所有的装饰类都支持并发访问时，使用并发的基础缓存，省去 SynchronizedCache
+    if (PerpetualCache.class.equals(implementation) && !decorators.isEmpty()
+        && decorators.stream().allMatch(ConcurrentCache.class::isAssignableFrom)) {
+      implementation = ConcurrentPerpetualCache.class;
+    }
   }
 
-  private Cache setStandardDecorators(Cache cache) {
+  private Cache setStandardDecorators(Cache cache, boolean concurrent, MetricsCache.EvictionCounter evictionCounter) {
     try {
       MetaObject metaCache = SystemMetaObject.forObject(cache);
       if (size != null && metaCache.hasSetter("size")) {
         metaCache.setValue("size", size);
       }
+      ScheduledCache scheduledCache = null;
       if (clearInterval != null) {
-        cache = new ScheduledCache(cache);
-        ((ScheduledCache) cache).setClearInterval(clearInterval);
+        cache = scheduledCache = new ScheduledCache(cache);
+        scheduledCache.setClearInterval(clearInterval);
+        setCacheProperties(cache);
       }
       if (readWrite) {
         cache = new SerializedCache(cache);
       }
       cache = new LoggingCache(cache);
-      cache = new SynchronizedCache(cache);
-      if (blocking) {
+      if (!concurrent) {
+        cache = new SynchronizedCache(cache);
+      }
+      Cache store = cache;
+      if (singleFlight) {
+        cache = new SingleFlightCache(cache);
+        setCacheProperties(cache);
+      } else if (blocking) {
         cache = new BlockingCache(cache);
       }
+      if (tagInvalidation) {
+        TaggedCache taggedCache = new TaggedCache(cache, store);
+        //被淘汰或者过期的键从标签索引中删除
+        evictionCounter.setRemovalListener(taggedCache);
+        cache = taggedCache;
+        setCacheProperties(cache);
+      }
+      if (scheduledCache != null && scheduledCache.isPerEntryTtl() && scheduledCache.getRefreshAhead() > 0) {
+        cache = new RefreshAheadCache(cache, store, clearInterval, scheduledCache.getRefreshAhead());
+        setCacheProperties(cache);
+      }
       return cache;
     } catch (Exception e) {
       throw new CacheException("Error building standard cache decorators.  Cause: " + e, e);
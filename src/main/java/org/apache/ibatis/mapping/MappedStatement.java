@@ -56,6 +56,10 @@ public final class MappedStatement {
   private Log statementLog;
   private LanguageDriver lang;
   private String[] resultSets;
+  /**
+   * 查询语句读取的标签，或者增删改语句写入的标签，用于二级缓存按标签失效
+   */
+  private String[] cacheTags;
 
   MappedStatement() {
     // constructor disabled
@@ -174,6 +178,21 @@ public final class MappedStatement {
       return this;
     }
 
+    /**
+     * @param cacheTags 逗号分隔的标签
+     * @since 3.5.3
+     */
+    public Builder cacheTags(String cacheTags) {
+      String[] tags = delimitedStringToArray(cacheTags);
+      if (tags != null) {
+        for (int i = 0; i < tags.length; i++) {
+          tags[i] = tags[i].trim();
+        }
+      }
+      mappedStatement.cacheTags = tags;
+      return this;
+    }
+
     /**
      * @deprecated Use {@link #resultSets}
      */
@@ -285,6 +304,14 @@ public final class MappedStatement {
     return resultSets;
   }
 
+  /**
+   * @return 二级缓存的标签，没有声明时为 null
+   * @since 3.5.3
+   */
+  public String[] getCacheTags() {
+    return cacheTags;
+  }
+
   /**
    * @deprecated Use {@link #getResultSets()}
    */
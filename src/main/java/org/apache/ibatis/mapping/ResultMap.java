@@ -26,6 +26,7 @@ import java.util.Set;
 
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.builder.BuilderException;
+import org.apache.ibatis.executor.resultset.CompiledRowMappers;
 import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.logging.LogFactory;
 import org.apache.ibatis.reflection.ParamNameUtil;
@@ -49,6 +50,10 @@ public class ResultMap {
   private boolean hasNestedResultMaps;
   private boolean hasNestedQueries;
   private Boolean autoMapping;
+  /**
+   * 预编译的行映射，key 为结果集的列布局
+   */
+  private final CompiledRowMappers compiledRowMappers = new CompiledRowMappers();
 
   private ResultMap() {
   }
@@ -258,4 +263,12 @@ public class ResultMap {
     return autoMapping;
   }
 
+  /**
+   * @return 按结果集的列布局缓存的预编译行映射
+   * @since 3.5.3
+   */
+  public CompiledRowMappers getCompiledRowMappers() {
+    return compiledRowMappers;
+  }
+
 }
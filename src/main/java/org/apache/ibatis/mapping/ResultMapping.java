@@ -45,6 +45,10 @@ public class ResultMapping {
   private String resultSet;
   private String foreignColumn;
   private boolean lazy;
+  /**
+   * 批量执行嵌套查询时，每批包含的父对象的数量，0 表示每个父对象执行一次嵌套查询
+   */
+  private int batchSize;
 
   ResultMapping() {
   }
@@ -132,6 +136,14 @@ public class ResultMapping {
       return this;
     }
 
+    /**
+     * @since 3.5.3
+     */
+    public Builder batchSize(int batchSize) {
+      resultMapping.batchSize = batchSize;
+      return this;
+    }
+
     public ResultMapping build() {
       // lock down collections
       resultMapping.flags = Collections.unmodifiableList(resultMapping.flags);
@@ -167,6 +179,15 @@ public class ResultMapping {
           throw new IllegalStateException("There should be the same number of columns and foreignColumns in property " + resultMapping.property);
         }
       }
+      if (resultMapping.batchSize > 0) {
+        if (resultMapping.nestedQueryId == null || resultMapping.foreignColumn == null) {
+          throw new IllegalStateException("Mapping with batchSize requires both select and foreignColumn attributes for property " + resultMapping.property);
+        }
+        int numColumns = resultMapping.composites.isEmpty() ? 1 : resultMapping.composites.size();
+        if (numColumns != resultMapping.foreignColumn.split(",").length) {
+          throw new IllegalStateException("There should be the same number of columns and foreignColumns in property " + resultMapping.property);
+        }
+      }
     }
 
     private void resolveTypeHandler() {
@@ -251,6 +272,21 @@ public class ResultMapping {
     this.lazy = lazy;
   }
 
+  /**
+   * @return 批量执行嵌套查询时每批包含的父对象的数量，0 表示不批量执行
+   * @since 3.5.3
+   */
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public void setBatchSize(int batchSize) {
+    this.batchSize = batchSize;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) {
@@ -298,6 +334,7 @@ public class ResultMapping {
     sb.append(", resultSet='").append(resultSet).append('\'');
     sb.append(", foreignColumn='").append(foreignColumn).append('\'');
     sb.append(", lazy=").append(lazy);
+    sb.append(", batchSize=").append(batchSize);
     sb.append('}');
     return sb.toString();
   }
@@ -71,4 +71,11 @@ public class MethodInvoker implements Invoker {
   public Class<?> getType() {
     return type;
   }
+
+  /**
+   * @since 3.5.3
+   */
+  public Method getMethod() {
+    return method;
+  }
 }
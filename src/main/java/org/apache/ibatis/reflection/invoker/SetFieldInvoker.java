@@ -56,4 +56,11 @@ public class SetFieldInvoker implements Invoker {
   public Class<?> getType() {
     return field.getType();
   }
+
+  /**
+   * @since 3.5.3
+   */
+  public Field getField() {
+    return field;
+  }
 }
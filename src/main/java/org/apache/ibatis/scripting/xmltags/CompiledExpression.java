@@ -0,0 +1,596 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.scripting.xmltags;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.Map;
+
+import ognl.OgnlOps;
+
+import org.apache.ibatis.builder.BuilderException;
+import org.apache.ibatis.reflection.ExceptionUtil;
+import org.apache.ibatis.reflection.Reflector;
+import org.apache.ibatis.reflection.invoker.Invoker;
+
+/**
+ * 不经过 OGNL 解析的表达式
+ *
+ * 把 if、when 的 test 和 foreach 的 collection 中常用的表达式编译为节点组成的函数链，支持属性路径、size()、
+ * null/true/false、整数、小数和字符串字面量、比较（== != &lt; &lt;= &gt; &gt;= 以及 eq neq lt lte gt gte）、
+ * and/or/not（&amp;&amp; || !）和括号。JavaBean 的属性通过配置的 {@link org.apache.ibatis.reflection.ReflectorFactory}
+ * 得到的 getter 读取，每个属性节点缓存上一次的类型和 getter。
+ *
+ * 求值的结果与 OGNL 相同：其他语法的表达式不会编译，由调用者使用 {@link OgnlCache} 求值；
+ * 求值时遇到 OGNL 有特殊处理的值（比如集合和数组的属性、不同类型的比较、非 Boolean 的逻辑运算），
+ * 只对这一步使用 OGNL 的规则，已经读取的属性不会再读取一次。
+ *
+ * @since 3.5.3
+ */
+final class CompiledExpression {
+
+  /**
+   * 无法编译的表达式，需要使用 OGNL 求值
+   */
+  static final Object FALLBACK = new Object();
+
+  private static final CompiledExpression UNSUPPORTED = new CompiledExpression(root -> FALLBACK);
+  private static final Object[] NO_ARGUMENTS = new Object[0];
+
+  private final Node node;
+
+  private CompiledExpression(Node node) {
+    this.node = node;
+  }
+
+  static CompiledExpression compile(String expression) {
+    Node node = new Parser(expression).parse();
+    return node == null ? UNSUPPORTED : new CompiledExpression(node);
+  }
+
+  boolean isSupported() {
+    return this != UNSUPPORTED;
+  }
+
+  /**
+   * @return 表达式的值，表达式无法编译时返回 {@link #FALLBACK}
+   */
+  Object getValue(DynamicContext.ContextMap root) {
+    return node.getValue(root);
+  }
+
+  @FunctionalInterface
+  private interface Node {
+    Object getValue(DynamicContext.ContextMap root);
+  }
+
+  //
+  // 求值
+  //
+
+  /**
+   * 根对象的属性，与 {@link DynamicContext.ContextAccessor} 的查找方式相同
+   */
+  private static Object getRootProperty(DynamicContext.ContextMap root, String name) {
+    Object result = root.get(name);
+    if (root.containsKey(name) || result != null) {
+      return result;
+    }
+    Object parameterObject = root.get(DynamicContext.PARAMETER_OBJECT_KEY);
+    if (parameterObject instanceof Map) {
+      return ((Map<?, ?>) parameterObject).get(name);
+    }
+    return null;
+  }
+
+  private static Object getProperty(DynamicContext.ContextMap root, Object target, PropertyNode node) {
+    final String name = node.name;
+    if (target instanceof Map) {
+      // OGNL 把 Map 的 size、keys、keySet、values、isEmpty 属性解释为方法调用
+      if (!"size".equals(name) && !"keys".equals(name) && !"keySet".equals(name) && !"values".equals(name) && !"isEmpty".equals(name)) {
+        return ((Map<?, ?>) target).get(name);
+      }
+    } else if (target != null && !(target instanceof Collection || target instanceof Iterator || target instanceof Enumeration
+        || target.getClass().isArray() || target.getClass().getName().startsWith("java."))) {
+      final Class<?> type = target.getClass();
+      Getter getter = node.getter;
+      if (getter == null || getter.type != type) {
+        Reflector reflector = root.getReflectorFactory().findForClass(type);
+        getter = reflector.hasGetter(name) ? new Getter(type, reflector.getGetInvoker(name)) : new Getter(type, null);
+        node.getter = getter;
+      }
+      if (getter.invoker != null) {
+        try {
+          return getter.invoker.invoke(target, NO_ARGUMENTS);
+        } catch (Exception e) {
+          Throwable cause = ExceptionUtil.unwrapThrowable(e);
+          throw new BuilderException("Error evaluating expression '" + node.expression + "'. Cause: " + cause, cause);
+        }
+      }
+    }
+    // 以已经读取的对象为根，按照 OGNL 的规则读取这一个属性
+    return OgnlCache.getValue(name, target, node.expression);
+  }
+
+  /**
+   * 与 OGNL 的 OgnlOps.equal 相同，其他类型的比较使用 OgnlOps.equal
+   */
+  private static boolean isEqual(Object left, Object right) {
+    if (left == null || right == null) {
+      return left == right;
+    }
+    if (left instanceof Number && right instanceof Number) {
+      int result = compareNumbers((Number) left, (Number) right);
+      if (result != Integer.MIN_VALUE) {
+        return left.equals(right) || result == 0 || ((Number) left).doubleValue() == ((Number) right).doubleValue();
+      }
+    } else if (isComparable(left, right) || (left instanceof Boolean && right instanceof Boolean)) {
+      return left.equals(right);
+    }
+    return OgnlOps.equal(left, right);
+  }
+
+  /**
+   * 与 OGNL 的 OgnlOps.compareWithConversion 相同
+   *
+   * @return 比较结果，需要使用 OGNL 时返回 {@link Integer#MIN_VALUE}
+   */
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  private static int compare(Object left, Object right) {
+    if (left instanceof Number && right instanceof Number) {
+      return compareNumbers((Number) left, (Number) right);
+    }
+    if (left != null && right != null && isComparable(left, right)) {
+      return ((Comparable) left).compareTo(right);
+    }
+    return Integer.MIN_VALUE;
+  }
+
+  /**
+   * 字符串之间以及相同类型的枚举之间可以直接比较
+   */
+  private static boolean isComparable(Object left, Object right) {
+    return (left instanceof String && right instanceof String)
+        || (left instanceof Enum && right instanceof Enum && ((Enum<?>) left).getDeclaringClass() == ((Enum<?>) right).getDeclaringClass());
+  }
+
+  private static int compareNumbers(Number left, Number right) {
+    if (isIntegral(left) && isIntegral(right)) {
+      long lv = left.longValue();
+      long rv = right.longValue();
+      return lv == rv ? 0 : (lv < rv ? -1 : 1);
+    }
+    if ((isIntegral(left) || isReal(left)) && (isIntegral(right) || isReal(right))) {
+      double dv1 = left.doubleValue();
+      double dv2 = right.doubleValue();
+      return dv1 == dv2 ? 0 : (dv1 < dv2 ? -1 : 1);
+    }
+    if ((left instanceof BigDecimal && right instanceof BigDecimal) || (left instanceof BigInteger && right instanceof BigInteger)) {
+      return Integer.signum(compareBig(left, right));
+    }
+    return Integer.MIN_VALUE;
+  }
+
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  private static int compareBig(Number left, Number right) {
+    return ((Comparable) left).compareTo(right);
+  }
+
+  private static boolean isIntegral(Number value) {
+    Class<?> type = value.getClass();
+    return type == Integer.class || type == Long.class || type == Short.class || type == Byte.class;
+  }
+
+  private static boolean isReal(Number value) {
+    Class<?> type = value.getClass();
+    return type == Double.class || type == Float.class;
+  }
+
+  /**
+   * 逻辑运算的操作数，Boolean 和 null 之外的值的真假由 OgnlOps.booleanValue 判断
+   */
+  private static boolean toBoolean(Object value) {
+    if (value == null) {
+      return false;
+    }
+    return value instanceof Boolean ? (Boolean) value : OgnlOps.booleanValue(value);
+  }
+
+  private static final class Getter {
+
+    private final Class<?> type;
+    /**
+     * 没有 getter 时为 null
+     */
+    private final Invoker invoker;
+
+    Getter(Class<?> type, Invoker invoker) {
+      this.type = type;
+      this.invoker = invoker;
+    }
+
+  }
+
+  private static final class PropertyNode implements Node {
+
+    private final Node target;
+    private final String name;
+    /**
+     * 整个表达式，用于报告错误
+     */
+    private final String expression;
+    private volatile Getter getter;
+
+    PropertyNode(Node target, String name, String expression) {
+      this.target = target;
+      this.name = name;
+      this.expression = expression;
+    }
+
+    @Override
+    public Object getValue(DynamicContext.ContextMap root) {
+      if (target == null) {
+        return getRootProperty(root, name);
+      }
+      return getProperty(root, target.getValue(root), this);
+    }
+
+  }
+
+  //
+  // 解析
+  //
+
+  /**
+   * 递归下降解析器，遇到不支持的语法时返回 null
+   */
+  private static final class Parser {
+
+    private final String expression;
+    private int position;
+    /**
+     * 当前的记号：标识符、运算符、括号、点号，字面量为 null
+     */
+    private String token;
+    private Object literal;
+    private boolean isLiteral;
+    private boolean unsupported;
+
+    Parser(String expression) {
+      this.expression = expression;
+    }
+
+    Node parse() {
+      next();
+      Node node = parseOr();
+      return unsupported || node == null || token != null || isLiteral ? null : node;
+    }
+
+    private Node parseOr() {
+      Node node = parseAnd();
+      while (node != null && ("or".equals(token) || "||".equals(token))) {
+        next();
+        final Node left = node;
+        final Node right = parseAnd();
+        if (right == null) {
+          return null;
+        }
+        // 与 OGNL 相同，返回最后一个求值的操作数
+        node = root -> {
+          Object value = left.getValue(root);
+          return toBoolean(value) ? value : right.getValue(root);
+        };
+      }
+      return node;
+    }
+
+    private Node parseAnd() {
+      Node node = parseEquality();
+      while (node != null && ("and".equals(token) || "&&".equals(token))) {
+        next();
+        final Node left = node;
+        final Node right = parseEquality();
+        if (right == null) {
+          return null;
+        }
+        node = root -> {
+          Object value = left.getValue(root);
+          return toBoolean(value) ? right.getValue(root) : value;
+        };
+      }
+      return node;
+    }
+
+    private Node parseEquality() {
+      Node node = parseRelational();
+      while (node != null && !isLiteral && token != null) {
+        final boolean negate;
+        if ("==".equals(token) || "eq".equals(token)) {
+          negate = false;
+        } else if ("!=".equals(token) || "neq".equals(token)) {
+          negate = true;
+        } else {
+          break;
+        }
+        next();
+        final Node left = node;
+        final Node right = parseRelational();
+        if (right == null) {
+          return null;
+        }
+        node = root -> negate != isEqual(left.getValue(root), right.getValue(root));
+      }
+      return node;
+    }
+
+    private Node parseRelational() {
+      Node node = parseUnary();
+      while (node != null && !isLiteral && token != null) {
+        final String operator;
+        switch (token) {
+          case "<":
+          case "lt":
+            operator = "<";
+            break;
+          case "<=":
+          case "lte":
+            operator = "<=";
+            break;
+          case ">":
+          case "gt":
+            operator = ">";
+            break;
+          case ">=":
+          case "gte":
+            operator = ">=";
+            break;
+          default:
+            return node;
+        }
+        next();
+        final Node left = node;
+        final Node right = parseUnary();
+        if (right == null) {
+          return null;
+        }
+        node = root -> {
+          Object leftValue = left.getValue(root);
+          Object rightValue = right.getValue(root);
+          int result = compare(leftValue, rightValue);
+          if (result == Integer.MIN_VALUE) {
+            // 与 OGNL 的 ASTLess、ASTLessEq、ASTGreater、ASTGreaterEq 相同
+            switch (operator) {
+              case "<":
+                return OgnlOps.less(leftValue, rightValue);
+              case "<=":
+                return !OgnlOps.greater(leftValue, rightValue);
+              case ">":
+                return OgnlOps.greater(leftValue, rightValue);
+              default:
+                return !OgnlOps.less(leftValue, rightValue);
+            }
+          }
+          switch (operator) {
+            case "<":
+              return result < 0;
+            case "<=":
+              return result <= 0;
+            case ">":
+              return result > 0;
+            default:
+              return result >= 0;
+          }
+        };
+      }
+      return node;
+    }
+
+    private Node parseUnary() {
+      if (!isLiteral && ("!".equals(token) || "not".equals(token))) {
+        next();
+        final Node operand = parseUnary();
+        if (operand == null) {
+          return null;
+        }
+        return root -> !toBoolean(operand.getValue(root));
+      }
+      return parsePrimary();
+    }
+
+    private Node parsePrimary() {
+      if (isLiteral) {
+        final Object value = literal;
+        next();
+        return root -> value;
+      }
+      if ("(".equals(token)) {
+        next();
+        Node node = parseOr();
+        if (node == null || isLiteral || !")".equals(token)) {
+          return null;
+        }
+        next();
+        return node;
+      }
+      if (!isIdentifier(token)) {
+        return null;
+      }
+      Node node = new PropertyNode(null, token, expression);
+      next();
+      while (!isLiteral && ".".equals(token)) {
+        next();
+        if (!isIdentifier(token)) {
+          return null;
+        }
+        String name = token;
+        next();
+        if (!isLiteral && "(".equals(token)) {
+          // 只支持集合和 Map 的 size()
+          next();
+          if (!"size".equals(name) || isLiteral || !")".equals(token)) {
+            return null;
+          }
+          next();
+          final Node target = node;
+          node = root -> {
+            Object value = target.getValue(root);
+            if (value instanceof Collection) {
+              return ((Collection<?>) value).size();
+            } else if (value instanceof Map) {
+              return ((Map<?, ?>) value).size();
+            }
+            return OgnlCache.getValue("size()", value, expression);
+          };
+        } else {
+          node = new PropertyNode(node, name, expression);
+        }
+      }
+      return node;
+    }
+
+    private boolean isIdentifier(String name) {
+      if (isLiteral || name == null || !Character.isJavaIdentifierStart(name.charAt(0))) {
+        return false;
+      }
+      switch (name) {
+        case "and":
+        case "or":
+        case "not":
+        case "eq":
+        case "neq":
+        case "lt":
+        case "lte":
+        case "gt":
+        case "gte":
+        case "in":
+        case "instanceof":
+        case "shl":
+        case "shr":
+        case "ushr":
+        case "band":
+        case "bor":
+        case "xor":
+        case "new":
+        case "this":
+          return false;
+        default:
+          return true;
+      }
+    }
+
+    /**
+     * 读取下一个记号，到达末尾时 token 为 null
+     */
+    private void next() {
+      token = null;
+      literal = null;
+      isLiteral = false;
+      while (position < expression.length() && Character.isWhitespace(expression.charAt(position))) {
+        position++;
+      }
+      if (position >= expression.length()) {
+        return;
+      }
+      final char c = expression.charAt(position);
+      if (Character.isJavaIdentifierStart(c)) {
+        int start = position;
+        while (position < expression.length() && Character.isJavaIdentifierPart(expression.charAt(position))) {
+          position++;
+        }
+        token = expression.substring(start, position);
+        if ("null".equals(token) || "true".equals(token) || "false".equals(token)) {
+          isLiteral = true;
+          literal = "null".equals(token) ? null : Boolean.valueOf(token);
+          token = null;
+        }
+      } else if (c >= '0' && c <= '9') {
+        readNumber();
+      } else if (c == '\'' || c == '"') {
+        readString(c);
+      } else {
+        readOperator(c);
+      }
+    }
+
+    /**
+     * 只支持没有后缀和指数的十进制整数（Integer）和小数（Double）
+     */
+    private void readNumber() {
+      int start = position;
+      while (position < expression.length() && Character.isDigit(expression.charAt(position))) {
+        position++;
+      }
+      boolean decimal = false;
+      if (position + 1 < expression.length() && expression.charAt(position) == '.' && Character.isDigit(expression.charAt(position + 1))) {
+        decimal = true;
+        position++;
+        while (position < expression.length() && Character.isDigit(expression.charAt(position))) {
+          position++;
+        }
+      }
+      String text = expression.substring(start, position);
+      if (position < expression.length() && (Character.isJavaIdentifierPart(expression.charAt(position)) || expression.charAt(position) == '.')) {
+        // 类型后缀、指数和十六进制等
+        unsupported = true;
+      } else if (decimal) {
+        literal = Double.valueOf(text);
+      } else if ((text.length() > 1 && text.charAt(0) == '0') || text.length() > 9) {
+        // 八进制和可能超出 int 范围的整数
+        unsupported = true;
+      } else {
+        literal = Integer.valueOf(text);
+      }
+      isLiteral = !unsupported;
+      if (unsupported) {
+        position = expression.length();
+      }
+    }
+
+    /**
+     * 只支持没有转义字符的字符串，单引号中只有一个字符时 OGNL 解析为 Character，同样不支持
+     */
+    private void readString(char quote) {
+      int end = expression.indexOf(quote, position + 1);
+      String text = end < 0 ? null : expression.substring(position + 1, end);
+      if (text == null || text.indexOf('\\') >= 0 || (quote == '\'' && text.length() == 1)) {
+        unsupported = true;
+        position = expression.length();
+        return;
+      }
+      position = end + 1;
+      literal = text;
+      isLiteral = true;
+    }
+
+    private void readOperator(char c) {
+      final String[] operators = { "==", "!=", "<=", ">=", "&&", "||", "<", ">", "!", "(", ")", "." };
+      for (String operator : operators) {
+        if (expression.startsWith(operator, position)) {
+          token = operator;
+          position += operator.length();
+          return;
+        }
+      }
+      unsupported = true;
+      position = expression.length();
+    }
+
+  }
+
+}
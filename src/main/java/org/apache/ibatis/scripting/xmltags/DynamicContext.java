@@ -17,13 +17,13 @@ package org.apache.ibatis.scripting.xmltags;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.StringJoiner;
 
 import ognl.OgnlContext;
 import ognl.OgnlRuntime;
 import ognl.PropertyAccessor;
 
 import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.reflection.ReflectorFactory;
 import org.apache.ibatis.session.Configuration;
 
 /**
@@ -39,19 +39,40 @@ public class DynamicContext {
   }
 
   private final ContextMap bindings;
-  private final StringJoiner sqlBuilder = new StringJoiner(" ");
+  /**
+   * SQL 片段之间用一个空格分隔，与 StringJoiner(" ") 相同
+   */
+  private final StringBuilder sqlBuilder;
+  private boolean sqlAppended;
+  /**
+   * 转交 SQL 的上下文，见 {@link #DynamicContext(DynamicContext)}
+   */
+  private final DynamicContext delegate;
   private int uniqueNumber = 0;
 
   public DynamicContext(Configuration configuration, Object parameterObject) {
     if (parameterObject != null && !(parameterObject instanceof Map)) {
-      MetaObject metaObject = configuration.newMetaObject(parameterObject);
-      boolean existsTypeHandler = configuration.getTypeHandlerRegistry().hasTypeHandler(parameterObject.getClass());
-      bindings = new ContextMap(metaObject, existsTypeHandler);
+      bindings = new ContextMap(configuration, parameterObject);
     } else {
-      bindings = new ContextMap(null, false);
+      bindings = new ContextMap(configuration, null);
     }
     bindings.put(PARAMETER_OBJECT_KEY, parameterObject);
     bindings.put(DATABASE_ID_KEY, configuration.getDatabaseId());
+    this.sqlBuilder = new StringBuilder();
+    this.delegate = null;
+  }
+
+  /**
+   * 用于 trim、foreach 等处理 SQL 之后再转交给其他上下文的子类。
+   * 与其他上下文共用 bindings，没有覆盖的方法转交给 delegate，不分配自己的 bindings 和 SQL 缓冲区
+   *
+   * @param delegate 接收 SQL 的上下文
+   * @since 3.5.3
+   */
+  protected DynamicContext(DynamicContext delegate) {
+    this.bindings = delegate.bindings;
+    this.sqlBuilder = null;
+    this.delegate = delegate;
   }
 
   public Map<String, Object> getBindings() {
@@ -63,25 +84,42 @@ public class DynamicContext {
   }
 
   public void appendSql(String sql) {
-    sqlBuilder.add(sql);
+    if (delegate != null) {
+      delegate.appendSql(sql);
+      return;
+    }
+    if (sqlAppended) {
+      sqlBuilder.append(' ');
+    }
+    sqlBuilder.append(sql);
+    sqlAppended = true;
   }
 
   public String getSql() {
-    return sqlBuilder.toString().trim();
+    return delegate != null ? delegate.getSql() : sqlBuilder.toString().trim();
   }
 
   public int getUniqueNumber() {
-    return uniqueNumber++;
+    return delegate != null ? delegate.getUniqueNumber() : uniqueNumber++;
   }
 
   static class ContextMap extends HashMap<String, Object> {
     private static final long serialVersionUID = 2977601501966151582L;
-    private final MetaObject parameterMetaObject;
-    private final boolean fallbackParameterObject;
+    private final Configuration configuration;
+    private final Object parameterObject;
+    /**
+     * 第一次按属性查找参数时才创建
+     */
+    private MetaObject parameterMetaObject;
+    private boolean fallbackParameterObject;
+
+    public ContextMap(Configuration configuration, Object parameterObject) {
+      this.configuration = configuration;
+      this.parameterObject = parameterObject;
+    }
 
-    public ContextMap(MetaObject parameterMetaObject, boolean fallbackParameterObject) {
-      this.parameterMetaObject = parameterMetaObject;
-      this.fallbackParameterObject = fallbackParameterObject;
+    ReflectorFactory getReflectorFactory() {
+      return configuration.getReflectorFactory();
     }
 
     @Override
@@ -91,10 +129,14 @@ public class DynamicContext {
         return super.get(strKey);
       }
 
-      if (parameterMetaObject == null) {
+      if (parameterObject == null) {
         return null;
       }
 
+      if (parameterMetaObject == null) {
+        parameterMetaObject = configuration.newMetaObject(parameterObject);
+        fallbackParameterObject = configuration.getTypeHandlerRegistry().hasTypeHandler(parameterObject.getClass());
+      }
       if (fallbackParameterObject && !parameterMetaObject.hasGetter(strKey)) {
         return parameterMetaObject.getOriginalObject();
       } else {
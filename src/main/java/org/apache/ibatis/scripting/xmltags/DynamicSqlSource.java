@@ -15,9 +15,19 @@
  */
 package org.apache.ibatis.scripting.xmltags;
 
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
 import org.apache.ibatis.builder.SqlSourceBuilder;
 import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.ParameterMapping;
 import org.apache.ibatis.mapping.SqlSource;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.reflection.property.PropertyTokenizer;
 import org.apache.ibatis.session.Configuration;
 
 /**
@@ -25,8 +35,26 @@ import org.apache.ibatis.session.Configuration;
  */
 public class DynamicSqlSource implements SqlSource {
 
+  /**
+   * 每个语句最多缓存的解析结果数量，${} 替换或者 foreach 的元素数量变化很多时，近似地淘汰最近没有使用的 SQL
+   */
+  private static final int MAX_CACHED_SQL_SOURCES = 256;
+
   private final Configuration configuration;
   private final SqlNode rootSqlNode;
+  /**
+   * 解析过的 SQL，key 为 SqlNode 生成的 SQL。生成的 SQL 相同说明 if、choose 选择的分支和 foreach 的元素数量相同，
+   * 不需要再次扫描 #{} 和创建 ParameterMapping。命中时只设置访问标记，不加锁
+   */
+  private final Map<String, ParsedSql> parsedSqls = new ConcurrentHashMap<>();
+  /**
+   * 保护 {@link #hand}，只在淘汰时使用
+   */
+  private final ReentrantLock evictionLock = new ReentrantLock();
+  /**
+   * 时钟指针，下一个淘汰的候选
+   */
+  private Iterator<ParsedSql> hand;
 
   public DynamicSqlSource(Configuration configuration, SqlNode rootSqlNode) {
     this.configuration = configuration;
@@ -37,12 +65,161 @@ public class DynamicSqlSource implements SqlSource {
   public BoundSql getBoundSql(Object parameterObject) {
     DynamicContext context = new DynamicContext(configuration, parameterObject);
     rootSqlNode.apply(context);
-    SqlSourceBuilder sqlSourceParser = new SqlSourceBuilder(configuration);
     Class<?> parameterType = parameterObject == null ? Object.class : parameterObject.getClass();
-    SqlSource sqlSource = sqlSourceParser.parse(context.getSql(), parameterType, context.getBindings());
-    BoundSql boundSql = sqlSource.getBoundSql(parameterObject);
+    BoundSql boundSql = getSqlSource(context.getSql(), parameterType, context.getBindings()).getBoundSql(parameterObject);
     context.getBindings().forEach(boundSql::setAdditionalParameter);
     return boundSql;
   }
 
+  private SqlSource getSqlSource(String sql, Class<?> parameterType, Map<String, Object> bindings) {
+    ParsedSql parsedSql = parsedSqls.get(sql);
+    if (parsedSql != null && parsedSql.matches(parameterType, bindings)) {
+      parsedSql.touch();
+      return parsedSql.sqlSource;
+    }
+    SqlSourceBuilder sqlSourceParser = new SqlSourceBuilder(configuration);
+    SqlSource sqlSource = sqlSourceParser.parse(sql, parameterType, bindings);
+    if (parsedSqls.put(sql, new ParsedSql(configuration, sqlSource, parameterType, bindings)) == null
+        && parsedSqls.size() > MAX_CACHED_SQL_SOURCES) {
+      evict();
+    }
+    return sqlSource;
+  }
+
+  /**
+   * 按 CLOCK 算法近似淘汰：指针经过的 SQL 被访问过时清除标记，获得第二次机会，否则淘汰。
+   * 其他线程正在淘汰时直接返回，缓存可能暂时多于上限
+   */
+  private void evict() {
+    if (!evictionLock.tryLock()) {
+      return;
+    }
+    try {
+      while (parsedSqls.size() > MAX_CACHED_SQL_SOURCES) {
+        if (hand == null || !hand.hasNext()) {
+          hand = parsedSqls.values().iterator();
+        }
+        ParsedSql parsedSql = hand.next();
+        if (parsedSql.referenced) {
+          parsedSql.referenced = false;
+        } else {
+          hand.remove();
+        }
+      }
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  /**
+   * 解析过的 SQL 及解析时参数属性的类型
+   *
+   * {@link SqlSourceBuilder} 优先从 bindings 获取 #{} 中属性的类型（issue #448），bindings 中的值是运行时的对象，
+   * 所以只有参数类型相同，并且每个属性在 bindings 中是否存在以及类型都相同时，才能使用解析过的 SQL
+   */
+  private static class ParsedSql {
+
+    private final Configuration configuration;
+    private final SqlSource sqlSource;
+    private final Class<?> parameterType;
+    private final BindingCheck[] bindingChecks;
+    private volatile boolean referenced;
+
+    ParsedSql(Configuration configuration, SqlSource sqlSource, Class<?> parameterType, Map<String, Object> bindings) {
+      this.configuration = configuration;
+      this.sqlSource = sqlSource;
+      this.parameterType = parameterType;
+      List<ParameterMapping> parameterMappings = sqlSource.getBoundSql(null).getParameterMappings();
+      this.bindingChecks = new BindingCheck[parameterMappings.size()];
+      MetaObject metaBindings = parameterMappings.isEmpty() ? null : configuration.newMetaObject(bindings);
+      for (int i = 0; i < bindingChecks.length; i++) {
+        bindingChecks[i] = new BindingCheck(configuration, parameterMappings.get(i).getProperty(), bindings, metaBindings);
+      }
+    }
+
+    boolean matches(Class<?> parameterType, Map<String, Object> bindings) {
+      if (this.parameterType != parameterType) {
+        return false;
+      }
+      MetaObject metaBindings = null;
+      for (BindingCheck check : bindingChecks) {
+        if (!check.dynamic) {
+          if (check.rootType != BindingCheck.rootType(bindings, check.root)) {
+            return false;
+          }
+        } else {
+          if (metaBindings == null) {
+            metaBindings = configuration.newMetaObject(bindings);
+          }
+          if (check.type != BindingCheck.getBindingType(metaBindings, check.property)) {
+            return false;
+          }
+        }
+      }
+      return true;
+    }
+
+    void touch() {
+      // 避免重复写入同一缓存行
+      if (!referenced) {
+        referenced = true;
+      }
+    }
+
+  }
+
+  /**
+   * 一个参数属性在 bindings 中的类型
+   *
+   * 大多数属性的类型只取决于 bindings 中第一段属性名对应的值：不存在、为 null、简单属性的值的类型，
+   * 或者 foreach 的元素是 JavaBean 时 item.property 的声明类型，命中时只比较这个值的类型，不再解析属性。
+   * 其他属性（Map、集合中的值，多级属性）的类型取决于运行时的值，每次重新解析
+   */
+  private static final class BindingCheck {
+
+    /**
+     * 第一段属性名不在 bindings 中
+     */
+    private static final Class<?> ABSENT = Void.class;
+
+    private final String property;
+    private final String root;
+    private final Class<?> rootType;
+    private final boolean dynamic;
+    private final Class<?> type;
+
+    BindingCheck(Configuration configuration, String property, Map<String, Object> bindings, MetaObject metaBindings) {
+      this.property = property;
+      PropertyTokenizer prop = new PropertyTokenizer(property);
+      this.root = prop.hasNext() ? prop.getIndexedName() : prop.getName();
+      this.rootType = rootType(bindings, root);
+      this.type = getBindingType(metaBindings, property);
+      if (!prop.hasNext() || rootType == ABSENT || rootType == null) {
+        this.dynamic = false;
+      } else {
+        Object value = bindings.get(root);
+        this.dynamic = new PropertyTokenizer(prop.getChildren()).hasNext()
+            || value instanceof Map || value instanceof Collection || rootType.isArray()
+            || configuration.getObjectWrapperFactory().hasWrapperFor(value);
+      }
+    }
+
+    /**
+     * @return 不在 bindings 中时为 {@link #ABSENT}，值为 null 时为 null
+     */
+    static Class<?> rootType(Map<String, Object> bindings, String root) {
+      // 先判断是否存在，DynamicContext 的 bindings 取不存在的键时会去参数对象中查找
+      if (!bindings.containsKey(root)) {
+        return ABSENT;
+      }
+      Object value = bindings.get(root);
+      return value == null ? null : value.getClass();
+    }
+
+    static Class<?> getBindingType(MetaObject metaBindings, String property) {
+      return metaBindings.hasGetter(property) ? metaBindings.getGetterType(property) : null;
+    }
+
+  }
+
 }
@@ -20,6 +20,7 @@ import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.ibatis.builder.BuilderException;
 
@@ -28,8 +29,13 @@ import org.apache.ibatis.builder.BuilderException;
  */
 public class ExpressionEvaluator {
 
+  /**
+   * 编译过的表达式。每个 SqlNode 有自己的 ExpressionEvaluator，缓存随语句所属的 Configuration 一起释放
+   */
+  private final Map<String, CompiledExpression> compiledExpressions = new ConcurrentHashMap<>();
+
   public boolean evaluateBoolean(String expression, Object parameterObject) {
-    Object value = OgnlCache.getValue(expression, parameterObject);
+    Object value = getValue(expression, parameterObject);
     if (value instanceof Boolean) {
       return (Boolean) value;
     }
@@ -40,7 +46,7 @@ public class ExpressionEvaluator {
   }
 
   public Iterable<?> evaluateIterable(String expression, Object parameterObject) {
-    Object value = OgnlCache.getValue(expression, parameterObject);
+    Object value = getValue(expression, parameterObject);
     if (value == null) {
       throw new BuilderException("The expression '" + expression + "' evaluated to a null value.");
     }
@@ -65,4 +71,20 @@ public class ExpressionEvaluator {
     throw new BuilderException("Error evaluating expression '" + expression + "'.  Return value (" + value + ") was not iterable.");
   }
 
+  /**
+   * 对 {@link DynamicContext} 的 bindings 求值时，常用的表达式不经过 OGNL 求值，其他表达式使用 OGNL
+   *
+   * @see CompiledExpression
+   */
+  private Object getValue(String expression, Object parameterObject) {
+    if (parameterObject instanceof DynamicContext.ContextMap) {
+      Object value = compiledExpressions.computeIfAbsent(expression, CompiledExpression::compile)
+          .getValue((DynamicContext.ContextMap) parameterObject);
+      if (value != CompiledExpression.FALLBACK) {
+        return value;
+      }
+    }
+    return OgnlCache.getValue(expression, parameterObject);
+  }
+
 }
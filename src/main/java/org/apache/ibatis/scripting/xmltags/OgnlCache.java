@@ -41,11 +41,18 @@ public final class OgnlCache {
   }
 
   public static Object getValue(String expression, Object root) {
+    return getValue(expression, root, expression);
+  }
+
+  /**
+   * @param reportedExpression 出错时报告的表达式，{@link CompiledExpression} 对表达式的一步求值时为整个表达式
+   */
+  static Object getValue(String expression, Object root, String reportedExpression) {
     try {
       Map context = Ognl.createDefaultContext(root, MEMBER_ACCESS, CLASS_RESOLVER, null);
       return Ognl.getValue(parseExpression(expression), context, root);
     } catch (OgnlException e) {
-      throw new BuilderException("Error evaluating expression '" + expression + "'. Cause: " + e, e);
+      throw new BuilderException("Error evaluating expression '" + reportedExpression + "'. Cause: " + e, e);
     }
   }
 
@@ -76,7 +76,7 @@ public class TrimSqlNode implements SqlNode {
     private StringBuilder sqlBuffer;
 
     public FilteredDynamicContext(DynamicContext delegate) {
-      super(configuration, null);
+      super(delegate);
       this.delegate = delegate;
       this.prefixApplied = false;
       this.suffixApplied = false;
@@ -84,15 +84,37 @@ public class TrimSqlNode implements SqlNode {
     }
 
     public void applyAll() {
-      sqlBuffer = new StringBuilder(sqlBuffer.toString().trim());
-      String trimmedUppercaseSql = sqlBuffer.toString().toUpperCase(Locale.ENGLISH);
-      if (trimmedUppercaseSql.length() > 0) {
+      trim(sqlBuffer);
+      if (sqlBuffer.length() > 0) {
+        // 只在需要去掉前缀或后缀时转换为大写
+        String trimmedUppercaseSql = isEmpty(prefixesToOverride) && isEmpty(suffixesToOverride)
+            ? null : sqlBuffer.toString().toUpperCase(Locale.ENGLISH);
         applyPrefix(sqlBuffer, trimmedUppercaseSql);
         applySuffix(sqlBuffer, trimmedUppercaseSql);
       }
       delegate.appendSql(sqlBuffer.toString());
     }
 
+    private boolean isEmpty(List<String> overrides) {
+      return overrides == null || overrides.isEmpty();
+    }
+
+    /**
+     * 与 {@link String#trim()} 相同，直接修改缓冲区
+     */
+    private void trim(StringBuilder sql) {
+      int end = sql.length();
+      while (end > 0 && sql.charAt(end - 1) <= ' ') {
+        end--;
+      }
+      sql.setLength(end);
+      int start = 0;
+      while (start < end && sql.charAt(start) <= ' ') {
+        start++;
+      }
+      sql.delete(0, start);
+    }
+
     @Override
     public Map<String, Object> getBindings() {
       return delegate.getBindings();
@@ -25,6 +25,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiFunction;
 
 import org.apache.ibatis.binding.MapperRegistry;
@@ -34,10 +38,12 @@ import org.apache.ibatis.builder.ResultMapResolver;
 import org.apache.ibatis.builder.annotation.MethodResolver;
 import org.apache.ibatis.builder.xml.XMLStatementBuilder;
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.decorators.ClockCache;
 import org.apache.ibatis.cache.decorators.FifoCache;
 import org.apache.ibatis.cache.decorators.LruCache;
 import org.apache.ibatis.cache.decorators.SoftCache;
 import org.apache.ibatis.cache.decorators.WeakCache;
+import org.apache.ibatis.cache.impl.OffHeapCache;
 import org.apache.ibatis.cache.impl.PerpetualCache;
 import org.apache.ibatis.datasource.jndi.JndiDataSourceFactory;
 import org.apache.ibatis.datasource.pooled.PooledDataSourceFactory;
@@ -109,10 +115,14 @@ public class Configuration {
   protected boolean multipleResultSetsEnabled = true;
   protected boolean useGeneratedKeys;
   protected boolean useColumnLabel = true;
+  protected boolean useColumnIndex;
   protected boolean cacheEnabled = true;
   protected boolean callSettersOnNulls;
   protected boolean useActualParamName = true;
   protected boolean returnInstanceForEmptyRow;
+  protected boolean batchGroupingEnabled;
+  protected boolean batchRetainParameters;
+  protected boolean batchPipeliningEnabled;
 
   protected String logPrefix;
   protected Class<? extends Log> logImpl;
@@ -122,6 +132,15 @@ public class Configuration {
   protected Set<String> lazyLoadTriggerMethods = new HashSet<>(Arrays.asList("equals", "clone", "hashCode", "toString"));
   protected Integer defaultStatementTimeout;
   protected Integer defaultFetchSize;
+  protected Integer batchFlushSize;
+  protected Long batchFlushBytes;
+  protected Integer statementReuseLimit;
+  protected Integer asyncQueryThreads;
+  protected volatile ExecutorService asyncQueryExecutor;
+  /**
+   * asyncQueryExecutor 是否由 {@link #getAsyncQueryExecutor()} 创建，只有这种情况下由 Configuration 负责关闭
+   */
+  protected boolean asyncQueryExecutorOwned;
   protected ResultSetType defaultResultSetType;
   protected ExecutorType defaultExecutorType = ExecutorType.SIMPLE;
   protected AutoMappingBehavior autoMappingBehavior = AutoMappingBehavior.PARTIAL;
@@ -187,10 +206,12 @@ public class Configuration {
     typeAliasRegistry.registerAlias("UNPOOLED", UnpooledDataSourceFactory.class);
 
     typeAliasRegistry.registerAlias("PERPETUAL", PerpetualCache.class);
+    typeAliasRegistry.registerAlias("OFF_HEAP", OffHeapCache.class);
     typeAliasRegistry.registerAlias("FIFO", FifoCache.class);
     typeAliasRegistry.registerAlias("LRU", LruCache.class);
     typeAliasRegistry.registerAlias("SOFT", SoftCache.class);
     typeAliasRegistry.registerAlias("WEAK", WeakCache.class);
+    typeAliasRegistry.registerAlias("CLOCK", ClockCache.class);
 
     typeAliasRegistry.registerAlias("DB_VENDOR", VendorDatabaseIdProvider.class);
 
@@ -282,6 +303,166 @@ public class Configuration {
     this.configurationFactory = configurationFactory;
   }
 
+  /**
+   * @since 3.5.3
+   */
+  public boolean isBatchGroupingEnabled() {
+    return batchGroupingEnabled;
+  }
+
+  /**
+   * 分组时 insert 追加到之前打开的相同 Statement，按 Statement 第一次出现的顺序执行。
+   * 只有第一次出现的顺序就是依赖顺序（先父表后子表）时才安全：
+   * 如先插入子表 B1，再插入父表 A2，再插入引用 A2 的子表 B2，B2 会在 A2 之前执行。
+   *
+   * @since 3.5.3
+   */
+  public void setBatchGroupingEnabled(boolean batchGroupingEnabled) {
+    this.batchGroupingEnabled = batchGroupingEnabled;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public Integer getBatchFlushSize() {
+    return batchFlushSize;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public void setBatchFlushSize(Integer batchFlushSize) {
+    this.batchFlushSize = batchFlushSize;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public Long getBatchFlushBytes() {
+    return batchFlushBytes;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public void setBatchFlushBytes(Long batchFlushBytes) {
+    this.batchFlushBytes = batchFlushBytes;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public boolean isBatchRetainParameters() {
+    return batchRetainParameters;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public void setBatchRetainParameters(boolean batchRetainParameters) {
+    this.batchRetainParameters = batchRetainParameters;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public boolean isBatchPipeliningEnabled() {
+    return batchPipeliningEnabled;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public void setBatchPipeliningEnabled(boolean batchPipeliningEnabled) {
+    this.batchPipeliningEnabled = batchPipeliningEnabled;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public Integer getStatementReuseLimit() {
+    return statementReuseLimit;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public void setStatementReuseLimit(Integer statementReuseLimit) {
+    this.statementReuseLimit = statementReuseLimit;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public Integer getAsyncQueryThreads() {
+    return asyncQueryThreads;
+  }
+
+  /**
+   * @param asyncQueryThreads the number of threads of the default executor for
+   *          {@link SqlSession#selectListAsync(String, Object, RowBounds)}, which also bounds the number of
+   *          connections used by asynchronous queries
+   * @since 3.5.3
+   */
+  public synchronized void setAsyncQueryThreads(Integer asyncQueryThreads) {
+    this.asyncQueryThreads = asyncQueryThreads;
+    // 已经创建的线程池在下次使用时按照新的线程数重新创建
+    closeAsyncQueryExecutor();
+  }
+
+  /**
+   * @return the executor of asynchronous queries, a pool of at most {@link #getAsyncQueryThreads()} daemon threads
+   *         (number of processors by default) is created on first use unless one was set; its idle threads
+   *         exit after a minute
+   * @see #closeAsyncQueryExecutor()
+   * @since 3.5.3
+   */
+  public ExecutorService getAsyncQueryExecutor() {
+    ExecutorService executor = asyncQueryExecutor;
+    if (executor == null) {
+      synchronized (this) {
+        executor = asyncQueryExecutor;
+        if (executor == null) {
+          int threads = asyncQueryThreads == null ? Runtime.getRuntime().availableProcessors() : asyncQueryThreads;
+          ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+              new LinkedBlockingQueue<>(), r -> {
+                Thread thread = new Thread(r, "mybatis-async-query");
+                thread.setDaemon(true);
+                return thread;
+              });
+          pool.allowCoreThreadTimeOut(true);
+          executor = pool;
+          asyncQueryExecutorOwned = true;
+          asyncQueryExecutor = executor;
+        }
+      }
+    }
+    return executor;
+  }
+
+  /**
+   * @param asyncQueryExecutor the executor of asynchronous queries, its lifecycle stays with the caller
+   * @since 3.5.3
+   */
+  public synchronized void setAsyncQueryExecutor(ExecutorService asyncQueryExecutor) {
+    closeAsyncQueryExecutor();
+    this.asyncQueryExecutor = asyncQueryExecutor;
+  }
+
+  /**
+   * Shuts down the executor created by {@link #getAsyncQueryExecutor()}, letting queued queries finish.
+   * An executor set with {@link #setAsyncQueryExecutor(ExecutorService)} is left to its owner.
+   * A later asynchronous query creates a new executor.
+   * @since 3.5.3
+   */
+  public synchronized void closeAsyncQueryExecutor() {
+    if (asyncQueryExecutorOwned) {
+      asyncQueryExecutor.shutdown();
+      asyncQueryExecutor = null;
+      asyncQueryExecutorOwned = false;
+    }
+  }
+
   public boolean isSafeResultHandlerEnabled() {
     return safeResultHandlerEnabled;
   }
@@ -455,6 +636,20 @@ public class Configuration {
     this.useColumnLabel = useColumnLabel;
   }
 
+  /**
+   * @since 3.5.3
+   */
+  public boolean isUseColumnIndex() {
+    return useColumnIndex;
+  }
+
+  /**
+   * @since 3.5.3
+   */
+  public void setUseColumnIndex(boolean useColumnIndex) {
+    this.useColumnIndex = useColumnIndex;
+  }
+
   public LocalCacheScope getLocalCacheScope() {
     return localCacheScope;
   }
@@ -599,6 +794,16 @@ public class Configuration {
   }
 
   public Executor newExecutor(Transaction transaction, ExecutorType executorType) {
+    return newExecutor(transaction, executorType, cacheEnabled);
+  }
+
+  /**
+   * 创建执行器，cacheEnabled 为 false 时不包装 {@link CachingExecutor}，插件仍然生效。
+   * 用于二级缓存自身需要查询数据库的场景，例如后台刷新
+   *
+   * @since 3.5.3
+   */
+  public Executor newExecutor(Transaction transaction, ExecutorType executorType, boolean cacheEnabled) {
     executorType = executorType == null ? defaultExecutorType : executorType;
     executorType = executorType == null ? ExecutorType.SIMPLE : executorType;
     Executor executor;
@@ -19,6 +19,7 @@ import java.io.Closeable;
 import java.sql.Connection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.executor.BatchResult;
@@ -143,6 +144,41 @@ public interface SqlSession extends Closeable {
    */
   <T> Cursor<T> selectCursor(String statement, Object parameter, RowBounds rowBounds);
 
+  /**
+   * Retrieve a list of mapped objects asynchronously on another pooled connection.
+   * @param <E> the returned list element type
+   * @param statement Unique identifier matching the statement to use.
+   * @return future of the list of mapped objects
+   * @since 3.5.3
+   */
+  <E> CompletableFuture<List<E>> selectListAsync(String statement);
+
+  /**
+   * Retrieve a list of mapped objects asynchronously on another pooled connection.
+   * @param <E> the returned list element type
+   * @param statement Unique identifier matching the statement to use.
+   * @param parameter A parameter object to pass to the statement.
+   * @return future of the list of mapped objects
+   * @since 3.5.3
+   */
+  <E> CompletableFuture<List<E>> selectListAsync(String statement, Object parameter);
+
+  /**
+   * Retrieve a list of mapped objects asynchronously on another pooled connection.
+   * Independent queries issued this way run concurrently on {@link Configuration#getAsyncQueryExecutor()},
+   * each with its own connection and auto-committed transaction at the isolation level the session was opened with.
+   * The query runs synchronously in this session instead when the session has uncommitted changes
+   * (other connections could not see them) or when the result is already in the local cache.
+   * @param <E> the returned list element type
+   * @param statement Unique identifier matching the statement to use.
+   * @param parameter A parameter object to pass to the statement.
+   * @param rowBounds  Bounds to limit object retrieval
+   * @return future of the list of mapped objects, completed exceptionally with a
+   *         {@link org.apache.ibatis.exceptions.PersistenceException} on failure
+   * @since 3.5.3
+   */
+  <E> CompletableFuture<List<E>> selectListAsync(String statement, Object parameter, RowBounds rowBounds);
+
   /**
    * Retrieve a single row mapped from the statement key and parameter
    * using a {@code ResultHandler}.
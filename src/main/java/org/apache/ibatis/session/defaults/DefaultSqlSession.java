@@ -23,8 +23,10 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import org.apache.ibatis.binding.BindingException;
+import org.apache.ibatis.cache.CacheKey;
 import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.exceptions.ExceptionFactory;
 import org.apache.ibatis.exceptions.TooManyResultsException;
@@ -33,11 +35,16 @@ import org.apache.ibatis.executor.ErrorContext;
 import org.apache.ibatis.executor.Executor;
 import org.apache.ibatis.executor.result.DefaultMapResultHandler;
 import org.apache.ibatis.executor.result.DefaultResultContext;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.Environment;
 import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ExecutorType;
 import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
 import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.TransactionIsolationLevel;
+import org.apache.ibatis.transaction.Transaction;
 
 /**
  * The default implementation for {@link SqlSession}.
@@ -51,14 +58,26 @@ public class DefaultSqlSession implements SqlSession {
   private final Executor executor;
 
   private final boolean autoCommit;
+  /**
+   * 会话的事务隔离级别，异步查询的连接使用相同的隔离级别
+   */
+  private final TransactionIsolationLevel level;
   private boolean dirty;
   private List<Cursor<?>> cursorList;
 
-  public DefaultSqlSession(Configuration configuration, Executor executor, boolean autoCommit) {
+  /**
+   * @since 3.5.3
+   */
+  public DefaultSqlSession(Configuration configuration, Executor executor, boolean autoCommit, TransactionIsolationLevel level) {
     this.configuration = configuration;
     this.executor = executor;
     this.dirty = false;
     this.autoCommit = autoCommit;
+    this.level = level;
+  }
+
+  public DefaultSqlSession(Configuration configuration, Executor executor, boolean autoCommit) {
+    this(configuration, executor, autoCommit, null);
   }
 
   public DefaultSqlSession(Configuration configuration, Executor executor) {
@@ -152,6 +171,72 @@ public class DefaultSqlSession implements SqlSession {
     }
   }
 
+  @Override
+  public <E> CompletableFuture<List<E>> selectListAsync(String statement) {
+    return this.selectListAsync(statement, null);
+  }
+
+  @Override
+  public <E> CompletableFuture<List<E>> selectListAsync(String statement, Object parameter) {
+    return this.selectListAsync(statement, parameter, RowBounds.DEFAULT);
+  }
+
+  @Override
+  public <E> CompletableFuture<List<E>> selectListAsync(String statement, Object parameter, RowBounds rowBounds) {
+    final MappedStatement ms;
+    final Object parameterObject = wrapCollection(parameter);
+    final BoundSql boundSql;
+    final CacheKey key;
+    final boolean cached;
+    try {
+      ms = configuration.getMappedStatement(statement);
+      boundSql = ms.getBoundSql(parameterObject);
+      key = executor.createCacheKey(ms, parameterObject, rowBounds, boundSql);
+      cached = executor.isCached(ms, key);
+    } catch (Exception e) {
+      CompletableFuture<List<E>> future = new CompletableFuture<>();
+      future.completeExceptionally(ExceptionFactory.wrapException("Error querying database.  Cause: " + e, e));
+      return future;
+    } finally {
+      ErrorContext.instance().reset();
+    }
+    final Environment environment = configuration.getEnvironment();
+    // 其他连接看不到未提交的修改，本地缓存中已有的结果也不需要再查询，都在当前会话中执行
+    if (dirty || cached || environment == null) {
+      try {
+        return CompletableFuture.completedFuture(selectList(statement, parameter, rowBounds));
+      } catch (RuntimeException e) {
+        CompletableFuture<List<E>> future = new CompletableFuture<>();
+        future.completeExceptionally(e);
+        return future;
+      }
+    }
+    return CompletableFuture.supplyAsync(() -> selectListOnNewConnection(environment, ms, parameterObject, rowBounds, key, boundSql),
+        configuration.getAsyncQueryExecutor());
+  }
+
+  /**
+   * 使用新的连接和自动提交的事务执行查询，查询结果按照二级缓存的规则放入缓存
+   */
+  private <E> List<E> selectListOnNewConnection(Environment environment, MappedStatement ms, Object parameterObject,
+      RowBounds rowBounds, CacheKey key, BoundSql boundSql) {
+    try {
+      Transaction tx = environment.getTransactionFactory().newTransaction(environment.getDataSource(), level, true);
+      Executor asyncExecutor = configuration.newExecutor(tx, ExecutorType.SIMPLE);
+      try {
+        List<E> list = asyncExecutor.query(ms, parameterObject, rowBounds, Executor.NO_RESULT_HANDLER, key, boundSql);
+        asyncExecutor.commit(false);
+        return list;
+      } finally {
+        asyncExecutor.close(false);
+      }
+    } catch (Exception e) {
+      throw ExceptionFactory.wrapException("Error querying database.  Cause: " + e, e);
+    } finally {
+      ErrorContext.instance().reset();
+    }
+  }
+
   @Override
   public void select(String statement, Object parameter, ResultHandler handler) {
     select(statement, parameter, RowBounds.DEFAULT, handler);
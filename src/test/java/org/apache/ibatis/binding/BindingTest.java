@@ -28,6 +28,8 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 import javassist.util.proxy.Proxy;
 
@@ -43,6 +45,7 @@ import org.apache.ibatis.domain.blog.DraftPost;
 import org.apache.ibatis.domain.blog.Post;
 import org.apache.ibatis.domain.blog.Section;
 import org.apache.ibatis.exceptions.PersistenceException;
+import org.apache.ibatis.exceptions.TooManyResultsException;
 import org.apache.ibatis.executor.result.DefaultResultHandler;
 import org.apache.ibatis.mapping.Environment;
 import org.apache.ibatis.session.Configuration;
@@ -92,6 +95,36 @@ class BindingTest {
     }
   }
 
+  @Test
+  void shouldSelectAuthorsAsynchronously() throws Exception {
+    try (SqlSession session = sqlSessionFactory.openSession()) {
+      BoundAuthorMapper mapper = session.getMapper(BoundAuthorMapper.class);
+      CompletableFuture<Author> author = mapper.selectAuthorAsync(101);
+      CompletableFuture<List<Author>> authors = mapper.selectAuthorsAsync();
+      assertEquals("jim", author.get().getUsername());
+      assertEquals(2, authors.get().size());
+      assertEquals(102, authors.get().get(1).getId());
+      assertNull(mapper.selectAuthorAsync(-1).get());
+    }
+  }
+
+  @Test
+  void shouldFailAsynchronousSelectOfOneWithTooManyResults() {
+    try (SqlSession session = sqlSessionFactory.openSession()) {
+      BoundAuthorMapper mapper = session.getMapper(BoundAuthorMapper.class);
+      ExecutionException e = assertThrows(ExecutionException.class, () -> mapper.selectAuthorsAsOneAsync().get());
+      assertTrue(e.getCause() instanceof TooManyResultsException);
+    }
+  }
+
+  @Test
+  void shouldRejectFutureOfUnsupportedCollection() {
+    try (SqlSession session = sqlSessionFactory.openSession()) {
+      BoundAuthorMapper mapper = session.getMapper(BoundAuthorMapper.class);
+      assertThrows(BindingException.class, mapper::selectAuthorSetAsync);
+    }
+  }
+
   @Test
   void shouldFindPostsInList() {
     try (SqlSession session = sqlSessionFactory.openSession()) {
@@ -23,6 +23,8 @@ import org.apache.ibatis.executor.BatchResult;
 import org.apache.ibatis.session.RowBounds;
 
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 @CacheNamespace(readWrite = false)
 public interface BoundAuthorMapper {
@@ -89,6 +91,20 @@ public interface BoundAuthorMapper {
 
   //======================================================
 
+  @Select("SELECT * FROM AUTHOR WHERE ID = #{id}")
+  CompletableFuture<Author> selectAuthorAsync(int id);
+
+  @Select("SELECT * FROM AUTHOR WHERE ID IN (101, 102) ORDER BY ID")
+  CompletableFuture<List<Author>> selectAuthorsAsync();
+
+  @Select("SELECT * FROM AUTHOR WHERE ID IN (101, 102) ORDER BY ID")
+  CompletableFuture<Author> selectAuthorsAsOneAsync();
+
+  @Select("SELECT * FROM AUTHOR WHERE ID IN (101, 102) ORDER BY ID")
+  CompletableFuture<Set<Author>> selectAuthorSetAsync();
+
+  //======================================================
+
   List<Post> findThreeSpecificPosts(@Param("one") int one,
                                     RowBounds rowBounds,
                                     @Param("two") int two,
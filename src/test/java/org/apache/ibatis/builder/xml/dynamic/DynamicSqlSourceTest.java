@@ -16,12 +16,17 @@
 package org.apache.ibatis.builder.xml.dynamic;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
 import java.io.Reader;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -29,14 +34,19 @@ import java.util.Map;
 import org.apache.ibatis.BaseDataTest;
 import org.apache.ibatis.io.Resources;
 import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.reflection.SystemMetaObject;
+import org.apache.ibatis.reflection.wrapper.DefaultObjectWrapperFactory;
 import org.apache.ibatis.scripting.xmltags.ChooseSqlNode;
+import org.apache.ibatis.scripting.xmltags.DynamicContext;
 import org.apache.ibatis.scripting.xmltags.DynamicSqlSource;
 import org.apache.ibatis.scripting.xmltags.ForEachSqlNode;
 import org.apache.ibatis.scripting.xmltags.IfSqlNode;
 import org.apache.ibatis.scripting.xmltags.MixedSqlNode;
 import org.apache.ibatis.scripting.xmltags.SetSqlNode;
 import org.apache.ibatis.scripting.xmltags.SqlNode;
+import org.apache.ibatis.scripting.xmltags.StaticTextSqlNode;
 import org.apache.ibatis.scripting.xmltags.TextSqlNode;
+import org.apache.ibatis.scripting.xmltags.TrimSqlNode;
 import org.apache.ibatis.scripting.xmltags.WhereSqlNode;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.SqlSessionFactory;
@@ -376,6 +386,176 @@ class DynamicSqlSourceTest extends BaseDataTest {
     assertEquals("__frch_u_0", boundSql.getParameterMappings().get(3).getProperty());
   }
 
+  @Test
+  void shouldReuseParameterMappingsForSameBranches() throws Exception {
+    DynamicSqlSource source = createDynamicSqlSource(
+        new TextSqlNode("SELECT * FROM BLOG"),
+        new WhereSqlNode(new Configuration(), mixedContents(
+            new IfSqlNode(mixedContents(new TextSqlNode("AND ID = #{id}")), "id != null"),
+            new IfSqlNode(mixedContents(new TextSqlNode("AND TITLE = #{title}")), "title != null"))));
+    Map<String, Object> param = new HashMap<>();
+    param.put("id", 1);
+    param.put("title", null);
+    BoundSql first = source.getBoundSql(param);
+    param.put("id", 2);
+    BoundSql second = source.getBoundSql(param);
+    assertSame(first.getParameterMappings(), second.getParameterMappings());
+    param.put("title", "Title");
+    BoundSql third = source.getBoundSql(param);
+    assertEquals(2, third.getParameterMappings().size());
+    assertEquals("title", third.getParameterMappings().get(1).getProperty());
+  }
+
+  @Test
+  void shouldNotReuseParameterMappingsForDifferentBindingTypes() throws Exception {
+    DynamicSqlSource source = createDynamicSqlSource(
+        new TextSqlNode("SELECT * FROM BLOG WHERE ID in"),
+        new ForEachSqlNode(new Configuration(), mixedContents(new TextSqlNode("#{item}")), "list", null, "item", "(", ")", ","));
+    Map<String, Object> param = new HashMap<>();
+    param.put("list", Arrays.asList(1, 2));
+    BoundSql integers = source.getBoundSql(param);
+    param.put("list", Arrays.asList("1", "2"));
+    BoundSql strings = source.getBoundSql(param);
+    assertEquals(integers.getSql(), strings.getSql());
+    assertNotSame(integers.getParameterMappings(), strings.getParameterMappings());
+    assertEquals(Integer.class, integers.getParameterMappings().get(0).getJavaType());
+    assertEquals(String.class, strings.getParameterMappings().get(0).getJavaType());
+  }
+
+  @Test
+  void shouldKeepRecentlyUsedParsedSqlWhenEvicting() throws Exception {
+    DynamicSqlSource source = createDynamicSqlSource(new TextSqlNode("SELECT * FROM BLOG WHERE ID = #{id} ORDER BY ${column}"));
+    Map<String, Object> hot = new HashMap<>();
+    hot.put("id", 1);
+    hot.put("column", "hot");
+    BoundSql first = source.getBoundSql(hot);
+    Map<String, Object> param = new HashMap<>(hot);
+    for (int i = 1; i <= 300; i++) {
+      param.put("column", "c" + i);
+      source.getBoundSql(param);
+      assertSame(first.getParameterMappings(), source.getBoundSql(hot).getParameterMappings());
+    }
+    assertEquals(256, ((Map<?, ?>) SystemMetaObject.forObject(source).getValue("parsedSqls")).size());
+  }
+
+  @Test
+  void shouldNotResolveParameterPathsAgainOnCacheHit() throws Exception {
+    Configuration configuration = new Configuration();
+    List<String> wrapped = new ArrayList<>();
+    configuration.setObjectWrapperFactory(new DefaultObjectWrapperFactory() {
+      @Override
+      public boolean hasWrapperFor(Object object) {
+        wrapped.add(object.getClass().getSimpleName());
+        return false;
+      }
+    });
+    DynamicSqlSource source = new DynamicSqlSource(configuration, mixedContents(
+        new StaticTextSqlNode("SELECT * FROM BLOG WHERE NAME = #{name} AND ID IN"),
+        new ForEachSqlNode(configuration, mixedContents(new StaticTextSqlNode("#{bean.id}")), "beans", null, "bean", "(", ")", ",")));
+    Map<String, Object> param = new HashMap<>();
+    param.put("name", "blog");
+    param.put("beans", Arrays.asList(new Bean("1"), new Bean("2")));
+    BoundSql first = source.getBoundSql(param);
+    assertTrue(wrapped.contains("ContextMap"));
+    wrapped.clear();
+    BoundSql second = source.getBoundSql(param);
+    assertSame(first.getParameterMappings(), second.getParameterMappings());
+    // no MetaObject over the bindings: the types are checked against the values of name and __frch_bean_N
+    assertFalse(wrapped.contains("ContextMap"));
+  }
+
+  @Test
+  void shouldResolveMapValuesAgainOnCacheHit() throws Exception {
+    DynamicSqlSource source = createDynamicSqlSource(
+        new ForEachSqlNode(new Configuration(), mixedContents(new StaticTextSqlNode("#{row.id}")), "rows", null, "row", "(", ")", ","));
+    Map<String, Object> row = new HashMap<>();
+    row.put("id", 1);
+    Map<String, Object> param = new HashMap<>();
+    param.put("rows", Collections.singletonList(row));
+    assertEquals(Integer.class, source.getBoundSql(param).getParameterMappings().get(0).getJavaType());
+    row.put("id", "1");
+    assertEquals(String.class, source.getBoundSql(param).getParameterMappings().get(0).getJavaType());
+  }
+
+  @Test
+  void shouldShareBindingsAndSqlWithDelegateContext() {
+    DynamicContext context = new DynamicContext(new Configuration(), null);
+    DynamicContext child = new DynamicContext(context) {
+    };
+    child.appendSql("SELECT *");
+    context.appendSql("FROM BLOG");
+    child.appendSql("WHERE ID = 1");
+    child.bind("id", 1);
+    assertEquals("SELECT * FROM BLOG WHERE ID = 1", context.getSql());
+    assertEquals("SELECT * FROM BLOG WHERE ID = 1", child.getSql());
+    assertSame(context.getBindings(), child.getBindings());
+    assertEquals(1, context.getBindings().get("id"));
+    assertEquals(0, child.getUniqueNumber());
+    assertEquals(1, context.getUniqueNumber());
+  }
+
+  @Test
+  void shouldLookUpParameterPropertiesLazily() {
+    SqlNode sqlNode = mixedContents(new StaticTextSqlNode("SELECT * FROM BLOG"),
+        new IfSqlNode(mixedContents(new StaticTextSqlNode("WHERE ID = #{id}")), "id != null"));
+    DynamicSqlSource source = new DynamicSqlSource(new Configuration(), sqlNode);
+    assertEquals("SELECT * FROM BLOG WHERE ID = ?", source.getBoundSql(new Bean("5")).getSql());
+    assertEquals("SELECT * FROM BLOG", source.getBoundSql(new Bean(null)).getSql());
+    // a parameter with a type handler is returned for any name it has no getter for
+    BoundSql boundSql = source.getBoundSql(7);
+    assertEquals("SELECT * FROM BLOG WHERE ID = ?", boundSql.getSql());
+    assertEquals("id", boundSql.getParameterMappings().get(0).getProperty());
+    assertEquals("SELECT * FROM BLOG", source.getBoundSql(null).getSql());
+    DynamicSqlSource text = new DynamicSqlSource(new Configuration(), mixedContents(new TextSqlNode("SELECT * FROM BLOG WHERE ID = ${id}")));
+    assertEquals("SELECT * FROM BLOG WHERE ID = 7", text.getBoundSql(7).getSql());
+  }
+
+  @Test
+  void shouldSkipPrefixForEmptyTrimBody() {
+    Configuration configuration = new Configuration();
+    DynamicSqlSource nothing = new DynamicSqlSource(configuration, mixedContents(new StaticTextSqlNode("SELECT * FROM BLOG"),
+        new TrimSqlNode(configuration, mixedContents(new IfSqlNode(mixedContents(new StaticTextSqlNode("AND ID = 1")), "false")),
+            "WHERE", "AND |OR ", null, null)));
+    assertEquals("SELECT * FROM BLOG", nothing.getBoundSql(null).getSql());
+    DynamicSqlSource blank = new DynamicSqlSource(configuration, mixedContents(new StaticTextSqlNode("SELECT * FROM BLOG"),
+        new TrimSqlNode(configuration, new StaticTextSqlNode("   \n "), "WHERE", "AND |OR ", null, null)));
+    assertEquals("SELECT * FROM BLOG", blank.getBoundSql(null).getSql());
+  }
+
+  @Test
+  void shouldTrimOverridesWithoutTrailingSpace() {
+    Configuration configuration = new Configuration();
+    DynamicSqlSource where = new DynamicSqlSource(configuration, mixedContents(new StaticTextSqlNode("SELECT * FROM BLOG"),
+        new TrimSqlNode(configuration, new StaticTextSqlNode("and ID = 1"), "WHERE", "AND|OR", null, null)));
+    assertEquals("SELECT * FROM BLOG WHERE  ID = 1", where.getBoundSql(null).getSql());
+    DynamicSqlSource columns = new DynamicSqlSource(configuration, mixedContents(new StaticTextSqlNode("INSERT INTO BLOG"),
+        new TrimSqlNode(configuration, new StaticTextSqlNode("ID, NAME,"), "(", null, ")", ",")));
+    assertEquals("INSERT INTO BLOG ( ID, NAME )", columns.getBoundSql(null).getSql());
+    DynamicSqlSource set = new DynamicSqlSource(configuration, mixedContents(new StaticTextSqlNode("UPDATE BLOG"),
+        new TrimSqlNode(configuration, new StaticTextSqlNode(" NAME = ?,\n"), "SET", null, null, ",")));
+    assertEquals("UPDATE BLOG SET NAME = ?", set.getBoundSql(null).getSql());
+  }
+
+  @Test
+  void shouldRewriteItemAndIndexOfNestedForEach() {
+    Configuration configuration = new Configuration();
+    DynamicSqlSource source = new DynamicSqlSource(configuration, mixedContents(
+        new StaticTextSqlNode("INSERT INTO BLOG (ID, SEQ, ROW) VALUES"),
+        new ForEachSqlNode(configuration, mixedContents(
+            new ForEachSqlNode(configuration, mixedContents(new StaticTextSqlNode("(#{col}, #{j}, #{i})")), "row", "j", "col", null, null, ",")),
+            "rows", "i", "row", null, null, ",")));
+    Map<String, Object> param = new HashMap<>();
+    param.put("rows", Arrays.asList(Arrays.asList(1, 2), Arrays.asList(3)));
+    BoundSql boundSql = source.getBoundSql(param);
+    assertEquals("INSERT INTO BLOG (ID, SEQ, ROW) VALUES   (?, ?, ?) , (?, ?, ?)  , (?, ?, ?)", boundSql.getSql());
+    List<String> properties = new ArrayList<>();
+    boundSql.getParameterMappings().forEach(mapping -> properties.add(mapping.getProperty()));
+    assertEquals(Arrays.asList("__frch_col_1", "__frch_j_1", "__frch_i_0", "__frch_col_2", "__frch_j_2", "__frch_i_0",
+        "__frch_col_4", "__frch_j_4", "__frch_i_3"), properties);
+    assertEquals(3, boundSql.getAdditionalParameter("__frch_col_4"));
+    assertEquals(1, boundSql.getAdditionalParameter("__frch_i_3"));
+  }
+
   private DynamicSqlSource createDynamicSqlSource(SqlNode... contents) throws IOException, SQLException {
     createBlogDataSource();
     final String resource = "org/apache/ibatis/builder/MapperConfig.xml";
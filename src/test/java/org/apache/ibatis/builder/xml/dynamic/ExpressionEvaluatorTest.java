@@ -17,11 +17,15 @@ package org.apache.ibatis.builder.xml.dynamic;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Map;
 
 import org.apache.ibatis.domain.blog.Author;
 import org.apache.ibatis.domain.blog.Section;
+import org.apache.ibatis.scripting.xmltags.DynamicContext;
 import org.apache.ibatis.scripting.xmltags.ExpressionEvaluator;
+import org.apache.ibatis.session.Configuration;
 import org.junit.jupiter.api.Test;
 
 class ExpressionEvaluatorTest {
@@ -85,5 +89,31 @@ class ExpressionEvaluatorTest {
     }
   }
 
+  @Test
+  void shouldEvaluateCommonExpressionsOnBindings() {
+    Map<String, Object> parameterObject = new HashMap<>();
+    parameterObject.put("author", new Author(1, "cbegin", null, "cbegin@apache.org", "N/A", Section.NEWS));
+    parameterObject.put("ids", Arrays.asList(1, 2, 3));
+    parameterObject.put("name", "");
+    Map<String, Object> bindings = new DynamicContext(new Configuration(), parameterObject).getBindings();
+    assertTrue(evaluator.evaluateBoolean("author != null and author.username == 'cbegin'", bindings));
+    assertTrue(evaluator.evaluateBoolean("author.password == null", bindings));
+    assertTrue(evaluator.evaluateBoolean("ids != null && ids.size() gt 2", bindings));
+    assertTrue(evaluator.evaluateBoolean("author.id == 1.0 or missing != null", bindings));
+    assertFalse(evaluator.evaluateBoolean("name != null and name != ''", bindings));
+    assertFalse(evaluator.evaluateBoolean("!(author.favouriteSection == author.favouriteSection)", bindings));
+    assertEquals(Arrays.asList(1, 2, 3), evaluator.evaluateIterable("ids", bindings));
+  }
+
+  @Test
+  void shouldKeepOgnlConversionsForMixedTypes() {
+    Map<String, Object> parameterObject = new HashMap<>();
+    parameterObject.put("status", 0);
+    parameterObject.put("flag", "Y");
+    Map<String, Object> bindings = new DynamicContext(new Configuration(), parameterObject).getBindings();
+    // OGNL converts '' to 0 and 'Y' to a Character
+    assertFalse(evaluator.evaluateBoolean("status != ''", bindings));
+    assertTrue(evaluator.evaluateBoolean("flag == 'Y'.toString()", bindings));
+  }
 
 }
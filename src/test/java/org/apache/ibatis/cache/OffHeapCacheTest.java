@@ -0,0 +1,121 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.ibatis.cache.impl.OffHeapCache;
+import org.apache.ibatis.mapping.CacheBuilder;
+import org.junit.jupiter.api.Test;
+
+class OffHeapCacheTest {
+
+  @Test
+  void shouldReturnCopyOfStoredValue() {
+    OffHeapCache cache = new OffHeapCache("default");
+    List<String> value = new ArrayList<>(Arrays.asList("a", "b"));
+    cache.putObject(1, value);
+    Object cached = cache.getObject(1);
+    assertEquals(value, cached);
+    assertNotSame(value, cached);
+    assertEquals(1, cache.getSize());
+  }
+
+  @Test
+  void shouldStoreValuesSpanningSeveralBlocks() {
+    OffHeapCache cache = new OffHeapCache("default");
+    cache.setBlockSize(16);
+    cache.setCapacity(16 * 1024);
+    StringBuilder value = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      value.append(i);
+    }
+    cache.putObject(1, value.toString());
+    assertEquals(value.toString(), cache.getObject(1));
+  }
+
+  @Test
+  void shouldEvictLeastRecentlyUsedValueWhenFull() {
+    OffHeapCache cache = new OffHeapCache("default");
+    cache.setBlockSize(128);
+    cache.setCapacity(3 * 128);
+    cache.putObject(0, 0);
+    cache.putObject(1, 1);
+    cache.putObject(2, 2);
+    assertEquals(0, cache.getObject(0));
+    cache.putObject(3, 3);
+    assertNull(cache.getObject(1));
+    assertEquals(0, cache.getObject(0));
+    assertEquals(3, cache.getSize());
+    assertEquals(3 * 128, cache.getUsedBytes());
+  }
+
+  @Test
+  void shouldExpireValuesAfterTimeToLive() throws Exception {
+    OffHeapCache cache = new OffHeapCache("default");
+    cache.setTimeToLive(20);
+    cache.putObject(0, 0);
+    assertEquals(0, cache.getObject(0));
+    Thread.sleep(50);
+    assertNull(cache.getObject(0));
+    assertEquals(0, cache.getUsedBytes());
+  }
+
+  @Test
+  void shouldRemoveAndFlushItemsOnDemand() {
+    OffHeapCache cache = new OffHeapCache("default");
+    cache.putObject(0, 0);
+    cache.putObject(1, 1);
+    cache.putObject(0, null);
+    assertNull(cache.getObject(0));
+    cache.removeObject(1);
+    assertNull(cache.getObject(1));
+    cache.putObject(2, 2);
+    cache.clear();
+    assertNull(cache.getObject(2));
+    assertEquals(0, cache.getUsedBytes());
+  }
+
+  @Test
+  void shouldUseConfiguredSerializer() {
+    Properties props = new Properties();
+    props.setProperty("capacity", "4096");
+    props.setProperty("serializer", StringSerializer.class.getName());
+    Cache cache = new CacheBuilder("default").implementation(OffHeapCache.class).properties(props).build();
+    cache.putObject(0, "value");
+    assertEquals("value!", cache.getObject(0));
+  }
+
+  public static class StringSerializer implements CacheSerializer {
+
+    @Override
+    public byte[] serialize(Object value) {
+      return value.toString().getBytes();
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) {
+      return new String(bytes) + "!";
+    }
+
+  }
+
+}
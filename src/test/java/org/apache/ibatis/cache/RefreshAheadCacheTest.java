@@ -0,0 +1,115 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.cache.decorators.RefreshAheadCache;
+import org.apache.ibatis.cache.decorators.TaggedCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.junit.jupiter.api.Test;
+
+class RefreshAheadCacheTest {
+
+  @Test
+  void shouldRefreshHotEntryInBackground() throws Exception {
+    Cache store = new PerpetualCache("default");
+    RefreshAheadCache cache = new RefreshAheadCache(store, store, 60000, 0);
+    cache.putObject("k", "old");
+    assertEquals("old", cache.getObject("k"));
+    assertFalse(cache.claimRefresh("k"));
+    assertEquals("old", cache.getObject("k"));
+    assertTrue(cache.claimRefresh("k"));
+    assertFalse(cache.claimRefresh("k"));
+    CountDownLatch loaded = new CountDownLatch(1);
+    cache.refresh("k", () -> {
+      loaded.countDown();
+      return "new";
+    });
+    assertTrue(loaded.await(5, TimeUnit.SECONDS));
+    for (int i = 0; i < 100 && !"new".equals(store.getObject("k")); i++) {
+      Thread.sleep(10);
+    }
+    assertEquals("new", store.getObject("k"));
+  }
+
+  @Test
+  void shouldNotRefreshBeforeDeadline() {
+    Cache store = new PerpetualCache("default");
+    RefreshAheadCache cache = new RefreshAheadCache(store, store, 60000, 0.5);
+    cache.setRefreshHits(0);
+    cache.putObject("k", "v");
+    assertFalse(cache.claimRefresh("k"));
+  }
+
+  @Test
+  void shouldNotResurrectRemovedEntry() throws Exception {
+    Cache store = new PerpetualCache("default");
+    RefreshAheadCache cache = new RefreshAheadCache(store, store, 60000, 0);
+    cache.setRefreshHits(0);
+    cache.putObject("k", "old");
+    assertTrue(cache.claimRefresh("k"));
+    CountDownLatch removed = new CountDownLatch(1);
+    CountDownLatch done = new CountDownLatch(1);
+    cache.refresh("k", () -> {
+      removed.await();
+      done.countDown();
+      return "new";
+    });
+    store.removeObject("k");
+    removed.countDown();
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    Thread.sleep(50);
+    assertNull(store.getObject("k"));
+  }
+
+  @Test
+  void shouldWriteRefreshedEntryThroughTagIndex() throws Exception {
+    Cache store = new PerpetualCache("default");
+    TaggedCache tagged = new TaggedCache(store);
+    RefreshAheadCache cache = new RefreshAheadCache(tagged, store, 60000, 0);
+    cache.setRefreshHits(0);
+    String[] user = { "user" };
+    cache.putObject("k", "old", user);
+    assertTrue(cache.claimRefresh("k"));
+    CountDownLatch invalidated = new CountDownLatch(1);
+    CountDownLatch done = new CountDownLatch(1);
+    cache.refresh("k", () -> {
+      invalidated.await();
+      done.countDown();
+      return "stale";
+    });
+    cache.invalidate(user);
+    cache.putObject("k", "fresh", user);
+    invalidated.countDown();
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    Thread.sleep(50);
+    assertEquals("fresh", store.getObject("k"));
+
+    assertTrue(cache.claimRefresh("k"));
+    cache.refresh("k", () -> "new");
+    for (int i = 0; i < 100 && !"new".equals(store.getObject("k")); i++) {
+      Thread.sleep(10);
+    }
+    assertEquals("new", store.getObject("k"));
+    cache.invalidate(user);
+    assertNull(store.getObject("k"));
+  }
+
+}
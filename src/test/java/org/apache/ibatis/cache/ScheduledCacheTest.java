@@ -65,4 +65,26 @@ class ScheduledCacheTest {
     assertNull(cache.getObject(4));
   }
 
+  @Test
+  void shouldExpireEachEntryOnItsOwn() throws Exception {
+    ScheduledCache cache = new ScheduledCache(new PerpetualCache("DefaultCache"));
+    cache.setClearInterval(200);
+    cache.setPerEntryTtl(true);
+    cache.setTtlJitter(0);
+    cache.putObject(0, 0);
+    Thread.sleep(120);
+    cache.putObject(1, 1);
+    Thread.sleep(120);
+    assertNull(cache.getObject(0));
+    assertEquals(1, cache.getObject(1));
+    assertEquals(1, cache.removeObject(1));
+  }
+
+  @Test
+  void shouldRejectJitterOutOfRange() {
+    ScheduledCache cache = new ScheduledCache(new PerpetualCache("DefaultCache"));
+    assertThrows(IllegalArgumentException.class, () -> cache.setTtlJitter(1));
+    assertThrows(IllegalArgumentException.class, () -> cache.setRefreshAhead(-0.1));
+  }
+
 }
\ No newline at end of file
@@ -0,0 +1,121 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.cache.decorators.SingleFlightCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class SingleFlightCacheTest {
+
+  private ExecutorService executor;
+
+  @BeforeEach
+  void setUp() {
+    executor = Executors.newSingleThreadExecutor();
+  }
+
+  @AfterEach
+  void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  void shouldShareResultOfFirstLoader() throws Exception {
+    SingleFlightCache cache = new SingleFlightCache(new PerpetualCache("default"));
+    assertNull(cache.getObject(newKey()));
+    Future<Object> follower = executor.submit(() -> cache.getObject(newKey()));
+    Thread.sleep(50);
+    assertFalse(follower.isDone());
+    cache.putObject(newKey(), "value");
+    assertEquals("value", follower.get(5, TimeUnit.SECONDS));
+    assertEquals(0, cache.getInFlightCount());
+  }
+
+  @Test
+  void shouldLetFollowerLoadAfterRollback() throws Exception {
+    SingleFlightCache cache = new SingleFlightCache(new PerpetualCache("default"));
+    Object leaderKey = newKey();
+    assertNull(cache.getObject(leaderKey));
+    Future<Object> follower = executor.submit(() -> {
+      Object followerKey = newKey();
+      Object value = cache.getObject(followerKey);
+      // the follower is now the loader and releases the key
+      cache.removeObject(followerKey);
+      return value;
+    });
+    Thread.sleep(50);
+    assertFalse(follower.isDone());
+    cache.removeObject(leaderKey);
+    assertNull(follower.get(5, TimeUnit.SECONDS));
+    assertEquals(0, cache.getInFlightCount());
+  }
+
+  @Test
+  void shouldLoadConcurrentlyAfterTimeout() throws Exception {
+    SingleFlightCache cache = new SingleFlightCache(new PerpetualCache("default"));
+    cache.setTimeout(50);
+    Object leaderKey = newKey();
+    assertNull(cache.getObject(leaderKey));
+    Object followerKey = newKey();
+    assertNull(executor.submit(() -> cache.getObject(followerKey)).get(5, TimeUnit.SECONDS));
+    // a follower that timed out can not release the loader's key, even on the loader's thread
+    cache.removeObject(followerKey);
+    assertEquals(1, cache.getInFlightCount());
+    cache.putObject(leaderKey, null);
+    assertEquals(0, cache.getInFlightCount());
+  }
+
+  @Test
+  void shouldLetLoaderFinishOnAnotherThread() throws Exception {
+    SingleFlightCache cache = new SingleFlightCache(new PerpetualCache("default"));
+    Object leaderKey = newKey();
+    assertNull(cache.getObject(leaderKey));
+    executor.submit(() -> cache.removeObject(leaderKey)).get(5, TimeUnit.SECONDS);
+    assertEquals(0, cache.getInFlightCount());
+  }
+
+  @Test
+  void shouldNotWaitForItself() {
+    SingleFlightCache cache = new SingleFlightCache(new PerpetualCache("default"));
+    Object leaderKey = newKey();
+    assertNull(cache.getObject(leaderKey));
+    assertNull(cache.getObject(leaderKey));
+    cache.putObject(leaderKey, "value");
+    assertEquals("value", cache.getObject(newKey()));
+  }
+
+  @Test
+  void shouldNotWaitForeverByDefault() {
+    SingleFlightCache cache = new SingleFlightCache(new PerpetualCache("default"));
+    assertTrue(cache.getTimeout() > 0);
+  }
+
+  private static Object newKey() {
+    // every query builds its own cache key instance
+    return new CacheKey(new Object[] {"key"});
+  }
+
+}
@@ -0,0 +1,132 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Properties;
+
+import org.apache.ibatis.cache.decorators.BlockingCache;
+import org.apache.ibatis.cache.decorators.LruCache;
+import org.apache.ibatis.cache.decorators.TaggedCache;
+import org.apache.ibatis.cache.decorators.TransactionalCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.mapping.CacheBuilder;
+import org.junit.jupiter.api.Test;
+
+class TaggedCacheTest {
+
+  private static final String[] USER = { "user" };
+  private static final String[] ORDER = { "order" };
+
+  @Test
+  void shouldInvalidateOnlyMatchingTags() {
+    TaggedCache cache = new TaggedCache(new PerpetualCache("default"));
+    cache.putObject("u", "u", USER);
+    cache.putObject("o", "o", ORDER);
+    cache.putObject("uo", "uo", new String[] { "user", "order" });
+    cache.invalidate(USER);
+    assertNull(cache.getObject("u"));
+    assertNull(cache.getObject("uo"));
+    assertEquals("o", cache.getObject("o"));
+  }
+
+  @Test
+  void shouldAlwaysInvalidateUntaggedEntries() {
+    TaggedCache cache = new TaggedCache(new PerpetualCache("default"));
+    cache.putObject("plain", "plain");
+    cache.putObject("o", "o", ORDER);
+    cache.invalidate(USER);
+    assertNull(cache.getObject("plain"));
+    assertEquals("o", cache.getObject("o"));
+  }
+
+  @Test
+  void shouldRemoveEntriesBelowBlockingCache() {
+    Cache store = new PerpetualCache("default");
+    TaggedCache cache = new TaggedCache(new BlockingCache(store), store);
+    cache.putObject("u", "u", USER);
+    cache.invalidate(USER);
+    assertNull(store.getObject("u"));
+  }
+
+  @Test
+  void shouldClearWhenIndexLimitIsExceeded() {
+    TaggedCache cache = new TaggedCache(new PerpetualCache("default"));
+    cache.setIndexLimit(2);
+    cache.putObject("a", "a", USER);
+    cache.putObject("b", "b", USER);
+    assertEquals(2, cache.getSize());
+    cache.putObject("c", "c", ORDER);
+    assertEquals(0, cache.getSize());
+  }
+
+  @Test
+  void shouldInvalidateTagsOnCommit() {
+    TaggedCache cache = new TaggedCache(new PerpetualCache("default"));
+    cache.putObject("u", "u", USER);
+    cache.putObject("o", "o", ORDER);
+    TransactionalCache tx = new TransactionalCache(cache);
+    tx.invalidate(USER);
+    assertNull(tx.getObject("u"));
+    assertEquals("o", tx.getObject("o"));
+    tx.putObject("u2", "u2", USER);
+    assertEquals("u", cache.getObject("u"));
+    tx.commit();
+    assertNull(cache.getObject("u"));
+    assertEquals("u2", cache.getObject("u2"));
+    assertEquals("o", cache.getObject("o"));
+  }
+
+  @Test
+  void shouldIgnoreInvalidationOnRollback() {
+    TaggedCache cache = new TaggedCache(new PerpetualCache("default"));
+    cache.putObject("u", "u", USER);
+    TransactionalCache tx = new TransactionalCache(cache);
+    tx.invalidate(USER);
+    tx.rollback();
+    assertEquals("u", cache.getObject("u"));
+  }
+
+  @Test
+  void shouldHideEverythingWhenTagsAreNotSupported() {
+    Cache cache = new CacheBuilder("default").readWrite(false).build();
+    cache.putObject("o", "o");
+    TransactionalCache tx = new TransactionalCache(cache);
+    assertFalse(tx.isTagAware());
+    tx.invalidate(ORDER);
+    assertNull(tx.getObject("o"));
+    tx.commit();
+    assertNull(cache.getObject("o"));
+  }
+
+  @Test
+  void shouldPruneEvictedKeysFromIndex() {
+    Properties properties = new Properties();
+    properties.setProperty("indexLimit", "3");
+    TagAwareCache cache = (TagAwareCache) new CacheBuilder("default").addDecorator(LruCache.class).size(2)
+        .readWrite(false).tagInvalidation(true).properties(properties).build();
+    for (int i = 0; i < 10; i++) {
+      cache.putObject(i, i, USER);
+    }
+    // evicted keys left the index, so the limit was never exceeded
+    assertEquals(2, cache.getSize());
+    assertEquals(9, cache.getObject(9));
+    assertTrue(cache.isInvalidatedBy(9, USER));
+    assertFalse(cache.isInvalidatedBy(0, USER));
+  }
+
+}
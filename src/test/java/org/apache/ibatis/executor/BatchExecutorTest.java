@@ -15,15 +15,209 @@
  */
 package org.apache.ibatis.executor;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.apache.ibatis.domain.blog.Author;
+import org.apache.ibatis.domain.blog.Section;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.RowBounds;
 import org.apache.ibatis.transaction.Transaction;
+import org.apache.ibatis.transaction.jdbc.JdbcTransaction;
+import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
 class BatchExecutorTest extends BaseExecutorTest {
 
+  private static DataSource ds;
+
+  @BeforeAll
+  static void setupDataSource() throws Exception {
+    ds = createBlogDataSource();
+  }
+
   @Test
   void dummy() {
   }
 
+  @Test
+  void shouldGroupInterleavedInserts() throws Exception {
+    config.setBatchGroupingEnabled(true);
+    Executor executor = createExecutor(new JdbcTransaction(ds, null, false));
+    try {
+      MappedStatement insert = ExecutorTestHelper.prepareInsertAuthorMappedStatement(config);
+      MappedStatement insertWithAutoKey = ExecutorTestHelper.prepareInsertAuthorMappedStatementWithAutoKey(config);
+      executor.update(insert, new Author(97, "a", "******", "a@apache.org", null, Section.NEWS));
+      executor.update(insertWithAutoKey, new Author(-1, "b", "******", "b@apache.org", null, Section.NEWS));
+      executor.update(insert, new Author(98, "c", "******", "c@apache.org", null, Section.NEWS));
+      executor.update(insertWithAutoKey, new Author(-1, "d", "******", "d@apache.org", null, Section.NEWS));
+      List<BatchResult> results = executor.flushStatements();
+      assertEquals(2, results.size());
+      assertEquals(2, results.get(0).getParameterObjects().size());
+      assertEquals(insert, results.get(0).getMappedStatement());
+      assertEquals(2, results.get(1).getParameterObjects().size());
+    } finally {
+      executor.rollback(true);
+      executor.close(false);
+    }
+  }
+
+  @Test
+  void shouldRunGroupedInsertsInTheOrderTheirStatementsWereOpened() throws Exception {
+    config.setBatchGroupingEnabled(true);
+    Executor executor = createExecutor(new JdbcTransaction(ds, null, false));
+    try {
+      MappedStatement child = ExecutorTestHelper.prepareInsertAuthorMappedStatement(config);
+      MappedStatement parent = ExecutorTestHelper.prepareInsertAuthorMappedStatementWithAutoKey(config);
+      Author b1 = new Author(97, "b1", "******", "b1@apache.org", null, Section.NEWS);
+      Author a2 = new Author(-1, "a2", "******", "a2@apache.org", null, Section.NEWS);
+      Author b2 = new Author(98, "b2", "******", "b2@apache.org", null, Section.NEWS);
+      executor.update(child, b1);
+      executor.update(parent, a2);
+      executor.update(child, b2);
+      List<BatchResult> results = executor.flushStatements();
+      // b2 is sent with b1, before a2: grouping is only dependency safe when parents are opened first
+      assertEquals(2, results.size());
+      assertEquals(Arrays.asList(b1, b2), results.get(0).getParameterObjects());
+      assertEquals(Collections.singletonList(a2), results.get(1).getParameterObjects());
+    } finally {
+      executor.rollback(true);
+      executor.close(false);
+    }
+  }
+
+  @Test
+  void shouldNotMoveInsertsAheadOfUpdate() throws Exception {
+    config.setBatchGroupingEnabled(true);
+    Executor executor = createExecutor(new JdbcTransaction(ds, null, false));
+    try {
+      MappedStatement insert = ExecutorTestHelper.prepareInsertAuthorMappedStatement(config);
+      MappedStatement update = ExecutorTestHelper.prepareUpdateAuthorMappedStatement(config);
+      Author author = new Author(97, "a", "******", "a@apache.org", null, Section.NEWS);
+      executor.update(insert, author);
+      executor.update(update, author);
+      executor.update(insert, new Author(98, "c", "******", "c@apache.org", null, Section.NEWS));
+      List<BatchResult> results = executor.flushStatements();
+      assertEquals(3, results.size());
+    } finally {
+      executor.rollback(true);
+      executor.close(false);
+    }
+  }
+
+  @Test
+  void shouldFlushAutomaticallyWhenBatchIsFull() throws Exception {
+    config.setBatchFlushSize(2);
+    config.setBatchRetainParameters(false);
+    Executor executor = createExecutor(new JdbcTransaction(ds, null, false));
+    try {
+      MappedStatement insert = ExecutorTestHelper.prepareInsertAuthorMappedStatement(config);
+      executor.update(insert, new Author(97, "a", "******", "a@apache.org", null, Section.NEWS));
+      executor.update(insert, new Author(98, "b", "******", "b@apache.org", null, Section.NEWS));
+      executor.update(insert, new Author(99, "c", "******", "c@apache.org", null, Section.NEWS));
+      List<BatchResult> results = executor.flushStatements();
+      assertEquals(2, results.size());
+      assertEquals(2, results.get(0).getUpdateCounts().length);
+      assertTrue(results.get(0).getParameterObjects().isEmpty());
+      assertEquals(1, results.get(1).getUpdateCounts().length);
+      assertEquals(1, results.get(1).getParameterObjects().size());
+    } finally {
+      executor.rollback(true);
+      executor.close(false);
+    }
+  }
+
+  @Test
+  void shouldRetainParametersOfAutomaticFlushesWhenEnabled() throws Exception {
+    config.setBatchFlushSize(2);
+    config.setBatchRetainParameters(true);
+    Executor executor = createExecutor(new JdbcTransaction(ds, null, false));
+    try {
+      MappedStatement insert = ExecutorTestHelper.prepareInsertAuthorMappedStatement(config);
+      Author author = new Author(97, "a", "******", "a@apache.org", null, Section.NEWS);
+      executor.update(insert, author);
+      executor.update(insert, new Author(98, "b", "******", "b@apache.org", null, Section.NEWS));
+      List<BatchResult> results = executor.flushStatements();
+      assertEquals(1, results.size());
+      assertEquals(2, results.get(0).getParameterObjects().size());
+      assertSame(author, results.get(0).getParameterObjects().get(0));
+    } finally {
+      executor.rollback(true);
+      executor.close(false);
+    }
+  }
+
+  @Test
+  void shouldFlushFullBatchesInBackground() throws Exception {
+    config.setBatchFlushSize(2);
+    config.setBatchPipeliningEnabled(true);
+    Executor executor = createExecutor(new JdbcTransaction(ds, null, false));
+    try {
+      MappedStatement insert = ExecutorTestHelper.prepareInsertAuthorMappedStatement(config);
+      for (int id = 95; id < 100; id++) {
+        executor.update(insert, new Author(id, "a" + id, "******", "a@apache.org", null, Section.NEWS));
+      }
+      List<BatchResult> results = executor.flushStatements();
+      assertEquals(3, results.size());
+      assertEquals(2, results.get(0).getUpdateCounts().length);
+      assertEquals(2, results.get(1).getUpdateCounts().length);
+      assertEquals(1, results.get(2).getUpdateCounts().length);
+    } finally {
+      executor.rollback(true);
+      executor.close(false);
+    }
+  }
+
+  @Test
+  void shouldReportPipelinedFailureOnFlush() throws Exception {
+    config.setBatchFlushSize(2);
+    config.setBatchPipeliningEnabled(true);
+    Executor executor = createExecutor(new JdbcTransaction(ds, null, false));
+    try {
+      MappedStatement insert = ExecutorTestHelper.prepareInsertAuthorMappedStatement(config);
+      executor.update(insert, new Author(95, "a", "******", "a@apache.org", null, Section.NEWS));
+      executor.update(insert, new Author(96, "b", "******", "b@apache.org", null, Section.NEWS));
+      // id 101 already exists
+      executor.update(insert, new Author(101, "c", "******", "c@apache.org", null, Section.NEWS));
+      executor.update(insert, new Author(97, "d", "******", "d@apache.org", null, Section.NEWS));
+      executor.update(insert, new Author(98, "e", "******", "e@apache.org", null, Section.NEWS));
+      BatchExecutorException e = assertThrows(BatchExecutorException.class, executor::flushStatements);
+      // the batch flushed in the background before the failing one is reported as successful
+      assertEquals(1, e.getSuccessfulBatchResults().size());
+      assertEquals(2, e.getSuccessfulBatchResults().get(0).getUpdateCounts().length);
+    } finally {
+      executor.rollback(true);
+      executor.close(false);
+    }
+  }
+
+  @Test
+  void shouldFinishPipelinedFlushBeforeRollback() throws Exception {
+    config.setBatchFlushSize(2);
+    config.setBatchPipeliningEnabled(true);
+    Executor executor = createExecutor(new JdbcTransaction(ds, null, false));
+    try {
+      MappedStatement insert = ExecutorTestHelper.prepareInsertAuthorMappedStatement(config);
+      MappedStatement select = ExecutorTestHelper.prepareSelectOneAuthorMappedStatement(config);
+      executor.update(insert, new Author(97, "a", "******", "a@apache.org", null, Section.NEWS));
+      executor.update(insert, new Author(98, "b", "******", "b@apache.org", null, Section.NEWS));
+      executor.rollback(true);
+      assertTrue(executor.flushStatements().isEmpty());
+      assertTrue(executor.query(select, 97, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER).isEmpty());
+    } finally {
+      executor.rollback(true);
+      executor.close(false);
+    }
+  }
+
   @Override
   protected Executor createExecutor(Transaction transaction) {
     return new BatchExecutor(config, transaction);
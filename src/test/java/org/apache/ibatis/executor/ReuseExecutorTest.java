@@ -15,11 +15,32 @@
  */
 package org.apache.ibatis.executor;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Iterator;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.domain.blog.Author;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.reflection.SystemMetaObject;
+import org.apache.ibatis.session.RowBounds;
 import org.apache.ibatis.transaction.Transaction;
+import org.apache.ibatis.transaction.jdbc.JdbcTransaction;
+import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
 class ReuseExecutorTest extends BaseExecutorTest {
 
+  private static DataSource ds;
+
+  @BeforeAll
+  static void setupReuseDataSource() throws Exception {
+    ds = createBlogDataSource();
+  }
+
   @Test
   void dummy() {
   }
@@ -30,6 +51,44 @@ class ReuseExecutorTest extends BaseExecutorTest {
     super.shouldFetchPostWithBlogWithCompositeKey();
   }
 
+  @Test
+  void shouldEvictStatementsBeyondReuseLimit() throws Exception {
+    config.setStatementReuseLimit(1);
+    Executor executor = createExecutor(new JdbcTransaction(ds, null, false));
+    try {
+      MappedStatement selectOne = ExecutorTestHelper.prepareSelectOneAuthorMappedStatement(config);
+      MappedStatement selectAll = ExecutorTestHelper.prepareSelectAllAuthorsAutoMappedStatement(config);
+      executor.query(selectOne, 101, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+      executor.query(selectAll, null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+      assertEquals(1, ((Map<?, ?>) SystemMetaObject.forObject(executor).getValue("statementMap")).size());
+      assertEquals(1, executor.query(selectOne, 101, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER).size());
+      assertEquals(1, ((Map<?, ?>) SystemMetaObject.forObject(executor).getValue("statementMap")).size());
+    } finally {
+      executor.rollback(true);
+      executor.close(false);
+    }
+  }
+
+  @Test
+  void shouldNotCloseEvictedStatementWithOpenCursor() throws Exception {
+    config.setStatementReuseLimit(1);
+    Executor executor = createExecutor(new JdbcTransaction(ds, null, false));
+    try {
+      MappedStatement selectOne = ExecutorTestHelper.prepareSelectOneAuthorMappedStatement(config);
+      MappedStatement selectAll = ExecutorTestHelper.prepareSelectAllAuthorsAutoMappedStatement(config);
+      Cursor<Author> cursor = executor.queryCursor(selectAll, null, RowBounds.DEFAULT);
+      executor.query(selectOne, 101, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+      int count = 0;
+      for (Iterator<Author> it = cursor.iterator(); it.hasNext(); it.next()) {
+        count++;
+      }
+      assertEquals(2, count);
+    } finally {
+      executor.rollback(true);
+      executor.close(false);
+    }
+  }
+
   @Override
   protected Executor createExecutor(Transaction transaction) {
     return new ReuseExecutor(config,transaction);
@@ -0,0 +1,61 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+class RowKeyTest {
+
+  private final RowKey.Buffer buffer = new RowKey.Buffer();
+
+  @Test
+  void shouldBeEqualForSameValuesAndParent() {
+    RowKey parent1 = key("blog", null, null, 1);
+    RowKey parent2 = key("blog", null, null, 1);
+    RowKey key1 = key("post", "P_", parent1, 10, new byte[] { 1, 2 });
+    RowKey key2 = key("post", "P_", parent2, 10, new byte[] { 1, 2 });
+    assertEquals(key1, key2);
+    assertEquals(key1.hashCode(), key2.hashCode());
+  }
+
+  @Test
+  void shouldNotBeEqualForDifferentParentsOrPrefixes() {
+    RowKey parent1 = key("blog", null, null, 1);
+    RowKey parent2 = key("blog", null, null, 2);
+    assertNotEquals(key("post", null, parent1, 10), key("post", null, parent2, 10));
+    assertNotEquals(key("address", "HOME_", parent1, 10), key("address", "WORK_", parent1, 10));
+    assertNotEquals(key("post", null, parent1, 10, null), key("post", null, parent1, null, 10));
+  }
+
+  @Test
+  void shouldReturnNullKeyWithoutValues() {
+    assertSame(RowKey.NULL_ROW_KEY, key("blog", null, null, null, null));
+    // 缓冲区在创建键之后被清空
+    assertEquals(key("blog", null, null, 1), key("blog", null, null, 1));
+  }
+
+  private RowKey key(String resultMapId, String columnPrefix, RowKey parent, Object... values) {
+    for (Object value : values) {
+      buffer.add(value, value != null);
+    }
+    return buffer.build(resultMapId, columnPrefix, parent);
+  }
+
+}
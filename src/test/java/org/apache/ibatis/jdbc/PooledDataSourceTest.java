@@ -24,10 +24,22 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
 
 import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.datasource.pooled.LatencyHistogram;
+import org.apache.ibatis.datasource.pooled.PoolMetricsListener;
+import org.apache.ibatis.datasource.pooled.PoolState;
+import org.apache.ibatis.datasource.pooled.PoolType;
 import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.datasource.pooled.PooledDataSourceFactory;
+import org.apache.ibatis.reflection.SystemMetaObject;
 import org.hsqldb.jdbc.JDBCConnection;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
@@ -75,6 +87,343 @@ class PooledDataSourceTest extends BaseDataTest {
     }
   }
 
+  @Test
+  void shouldReadPoolSizesWithoutTheCheckoutLock() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      ds.setPoolMaximumIdleConnections(2);
+      Connection active = ds.getConnection();
+      ds.getConnection().close();
+      ReentrantLock lock = (ReentrantLock) SystemMetaObject.forObject(ds).getValue("lock");
+      lock.lock();
+      try {
+        Future<String> sizes = executor.submit(() -> ds.getPoolState().getActiveConnectionCount() + "/"
+            + ds.getPoolState().getIdleConnectionCount() + "/" + ds.getPoolState().toString().isEmpty());
+        assertEquals("1/1/false", sizes.get(5, TimeUnit.SECONDS));
+      } finally {
+        lock.unlock();
+      }
+      active.close();
+      assertEquals(0, ds.getPoolState().getActiveConnectionCount());
+      assertEquals(2, ds.getPoolState().getIdleConnectionCount());
+    } finally {
+      executor.shutdownNow();
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldProperlyMaintainConcurrentPoolOf3ActiveAnd2IdleConnections() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolType(PoolType.CONCURRENT);
+      runScript(ds, JPETSTORE_DDL);
+      ds.setDefaultAutoCommit(false);
+      ds.setPoolMaximumActiveConnections(3);
+      ds.setPoolMaximumIdleConnections(2);
+      ds.setPoolPingConnectionsNotUsedFor(1);
+      ds.setPoolPingEnabled(true);
+      ds.setPoolPingQuery("SELECT * FROM PRODUCT");
+      List<Connection> connections = new ArrayList<>();
+      for (int i = 0; i < 3; i++) {
+        connections.add(ds.getConnection());
+      }
+      assertEquals(3, ds.getPoolState().getActiveConnectionCount());
+      for (Connection c : connections) {
+        c.close();
+      }
+      assertEquals(0, ds.getPoolState().getActiveConnectionCount());
+      assertEquals(2, ds.getPoolState().getIdleConnectionCount());
+      assertEquals(4, ds.getPoolState().getRequestCount());
+      assertEquals(0, ds.getPoolState().getBadConnectionCount());
+      assertEquals(0, ds.getPoolState().getHadToWaitCount());
+      assertNotNull(ds.getPoolState().toString());
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldInvalidateReturnedConnectionInConcurrentPool() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolType(PoolType.CONCURRENT);
+      Connection c1 = ds.getConnection();
+      Connection real = PooledDataSource.unwrapConnection(c1);
+      c1.close();
+      assertThrows(SQLException.class, c1::createStatement);
+      // the idle connection is reused through a new proxy
+      Connection c2 = ds.getConnection();
+      assertSame(real, PooledDataSource.unwrapConnection(c2));
+      c2.close();
+      // closing the stale proxy again is counted as a bad connection
+      c1.close();
+      assertEquals(1, ds.getPoolState().getBadConnectionCount());
+      assertEquals(1, ds.getPoolState().getIdleConnectionCount());
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldClaimOverdueConnectionInConcurrentPool() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolType(PoolType.CONCURRENT);
+      ds.setPoolMaximumActiveConnections(1);
+      ds.setPoolMaximumCheckoutTime(10);
+      Connection leaked = ds.getConnection();
+      Thread.sleep(20);
+      Connection c = ds.getConnection();
+      assertSame(PooledDataSource.unwrapConnection(leaked), PooledDataSource.unwrapConnection(c));
+      assertThrows(SQLException.class, leaked::createStatement);
+      assertEquals(1, ds.getPoolState().getClaimedOverdueConnectionCount());
+      c.close();
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldHandOffConnectionsToWaitingThreadsInConcurrentPool() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolType(PoolType.CONCURRENT);
+      ds.setPoolMaximumActiveConnections(2);
+      ds.setPoolMaximumIdleConnections(2);
+      ds.setPoolTimeToWait(100);
+      int threads = 8;
+      int iterations = 50;
+      ExecutorService executor = Executors.newFixedThreadPool(threads);
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+        futures.add(executor.submit(() -> {
+          for (int j = 0; j < iterations; j++) {
+            try (Connection c = ds.getConnection()) {
+              assertTrue(ds.getPoolState().getActiveConnectionCount() <= 2);
+              exexuteQuery(c, "select 1 from INFORMATION_SCHEMA.SYSTEM_USERS");
+            }
+          }
+          return null;
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get(30, TimeUnit.SECONDS);
+      }
+      executor.shutdown();
+      assertEquals(threads * iterations, ds.getPoolState().getRequestCount());
+      assertEquals(0, ds.getPoolState().getActiveConnectionCount());
+      assertEquals(2, ds.getPoolState().getIdleConnectionCount());
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldRecordPoolMetrics() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      AtomicInteger requested = new AtomicInteger();
+      AtomicInteger returned = new AtomicInteger();
+      ds.setPoolMetricsListener(new PoolMetricsListener() {
+        @Override
+        public void onConnectionRequested(long requestTime) {
+          requested.incrementAndGet();
+        }
+
+        @Override
+        public void onConnectionReturned(long checkoutTime) {
+          returned.incrementAndGet();
+        }
+      });
+      for (int i = 0; i < 3; i++) {
+        ds.getConnection().close();
+      }
+      assertEquals(3, requested.get());
+      assertEquals(3, returned.get());
+      PoolState state = ds.getPoolState();
+      assertEquals(3, state.getRequestTimeHistogram().getCount());
+      assertEquals(3, state.getCheckoutTimeHistogram().getCount());
+      assertEquals(0, state.getWaitTimeHistogram().getCount());
+      assertEquals(0.0, state.getBadConnectionRate());
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldComputeHistogramPercentiles() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 1; i <= 100; i++) {
+      histogram.record(i);
+    }
+    assertEquals(100, histogram.getCount());
+    assertEquals(50, histogram.getMean());
+    assertEquals(100, histogram.getMax());
+    assertEquals(63, histogram.getPercentile(50));
+    assertEquals(100, histogram.getPercentile(99));
+  }
+
+  @Test
+  void shouldPreWarmMinimumIdleConnections() throws Exception {
+    for (PoolType poolType : PoolType.values()) {
+      shouldPreWarmMinimumIdleConnections(poolType);
+    }
+  }
+
+  private void shouldPreWarmMinimumIdleConnections(PoolType poolType) throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolType(poolType);
+      ds.setPoolMinimumIdleConnections(3);
+      ds.setPoolHousekeepingInterval(50);
+      ds.startHousekeeping();
+      waitUntil(() -> ds.getPoolState().getIdleConnectionCount() == 3);
+      Connection c = ds.getConnection();
+      assertEquals(0, ds.getPoolState().getHadToWaitCount());
+      c.close();
+    } finally {
+      ds.stopHousekeeping();
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldKeepHousekeepingStoppedAcrossCheckouts() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolMinimumIdleConnections(1);
+      ds.getConnection().close();
+      assertNotNull(SystemMetaObject.forObject(ds).getValue("housekeeper"));
+      ds.stopHousekeeping();
+      ds.getConnection().close();
+      assertNull(SystemMetaObject.forObject(ds).getValue("housekeeper"));
+      ds.startHousekeeping();
+      assertNotNull(SystemMetaObject.forObject(ds).getValue("housekeeper"));
+    } finally {
+      ds.stopHousekeeping();
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldRetireIdleAndExpiredConnections() throws Exception {
+    for (PoolType poolType : PoolType.values()) {
+      shouldRetireIdleAndExpiredConnections(poolType);
+    }
+  }
+
+  private void shouldRetireIdleAndExpiredConnections(PoolType poolType) throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolType(poolType);
+      ds.setPoolMaximumIdleConnections(3);
+      ds.setPoolMaximumIdleTime(50);
+      ds.setPoolHousekeepingInterval(20);
+      List<Connection> connections = new ArrayList<>();
+      for (int i = 0; i < 3; i++) {
+        connections.add(ds.getConnection());
+      }
+      for (Connection c : connections) {
+        c.close();
+      }
+      assertEquals(3, ds.getPoolState().getIdleConnectionCount());
+      waitUntil(() -> ds.getPoolState().getIdleConnectionCount() == 0);
+
+      ds.setPoolMaximumIdleTime(0);
+      ds.setPoolMaximumConnectionLifetime(10);
+      Connection c = ds.getConnection();
+      Thread.sleep(20);
+      c.close();
+      // an expired connection is closed instead of being returned to the pool
+      assertEquals(0, ds.getPoolState().getIdleConnectionCount());
+    } finally {
+      ds.stopHousekeeping();
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldPingIdleConnectionsInBackground() throws Exception {
+    for (PoolType poolType : PoolType.values()) {
+      shouldPingIdleConnectionsInBackground(poolType);
+    }
+  }
+
+  private void shouldPingIdleConnectionsInBackground(PoolType poolType) throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolType(poolType);
+      ds.setPoolPingEnabled(true);
+      ds.setPoolPingQuery("select 1 from INFORMATION_SCHEMA.SYSTEM_USERS");
+      ds.setPoolPingConnectionsNotUsedFor(0);
+      ds.setPoolPingInBackground(true);
+      ds.setPoolHousekeepingInterval(20);
+      Connection c = ds.getConnection();
+      Connection real = PooledDataSource.unwrapConnection(c);
+      c.close();
+      // simulate a connection killed by the server while idle
+      real.close();
+      waitUntil(() -> ds.getPoolState().getBadConnectionCount() == 1);
+      assertEquals(0, ds.getPoolState().getIdleConnectionCount());
+    } finally {
+      ds.stopHousekeeping();
+      ds.forceCloseAll();
+    }
+  }
+
+  private void waitUntil(BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (!condition.getAsBoolean()) {
+      assertTrue(System.currentTimeMillis() < deadline, "Timed out waiting for the housekeeping thread");
+      Thread.sleep(10);
+    }
+  }
+
+  @Test
+  void shouldReusePreparedStatementsAcrossCheckouts() throws Exception {
+    for (PoolType poolType : PoolType.values()) {
+      shouldReusePreparedStatementsAcrossCheckouts(poolType);
+    }
+  }
+
+  private void shouldReusePreparedStatementsAcrossCheckouts(PoolType poolType) throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolType(poolType);
+      ds.setPoolMaximumActiveConnections(1);
+      ds.setPoolMaximumCachedStatements(1);
+      String sql = "SELECT COUNT(*) FROM INFORMATION_SCHEMA.SYSTEM_USERS";
+      for (int i = 0; i < 3; i++) {
+        try (Connection c = ds.getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
+          ps.setMaxRows(1);
+          try (ResultSet rs = ps.executeQuery()) {
+            assertTrue(rs.next());
+          }
+        }
+      }
+      assertEquals(1, ds.getPoolState().getStatementCacheMissCount());
+      assertEquals(2, ds.getPoolState().getStatementCacheHitCount());
+      try (Connection c = ds.getConnection()) {
+        c.prepareStatement("SELECT 1 FROM INFORMATION_SCHEMA.SYSTEM_USERS").close();
+        assertTrue(PooledDataSource.unwrapConnection(c) instanceof JDBCConnection);
+      }
+      assertEquals(2, ds.getPoolState().getStatementCacheMissCount());
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  void shouldSelectPoolTypeFromFactoryProperties() {
+    PooledDataSourceFactory factory = new PooledDataSourceFactory();
+    Properties props = new Properties();
+    props.setProperty("poolType", "concurrent");
+    factory.setProperties(props);
+    assertEquals(PoolType.CONCURRENT, ((PooledDataSource) factory.getDataSource()).getPoolType());
+  }
+
   @Test
   void shouldNotFailCallingToStringOverAnInvalidConnection() throws Exception {
     PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
@@ -137,7 +486,11 @@ class PooledDataSourceTest extends BaseDataTest {
   }
 
   private void exexuteQuery(Connection con) throws SQLException {
-    try (PreparedStatement st = con.prepareStatement("select 1");
+    exexuteQuery(con, "select 1");
+  }
+
+  private void exexuteQuery(Connection con, String sql) throws SQLException {
+    try (PreparedStatement st = con.prepareStatement(sql);
          ResultSet rs = st.executeQuery()) {
       while (rs.next()) {
         assertEquals(1, rs.getInt(1));
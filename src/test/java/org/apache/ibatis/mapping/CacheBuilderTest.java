@@ -18,6 +18,13 @@ package org.apache.ibatis.mapping;
 import org.apache.ibatis.builder.InitializingObject;
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CacheStats;
+import org.apache.ibatis.cache.decorators.ClockCache;
+import org.apache.ibatis.cache.decorators.LoggingCache;
+import org.apache.ibatis.cache.decorators.LruCache;
+import org.apache.ibatis.cache.decorators.MetricsCache;
+import org.apache.ibatis.cache.decorators.SynchronizedCache;
+import org.apache.ibatis.cache.impl.ConcurrentPerpetualCache;
 import org.apache.ibatis.cache.impl.PerpetualCache;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -43,6 +50,61 @@ class CacheBuilderTest {
       .hasMessage("Failed cache initialization for 'test' on 'org.apache.ibatis.mapping.CacheBuilderTest$InitializingFailureCache'");
   }
 
+  @Test
+  void testSynchronizedByDefault() {
+    Cache cache = new CacheBuilder("test").addDecorator(LruCache.class).build();
+    Assertions.assertThat(cache).isInstanceOf(MetricsCache.class);
+    Assertions.assertThat((Object) unwrap(cache)).isInstanceOf(SynchronizedCache.class);
+  }
+
+  @Test
+  void testConcurrentEvictionSkipsSynchronizedCache() {
+    Cache cache = new CacheBuilder("test").implementation(PerpetualCache.class).addDecorator(ClockCache.class).size(10).build();
+    Cache loggingCache = unwrap(cache);
+    Assertions.assertThat(loggingCache).isInstanceOf(LoggingCache.class);
+    ClockCache clockCache = unwrap(loggingCache);
+    Cache evictionCounter = unwrap(clockCache);
+    Assertions.assertThat((Object) unwrap(evictionCounter)).isInstanceOf(ConcurrentPerpetualCache.class);
+  }
+
+  @Test
+  void testMetrics() {
+    MetricsCache cache = (MetricsCache) new CacheBuilder("test").addDecorator(LruCache.class).size(2).readWrite(false).build();
+    cache.getObject("a");
+    cache.putObject("a", "A");
+    cache.putObject("b", "B");
+    cache.putObject("c", "C");
+    cache.getObject("c");
+    cache.recordLoad(100);
+    CacheStats stats = cache.getStats();
+    Assertions.assertThat(stats.getId()).isEqualTo("test");
+    Assertions.assertThat(stats.getHitCount()).isEqualTo(1);
+    Assertions.assertThat(stats.getMissCount()).isEqualTo(1);
+    Assertions.assertThat(stats.getPutCount()).isEqualTo(3);
+    Assertions.assertThat(stats.getEvictionCount()).isEqualTo(1);
+    Assertions.assertThat(stats.getLoadCount()).isEqualTo(1);
+    Assertions.assertThat(stats.getTotalLoadTime()).isEqualTo(100);
+    Assertions.assertThat(stats.getSize()).isEqualTo(2);
+  }
+
+  @Test
+  void testExplicitRemovalIsNotCountedAsEviction() {
+    MetricsCache cache = (MetricsCache) new CacheBuilder("test").addDecorator(LruCache.class).size(2).readWrite(false).build();
+    cache.putObject("a", "A");
+    cache.putObject("b", "B");
+    cache.removeObject("a");
+    Assertions.assertThat(cache.getStats().getEvictionCount()).isEqualTo(0);
+    cache.putObject("c", "C");
+    cache.putObject("d", "D");
+    Assertions.assertThat(cache.getStats().getEvictionCount()).isEqualTo(1);
+  }
+
+  @Test
+  void testCustomCacheIsNotDecoratedWithMetrics() {
+    Cache cache = new CacheBuilder("test").implementation(InitializingCache.class).build();
+    Assertions.assertThat(cache).isInstanceOf(LoggingCache.class);
+  }
+
   @SuppressWarnings("unchecked")
   private <T> T unwrap(Cache cache) {
     Field field;
@@ -0,0 +1,120 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.scripting.xmltags;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.reflection.DefaultReflectorFactory;
+import org.apache.ibatis.reflection.Reflector;
+import org.apache.ibatis.session.Configuration;
+import org.junit.jupiter.api.Test;
+
+class CompiledExpressionTest {
+
+  @Test
+  void shouldCompileCommonExpressions() {
+    assertTrue(CompiledExpression.compile("author != null and author.username == 'cbegin'").isSupported());
+    assertTrue(CompiledExpression.compile("ids != null && ids.size() gt 2").isSupported());
+    assertTrue(CompiledExpression.compile("!(status == 1.5) or name != ''").isSupported());
+    assertFalse(CompiledExpression.compile("flag == 'Y'").isSupported());
+    assertFalse(CompiledExpression.compile("ids.{id}").isSupported());
+    assertFalse(CompiledExpression.compile("name.length() > 0").isSupported());
+  }
+
+  @Test
+  void shouldEvaluateWithoutOgnl() {
+    Bean bean = new Bean();
+    Map<String, Object> bindings = bindings(new Configuration(), bean);
+    assertEquals(Boolean.TRUE, evaluate("bean != null and bean.id gte 5 and bean.name == 'abc'", bindings));
+    assertEquals(Boolean.TRUE, evaluate("bean.ids.size() == 2 && missing == null", bindings));
+    assertEquals(Arrays.asList(1, 2), evaluate("bean.ids", bindings));
+    assertEquals(4, bean.calls);
+  }
+
+  @Test
+  void shouldReadEachPropertyOnceWhenApplyingOgnlRules() {
+    Bean bean = new Bean();
+    Map<String, Object> bindings = bindings(new Configuration(), bean);
+    assertEquals(Boolean.TRUE, OgnlCache.getValue("bean.id == '5.0'", bindings));
+    assertEquals(Boolean.TRUE, OgnlCache.getValue("bean.id lt '10'", bindings));
+    bean.calls = 0;
+    // OGNL compares a number with a string by conversion, the getter is not called again for it
+    assertEquals(Boolean.TRUE, evaluate("bean.id == '5.0'", bindings));
+    assertEquals(Boolean.TRUE, evaluate("bean.id lt '10'", bindings));
+    // OGNL returns the last evaluated operand of and
+    assertEquals(Arrays.asList(1, 2), evaluate("bean.id and bean.ids", bindings));
+    assertEquals(4, bean.calls);
+    // a string that is not a number fails the conversion, as it does in OGNL
+    assertThrows(NumberFormatException.class, () -> OgnlCache.getValue("bean.id == 'abc'", bindings));
+    assertThrows(NumberFormatException.class, () -> evaluate("bean.id == 'abc'", bindings));
+  }
+
+  @Test
+  void shouldUseReflectorFactoryOfConfiguration() {
+    List<Class<?>> types = new ArrayList<>();
+    Configuration configuration = new Configuration();
+    configuration.setReflectorFactory(new DefaultReflectorFactory() {
+      @Override
+      public Reflector findForClass(Class<?> type) {
+        types.add(type);
+        return super.findForClass(type);
+      }
+    });
+    assertEquals(Boolean.TRUE, evaluate("bean.id == 5", bindings(configuration, new Bean())));
+    assertTrue(types.contains(Bean.class));
+  }
+
+  private Object evaluate(String expression, Map<String, Object> bindings) {
+    CompiledExpression compiled = CompiledExpression.compile(expression);
+    assertTrue(compiled.isSupported(), expression);
+    return compiled.getValue((DynamicContext.ContextMap) bindings);
+  }
+
+  private Map<String, Object> bindings(Configuration configuration, Bean bean) {
+    Map<String, Object> parameterObject = new HashMap<>();
+    parameterObject.put("bean", bean);
+    return new DynamicContext(configuration, parameterObject).getBindings();
+  }
+
+  public static class Bean {
+    private int calls;
+
+    public Integer getId() {
+      calls++;
+      return 5;
+    }
+
+    public String getName() {
+      calls++;
+      return "abc";
+    }
+
+    public List<Integer> getIds() {
+      calls++;
+      return Arrays.asList(1, 2);
+    }
+  }
+
+}
@@ -28,6 +28,8 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 import javassist.util.proxy.Proxy;
 
@@ -46,6 +48,7 @@ import org.apache.ibatis.domain.blog.mappers.AuthorMapper;
 import org.apache.ibatis.domain.blog.mappers.AuthorMapperWithMultipleHandlers;
 import org.apache.ibatis.domain.blog.mappers.AuthorMapperWithRowBounds;
 import org.apache.ibatis.domain.blog.mappers.BlogMapper;
+import org.apache.ibatis.exceptions.PersistenceException;
 import org.apache.ibatis.exceptions.TooManyResultsException;
 import org.apache.ibatis.executor.result.DefaultResultHandler;
 import org.apache.ibatis.io.Resources;
@@ -159,6 +162,37 @@ class SqlSessionTest extends BaseDataTest {
     }
   }
 
+  @Test
+  void shouldSelectAllAuthorsAsynchronously() throws Exception {
+    try (SqlSession session = sqlMapper.openSession()) {
+      CompletableFuture<List<Author>> first = session.selectListAsync("org.apache.ibatis.domain.blog.mappers.AuthorMapper.selectAllAuthors");
+      CompletableFuture<List<Author>> second = session.selectListAsync("org.apache.ibatis.domain.blog.mappers.AuthorMapper.selectAuthor", 101);
+      assertEquals(2, first.get().size());
+      assertEquals(1, second.get().size());
+    }
+  }
+
+  @Test
+  void shouldSeeUncommittedChangesInAsynchronousSelect() throws Exception {
+    try (SqlSession session = sqlMapper.openSession()) {
+      session.insert("org.apache.ibatis.domain.blog.mappers.AuthorMapper.insertAuthor",
+          new Author(500, "cbegin", "******", "cbegin@somewhere.com", "Something...", null));
+      CompletableFuture<List<Author>> authors = session.selectListAsync("org.apache.ibatis.domain.blog.mappers.AuthorMapper.selectAllAuthors");
+      assertTrue(authors.isDone());
+      assertEquals(3, authors.get().size());
+      session.rollback(true);
+    }
+  }
+
+  @Test
+  void shouldCompleteAsynchronousSelectExceptionally() {
+    try (SqlSession session = sqlMapper.openSession()) {
+      CompletableFuture<List<Author>> authors = session.selectListAsync("org.apache.ibatis.domain.blog.mappers.AuthorMapper.noSuchStatement");
+      ExecutionException e = Assertions.assertThrows(ExecutionException.class, authors::get);
+      assertTrue(e.getCause() instanceof PersistenceException);
+    }
+  }
+
   @Test
   void shouldFailWithTooManyResultsException() {
     try (SqlSession session = sqlMapper.openSession(TransactionIsolationLevel.SERIALIZABLE)) {
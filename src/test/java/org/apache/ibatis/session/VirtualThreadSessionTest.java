@@ -0,0 +1,198 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.session;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.decorators.SoftCache;
+import org.apache.ibatis.cache.decorators.SynchronizedCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.datasource.pooled.PoolType;
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.domain.blog.Author;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Runs sessions on virtual threads that contend for a pool of two connections and checks with JFR that
+ * MyBatis code never pins a carrier thread. Skipped before Java 21.
+ */
+class VirtualThreadSessionTest extends BaseDataTest {
+
+  private static final int TASKS = 200;
+
+  private static SqlSessionFactory sqlMapper;
+  private static PooledDataSource dataSource;
+
+  @BeforeAll
+  static void setup() throws Exception {
+    createBlogDataSource();
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/builder/MapperConfig.xml")) {
+      sqlMapper = new SqlSessionFactoryBuilder().build(reader);
+    }
+    dataSource = createPooledDataSource(BLOG_PROPERTIES);
+    dataSource.setPoolMaximumActiveConnections(2);
+    dataSource.setPoolMaximumIdleConnections(2);
+    dataSource.setPoolTimeToWait(100);
+    // 第一次借出连接时由虚拟线程启动后台维护线程
+    dataSource.setPoolMaximumIdleTime(60000);
+    sqlMapper.getConfiguration().setEnvironment(new Environment("virtual-threads", new JdbcTransactionFactory(), dataSource));
+  }
+
+  @AfterAll
+  static void tearDown() {
+    dataSource.stopHousekeeping();
+    dataSource.forceCloseAll();
+  }
+
+  @Test
+  void shouldShareSmallPoolAmongVirtualThreads() throws Exception {
+    for (PoolType poolType : PoolType.values()) {
+      dataSource.setPoolType(poolType);
+      runOnVirtualThreads(() -> {
+        try (SqlSession session = sqlMapper.openSession()) {
+          List<Author> authors = session.selectList("org.apache.ibatis.domain.blog.mappers.AuthorMapper.selectAllAuthors");
+          assertEquals(2, authors.size());
+        }
+        return null;
+      });
+      assertEquals(0, dataSource.getPoolState().getActiveConnectionCount(), poolType.name());
+      assertTrue(dataSource.getPoolState().getIdleConnectionCount() <= 2, poolType.name());
+    }
+  }
+
+  @Test
+  void shouldShareSecondLevelCacheAmongVirtualThreads() throws Exception {
+    runOnVirtualThreads(() -> {
+      try (SqlSession session = sqlMapper.openSession()) {
+        List<Author> authors = session.selectList("org.apache.ibatis.builder.CachedAuthorMapper.selectAllAuthors");
+        assertEquals(2, authors.size());
+      }
+      return null;
+    });
+    assertEquals(1, sqlMapper.getConfiguration().getCache("org.apache.ibatis.builder.CachedAuthorMapper").getSize());
+  }
+
+  @Test
+  void shouldShareSoftCacheAmongVirtualThreads() throws Exception {
+    Cache cache = new SynchronizedCache(new SoftCache(new PerpetualCache("soft")));
+    runOnVirtualThreads(() -> {
+      for (int i = 0; i < 10; i++) {
+        cache.putObject(i, i);
+        cache.getObject(i);
+      }
+      return null;
+    });
+    assertEquals(10, cache.getSize());
+  }
+
+  private void runOnVirtualThreads(Callable<Void> task) throws Exception {
+    ExecutorService executor = newVirtualThreadPerTaskExecutor();
+    assumeTrue(executor != null, "virtual threads require Java 21");
+    Object recording = startPinnedRecording();
+    try {
+      List<Future<Void>> futures = new ArrayList<>();
+      for (int i = 0; i < TASKS; i++) {
+        futures.add(executor.submit(task));
+      }
+      for (Future<Void> future : futures) {
+        future.get(30, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdown();
+    }
+    List<String> pinned = stopPinnedRecording(recording);
+    assertTrue(pinned.isEmpty(), "virtual threads pinned by MyBatis: " + pinned);
+  }
+
+  // JFR 通过反射访问，测试代码仍可以在 Java 8 上编译
+
+  private static Object startPinnedRecording() throws Exception {
+    Class<?> recordingType = Class.forName("jdk.jfr.Recording");
+    Object recording = recordingType.getConstructor().newInstance();
+    Object settings = recordingType.getMethod("enable", String.class).invoke(recording, "jdk.VirtualThreadPinned");
+    Class.forName("jdk.jfr.EventSettings").getMethod("withThreshold", Duration.class).invoke(settings, Duration.ZERO);
+    recordingType.getMethod("start").invoke(recording);
+    return recording;
+  }
+
+  /**
+   * @return the stack traces of the pinning events whose first frame outside the JDK belongs to MyBatis
+   */
+  private static List<String> stopPinnedRecording(Object recording) throws Exception {
+    Class<?> recordingType = Class.forName("jdk.jfr.Recording");
+    Path file = Files.createTempFile("virtual-thread-pinned", ".jfr");
+    try {
+      recordingType.getMethod("stop").invoke(recording);
+      recordingType.getMethod("dump", Path.class).invoke(recording, file);
+      List<?> events = (List<?>) Class.forName("jdk.jfr.consumer.RecordingFile")
+          .getMethod("readAllEvents", Path.class).invoke(null, file);
+      List<String> pinned = new ArrayList<>();
+      for (Object event : events) {
+        Object stackTrace = Class.forName("jdk.jfr.consumer.RecordedEvent").getMethod("getStackTrace").invoke(event);
+        if (stackTrace != null && firstFrameOutsideJdk(stackTrace).startsWith("org.apache.ibatis.")) {
+          pinned.add(String.valueOf(stackTrace));
+        }
+      }
+      return pinned;
+    } finally {
+      recordingType.getMethod("close").invoke(recording);
+      Files.delete(file);
+    }
+  }
+
+  private static String firstFrameOutsideJdk(Object stackTrace) throws Exception {
+    List<?> frames = (List<?>) Class.forName("jdk.jfr.consumer.RecordedStackTrace").getMethod("getFrames").invoke(stackTrace);
+    for (Object frame : frames) {
+      Object method = Class.forName("jdk.jfr.consumer.RecordedFrame").getMethod("getMethod").invoke(frame);
+      Object type = Class.forName("jdk.jfr.consumer.RecordedMethod").getMethod("getType").invoke(method);
+      String className = (String) Class.forName("jdk.jfr.consumer.RecordedClass").getMethod("getName").invoke(type);
+      if (!className.startsWith("java.") && !className.startsWith("jdk.") && !className.startsWith("sun.")) {
+        return className;
+      }
+    }
+    return "";
+  }
+
+  private static ExecutorService newVirtualThreadPerTaskExecutor() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      return null;
+    }
+  }
+
+}
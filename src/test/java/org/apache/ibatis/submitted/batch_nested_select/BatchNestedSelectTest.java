@@ -0,0 +1,170 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.batch_nested_select;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.Reader;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class BatchNestedSelectTest {
+
+  private static SqlSessionFactory sqlSessionFactory;
+  private static final List<String> executedSql = new ArrayList<>();
+
+  @BeforeAll
+  static void setUp() throws Exception {
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/batch_nested_select/mybatis-config.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+    sqlSessionFactory.getConfiguration().addInterceptor(new SqlRecorder());
+
+    BaseDataTest.runScript(sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(),
+        "org/apache/ibatis/submitted/batch_nested_select/CreateDB.sql");
+  }
+
+  @BeforeEach
+  void clearExecutedSql() {
+    executedSql.clear();
+  }
+
+  @Test
+  void shouldLoadAssociationsInBatches() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<Employee> employees = sqlSession.getMapper(Mapper.class).getEmployees();
+      assertEquals(5, employees.size());
+      assertEquals("Sales", employees.get(0).getDepartment().getName());
+      assertEquals("Sales", employees.get(1).getDepartment().getName());
+      assertEquals("Support", employees.get(2).getDepartment().getName());
+      assertEquals("Research", employees.get(3).getDepartment().getName());
+      assertNull(employees.get(4).getDepartment());
+      // 4 employees with a department, batchSize is 2
+      assertEquals(2, countQueries("from department"));
+    }
+  }
+
+  @Test
+  void shouldLoadAssociationsOfCursorRowsWithKeyLists() throws Exception {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<Employee> employees = new ArrayList<>();
+      try (Cursor<Employee> cursor = sqlSession.getMapper(Mapper.class).getEmployeesCursor()) {
+        cursor.forEach(employees::add);
+      }
+      assertEquals(5, employees.size());
+      assertEquals("Sales", employees.get(0).getDepartment().getName());
+      assertEquals("Support", employees.get(2).getDepartment().getName());
+      assertEquals("Research", employees.get(3).getDepartment().getName());
+      assertNull(employees.get(4).getDepartment());
+      // one query per department, the second employee of Sales is served by the local cache
+      assertEquals(3, countQueries("from department"));
+    }
+  }
+
+  @Test
+  void shouldLoadAssociationsOfHandledRowsWithKeyLists() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<String> departments = new ArrayList<>();
+      sqlSession.select("org.apache.ibatis.submitted.batch_nested_select.Mapper.getEmployees", context -> {
+        Department department = ((Employee) context.getResultObject()).getDepartment();
+        departments.add(department == null ? null : department.getName());
+      });
+      assertEquals(Arrays.asList("Sales", "Sales", "Support", "Research", null), departments);
+      // rows are visible to the handler at once, so departments are not batched across rows
+      assertEquals(3, countQueries("from department"));
+    }
+  }
+
+  @Test
+  void shouldLoadLazyAssociationsOfSiblingsInBatches() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<Employee> employees = sqlSession.getMapper(Mapper.class).getEmployeesLazily();
+      assertEquals(5, employees.size());
+      assertEquals(0, countQueries("from department"));
+      assertEquals("Support", employees.get(2).getDepartment().getName());
+      assertEquals(1, countQueries("from department"));
+      // the first 3 employees share a batch
+      assertEquals("Sales", employees.get(0).getDepartment().getName());
+      assertEquals("Sales", employees.get(1).getDepartment().getName());
+      assertEquals(1, countQueries("from department"));
+      assertEquals("Research", employees.get(3).getDepartment().getName());
+      assertNull(employees.get(4).getDepartment());
+      assertEquals(2, countQueries("from department"));
+    }
+  }
+
+  @Test
+  void shouldLoadCollectionsInOneQuery() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<Department> departments = sqlSession.getMapper(Mapper.class).getDepartments();
+      assertEquals(4, departments.size());
+      assertEquals(2, departments.get(0).getEmployees().size());
+      assertEquals("Alice", departments.get(0).getEmployees().get(0).getName());
+      assertEquals("Bob", departments.get(0).getEmployees().get(1).getName());
+      assertEquals(1, departments.get(1).getEmployees().size());
+      assertEquals(1, departments.get(2).getEmployees().size());
+      assertTrue(departments.get(3).getEmployees().isEmpty());
+      assertEquals(1, countQueries("from employee"));
+    }
+  }
+
+  @Test
+  void shouldLoadAnnotatedAssociationsInOneQuery() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<Employee> employees = sqlSession.getMapper(Mapper.class).getEmployeesAnnotated();
+      assertEquals(5, employees.size());
+      assertSame(employees.get(0).getDepartment(), employees.get(1).getDepartment());
+      assertEquals("Research", employees.get(3).getDepartment().getName());
+      assertNull(employees.get(4).getDepartment());
+      assertEquals(1, countQueries("from department"));
+    }
+  }
+
+  private long countQueries(String fragment) {
+    return executedSql.stream().filter(sql -> sql.contains(fragment)).count();
+  }
+
+  @Intercepts(@Signature(type = StatementHandler.class, method = "prepare", args = { Connection.class, Integer.class }))
+  static class SqlRecorder implements Interceptor {
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+      StatementHandler handler = (StatementHandler) invocation.getTarget();
+      executedSql.add(handler.getBoundSql().getSql());
+      return invocation.proceed();
+    }
+  }
+
+}
@@ -0,0 +1,45 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.batch_nested_select;
+
+import java.util.List;
+
+import org.apache.ibatis.annotations.One;
+import org.apache.ibatis.annotations.Result;
+import org.apache.ibatis.annotations.ResultMap;
+import org.apache.ibatis.annotations.Results;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.cursor.Cursor;
+
+public interface Mapper {
+  List<Employee> getEmployees();
+
+  List<Employee> getEmployeesLazily();
+
+  @Select("select * from employee order by id")
+  @ResultMap("employee")
+  Cursor<Employee> getEmployeesCursor();
+
+  List<Department> getDepartments();
+
+  @Select("select * from employee order by id")
+  @Results({
+      @Result(property = "id", column = "id", id = true),
+      @Result(property = "department", column = "department_id",
+          one = @One(select = "getDepartmentsByIds", foreignColumn = "id", batchSize = 10))
+  })
+  List<Employee> getEmployeesAnnotated();
+}
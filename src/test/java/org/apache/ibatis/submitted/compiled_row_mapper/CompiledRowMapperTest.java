@@ -0,0 +1,133 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.compiled_row_mapper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.Reader;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.executor.resultset.CompiledRowMapper;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.reflection.SystemMetaObject;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class CompiledRowMapperTest {
+
+  private static SqlSessionFactory sqlSessionFactory;
+
+  @BeforeAll
+  static void setUp() throws Exception {
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/compiled_row_mapper/mybatis-config.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+
+    BaseDataTest.runScript(sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(),
+        "org/apache/ibatis/submitted/compiled_row_mapper/CreateDB.sql");
+  }
+
+  @Test
+  void shouldMapAutomaticallyMappedColumns() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<User> users = sqlSession.getMapper(Mapper.class).getUsers();
+      assertEquals(2, users.size());
+      assertEquals(Integer.valueOf(1), users.get(0).getId());
+      assertEquals("User1", users.get(0).getName());
+      assertEquals(20, users.get(0).getAge());
+      assertEquals("one", users.get(0).getNickname());
+      // null is not set to primitives and, by default, to other properties
+      assertEquals(-1, users.get(1).getAge());
+      assertEquals("none", users.get(1).getNickname());
+    }
+    assertTrue(isCompiled("getUsers"));
+  }
+
+  @Test
+  void shouldPreferPropertyMappingsOverAutomaticMappings() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<User> users = sqlSession.getMapper(Mapper.class).getUsersSwapped();
+      assertEquals("one", users.get(0).getName());
+      assertEquals("User1", users.get(0).getNickname());
+      assertNull(users.get(1).getName());
+      assertEquals(-1, users.get(0).getAge());
+    }
+    assertTrue(isCompiled("getUsersSwapped"));
+  }
+
+  @Test
+  void shouldCompileForEachSetting() {
+    Configuration configuration = sqlSessionFactory.getConfiguration();
+    configuration.setCallSettersOnNulls(true);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<User> users = sqlSession.getMapper(Mapper.class).getUsers();
+      assertNull(users.get(1).getNickname());
+      assertEquals(-1, users.get(1).getAge());
+    } finally {
+      configuration.setCallSettersOnNulls(false);
+    }
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<User> users = sqlSession.getMapper(Mapper.class).getUsers();
+      assertEquals("none", users.get(1).getNickname());
+    }
+    assertEquals(2, compiledRowMappers("getUsers").size());
+  }
+
+  @Test
+  void shouldLeaveUnknownColumnsToGenericMapping() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<User> users = sqlSession.getMapper(Mapper.class).getUsersWithUnknownColumn();
+      assertEquals("User2", users.get(1).getName());
+    }
+    assertFalse(isCompiled("getUsersWithUnknownColumn"));
+  }
+
+  @Test
+  void shouldStopCompilingBeyondLayoutLimit() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      for (int i = 0; i < 10; i++) {
+        mapper.getUsersWithAlias("alias" + i);
+      }
+      assertEquals(8, compiledRowMappers("getUsersWithAlias").size());
+      List<User> users = mapper.getUsersWithAlias("nickname");
+      assertEquals("one", users.get(0).getNickname());
+    }
+    assertEquals(8, compiledRowMappers("getUsersWithAlias").size());
+  }
+
+  private boolean isCompiled(String statement) {
+    return compiledRowMappers(statement).stream().anyMatch(CompiledRowMapper::isSupported);
+  }
+
+  @SuppressWarnings("unchecked")
+  private Collection<CompiledRowMapper> compiledRowMappers(String statement) {
+    Object resultMap = sqlSessionFactory.getConfiguration().getMappedStatement(Mapper.class.getName() + "." + statement)
+        .getResultMaps().get(0);
+    return ((Map<Object, CompiledRowMapper>) SystemMetaObject.forObject(resultMap).getValue("compiledRowMappers.mappers")).values();
+  }
+
+}
@@ -0,0 +1,43 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.compiled_row_mapper;
+
+import java.util.List;
+
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Result;
+import org.apache.ibatis.annotations.Results;
+import org.apache.ibatis.annotations.Select;
+
+public interface Mapper {
+
+  @Select("select * from users order by id")
+  List<User> getUsers();
+
+  @Select("select id, name, nickname from users order by id")
+  @Results({
+      @Result(property = "name", column = "nickname"),
+      @Result(property = "nickname", column = "name")
+  })
+  List<User> getUsersSwapped();
+
+  @Select("select id, name, 'x' as unknown_column from users order by id")
+  List<User> getUsersWithUnknownColumn();
+
+  @Select("select id, name, nickname as ${alias} from users order by id")
+  List<User> getUsersWithAlias(@Param("alias") String alias);
+
+}
@@ -88,6 +88,33 @@ class CursorNestedTest {
     Assertions.assertFalse(usersCursor.isOpen());
   }
 
+  @Test
+  void shouldGetCompleteUsersWithoutResultOrdered() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      assertCompleteUsers(sqlSession.getMapper(Mapper.class).getAllUsersNotOrdered().iterator());
+    }
+  }
+
+  @Test
+  void shouldGetCompleteUsersWithAnnotatedResultOrdered() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Assertions.assertTrue(sqlSessionFactory.getConfiguration()
+          .getMappedStatement(Mapper.class.getName() + ".getAllUsersAnnotated").isResultOrdered());
+      assertCompleteUsers(sqlSession.getMapper(Mapper.class).getAllUsersAnnotated().iterator());
+    }
+  }
+
+  private void assertCompleteUsers(Iterator<User> iterator) {
+    int[][] expected = { { 2, 3 }, { 1, 3 }, { 3, 1 }, { 2, 2 } };
+    for (int[] sizes : expected) {
+      Assertions.assertTrue(iterator.hasNext());
+      User user = iterator.next();
+      Assertions.assertEquals(sizes[0], user.getGroups().size());
+      Assertions.assertEquals(sizes[1], user.getRoles().size());
+    }
+    Assertions.assertFalse(iterator.hasNext());
+  }
+
   @Test
   void testCursorWithRowBound() {
     try (SqlSession sqlSession = sqlSessionFactory.openSession()) {